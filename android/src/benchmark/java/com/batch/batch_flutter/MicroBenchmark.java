@@ -0,0 +1,53 @@
+package com.batch.batch_flutter;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Minimal JVM micro-benchmark harness used by the benchmark source set: warms a task up, then
+ * measures its time and allocations per operation.
+ * <p>
+ * Benchmarks are only compiled with the unit tests when the "batchBenchmarks" Gradle property is
+ * set, and report their results on stdout. Allocations are measured using HotSpot's ThreadMXBean.
+ */
+public final class MicroBenchmark {
+
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    private MicroBenchmark() {
+    }
+
+    /**
+     * Run a task and report its cost
+     *
+     * @param name              Name of the measured case
+     * @param operationsPerRun  Number of operations one run of the task performs, such as the
+     *                          number of decoded items
+     * @param warmupRuns        Runs made before measuring, so that the task is compiled
+     * @param measuredRuns      Measured runs
+     */
+    public static void run(String name, int operationsPerRun, int warmupRuns, int measuredRuns, Task task) throws Exception {
+        for (int i = 0; i < warmupRuns; i++) {
+            task.run();
+        }
+
+        final long allocatedBefore = allocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < measuredRuns; i++) {
+            task.run();
+        }
+        final long elapsed = System.nanoTime() - start;
+        final long allocated = allocatedBytes() - allocatedBefore;
+
+        final double operations = (double) measuredRuns * operationsPerRun;
+        System.out.println(String.format(Locale.ROOT, "%s: %.1f ns/op, %.1f bytes/op",
+                name, elapsed / operations, allocated / operations));
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
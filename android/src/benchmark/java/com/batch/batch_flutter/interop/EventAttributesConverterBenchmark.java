@@ -0,0 +1,64 @@
+package com.batch.batch_flutter.interop;
+
+import static com.batch.batch_flutter.interop.EventAttributesConverterTest.attribute;
+
+import com.batch.batch_flutter.MicroBenchmark;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the conversion cost of typical event payloads.
+ */
+public class EventAttributesConverterBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int ITERATIONS = 50_000;
+
+    @Test
+    public void benchmarkConvert() throws Exception {
+        EventAttributesConverter converter = new EventAttributesConverter(
+                EventAttributesConverter.DEFAULT_MAX_DEPTH, EventAttributesConverter.DEFAULT_MAX_ATTRIBUTES);
+
+        Map<String, Object> flatData = makeFlatData();
+        Map<String, Object> cartData = makeCartData();
+        MicroBenchmark.run("flat event (10 attributes)", 1, WARMUP_ITERATIONS, ITERATIONS, () -> converter.convert(flatData));
+        MicroBenchmark.run("cart event (20 items of 4 attributes)", 1, WARMUP_ITERATIONS, ITERATIONS, () -> converter.convert(cartData));
+    }
+
+    private static Map<String, Object> makeFlatData() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("screen", attribute("s", "checkout"));
+        data.put("step", attribute("i", 3));
+        data.put("amount", attribute("f", 49.9));
+        data.put("logged_in", attribute("b", true));
+        data.put("date", attribute("d", 1700000000000L));
+        data.put("url", attribute("u", "https://example.com/checkout"));
+        data.put("tags", attribute("sa", Arrays.asList("promo", "mobile")));
+        data.put("currency", attribute("s", "EUR"));
+        data.put("items_count", attribute("i", 20));
+        data.put("coupon", attribute("s", "WELCOME"));
+        return data;
+    }
+
+    private static Map<String, Object> makeCartData() {
+        List<Object> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("sku", attribute("s", "sku_" + i));
+            item.put("quantity", attribute("i", 1));
+            item.put("price", attribute("f", 9.99));
+            item.put("gift", attribute("b", false));
+            items.add(item);
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("items", attribute("oa", items));
+        data.put("total", attribute("f", 199.8));
+        return data;
+    }
+}
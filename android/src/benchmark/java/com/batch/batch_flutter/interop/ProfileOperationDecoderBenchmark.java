@@ -0,0 +1,91 @@
+package com.batch.batch_flutter.interop;
+
+import com.batch.batch_flutter.MicroBenchmark;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the decoding cost per operation of both profile edit formats.
+ */
+public class ProfileOperationDecoderBenchmark {
+
+    private static final int OPERATION_COUNT = 500;
+    private static final int WARMUP_ITERATIONS = 2_000;
+    private static final int ITERATIONS = 5_000;
+
+    @Test
+    public void benchmarkDecode() throws Exception {
+        Map<String, Object> packedParameters = makePackedParameters();
+        Map<String, Object> mapParameters = makeMapParameters();
+
+        MicroBenchmark.run("packed format", OPERATION_COUNT, WARMUP_ITERATIONS, ITERATIONS,
+                () -> ProfileOperationDecoder.decode(packedParameters));
+        MicroBenchmark.run("map format", OPERATION_COUNT, WARMUP_ITERATIONS, ITERATIONS,
+                () -> ProfileOperationDecoder.decode(mapParameters));
+    }
+
+    // Operations alternate between integer, float and string attributes, which is typical of a profile sync
+    private static Map<String, Object> makePackedParameters() {
+        int[] opcodes = new int[OPERATION_COUNT];
+        List<Object> values = new ArrayList<>(OPERATION_COUNT * 2);
+        for (int i = 0; i < OPERATION_COUNT; i++) {
+            switch (i % 3) {
+                case 0:
+                    opcodes[i] = ProfileOperationDecoder.OP_SET_INTEGER_ATTRIBUTE;
+                    values.add("int_" + i);
+                    values.add(i);
+                    break;
+                case 1:
+                    opcodes[i] = ProfileOperationDecoder.OP_SET_FLOAT_ATTRIBUTE;
+                    values.add("float_" + i);
+                    values.add(i / 2d);
+                    break;
+                default:
+                    opcodes[i] = ProfileOperationDecoder.OP_SET_STRING_ATTRIBUTE;
+                    values.add("string_" + i);
+                    values.add("value");
+                    break;
+            }
+        }
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("opcodes", opcodes);
+        parameters.put("values", values);
+        return parameters;
+    }
+
+    private static Map<String, Object> makeMapParameters() {
+        List<Object> operations = new ArrayList<>(OPERATION_COUNT);
+        for (int i = 0; i < OPERATION_COUNT; i++) {
+            Map<String, Object> operation = new HashMap<>();
+            operation.put("operation", "SET_ATTRIBUTE");
+            switch (i % 3) {
+                case 0:
+                    operation.put("key", "int_" + i);
+                    operation.put("type", "integer");
+                    operation.put("value", String.valueOf(i));
+                    break;
+                case 1:
+                    operation.put("key", "float_" + i);
+                    operation.put("type", "float");
+                    operation.put("value", String.valueOf(i / 2d));
+                    break;
+                default:
+                    operation.put("key", "string_" + i);
+                    operation.put("type", "string");
+                    operation.put("value", "value");
+                    break;
+            }
+            operations.add(operation);
+        }
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("operations", operations);
+        return parameters;
+    }
+}
@@ -0,0 +1,113 @@
+package com.batch.batch_flutter;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds bridge calls needing an activity while the plugin isn't attached to one, such as during
+ * configuration changes, so that they can be replayed once it is.
+ * <p>
+ * Calls expire if no activity has been attached before their deadline. Expiry runs on the main thread.
+ */
+final class ActivityCallQueue {
+
+    private final class PendingCall implements Runnable {
+        @NonNull
+        final Runnable replay;
+
+        @NonNull
+        final Runnable expire;
+
+        PendingCall(@NonNull Runnable replay, @NonNull Runnable expire) {
+            this.replay = replay;
+            this.expire = expire;
+        }
+
+        // Deadline reached
+        @Override
+        public void run() {
+            final boolean didRemove;
+            synchronized (lock) {
+                didRemove = pendingCalls.remove(this);
+            }
+            if (didRemove) {
+                expire.run();
+            }
+        }
+    }
+
+    private final Object lock = new Object();
+
+    private final ArrayDeque<PendingCall> pendingCalls = new ArrayDeque<>();
+
+    private final Handler mainThreadHandler = new Handler(Looper.getMainLooper());
+
+    private final int capacity;
+
+    ActivityCallQueue(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queue a call until an activity is attached
+     *
+     * @param replay         Runs the call again, once an activity has been attached
+     * @param expire         Fails the call, once its deadline has been reached
+     * @param deadlineMillis Time the call can wait for an activity
+     * @return false if the call couldn't be queued, because too many calls are waiting already
+     */
+    boolean enqueue(@NonNull Runnable replay, @NonNull Runnable expire, long deadlineMillis) {
+        final PendingCall call = new PendingCall(replay, expire);
+        synchronized (lock) {
+            if (pendingCalls.size() >= capacity) {
+                return false;
+            }
+            pendingCalls.add(call);
+        }
+        mainThreadHandler.postDelayed(call, deadlineMillis);
+        return true;
+    }
+
+    /**
+     * Replay the queued calls in order, on the calling thread
+     */
+    void replayAll() {
+        for (PendingCall call : takeAll()) {
+            call.replay.run();
+        }
+    }
+
+    /**
+     * Fail all queued calls right away, on the calling thread
+     */
+    void expireAll() {
+        for (PendingCall call : takeAll()) {
+            call.expire.run();
+        }
+    }
+
+    int size() {
+        synchronized (lock) {
+            return pendingCalls.size();
+        }
+    }
+
+    @NonNull
+    private List<PendingCall> takeAll() {
+        final List<PendingCall> calls;
+        synchronized (lock) {
+            calls = new ArrayList<>(pendingCalls);
+            pendingCalls.clear();
+        }
+        for (PendingCall call : calls) {
+            mainThreadHandler.removeCallbacks(call);
+        }
+        return calls;
+    }
+}
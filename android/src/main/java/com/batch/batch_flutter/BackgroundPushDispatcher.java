@@ -0,0 +1,329 @@
+package com.batch.batch_flutter;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+
+import io.flutter.FlutterInjector;
+import io.flutter.embedding.engine.FlutterEngine;
+import io.flutter.embedding.engine.dart.DartExecutor;
+import io.flutter.embedding.engine.loader.FlutterLoader;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+import io.flutter.plugin.common.MethodCodec;
+import io.flutter.view.FlutterCallbackInformation;
+
+/**
+ * Dispatches push payloads to a Dart callback running in a headless engine, without starting the UI.
+ * <p>
+ * The engine is started on the first payload, and kept warm until no payload has been dispatched
+ * for the idle timeout, so that bursts of pushes only pay its startup once. Payloads received while
+ * it starts are queued.
+ * <p>
+ * The Dart callback talks to the dispatcher on the {@link #CHANNEL_NAME} channel: it calls
+ * "background.ready" once it is ready to handle payloads, which are then sent to it using
+ * "background.onPush", one at a time.
+ * <p>
+ * All state is confined to the main thread.
+ */
+final class BackgroundPushDispatcher implements MethodChannel.MethodCallHandler {
+
+    static final String CHANNEL_NAME = "batch_flutter.background";
+
+    private static final String PREFERENCES_NAME = "batch_flutter_background";
+
+    private static final String CALLBACK_HANDLE_KEY = "callbackHandle";
+
+    /**
+     * Maximum number of payloads waiting for the engine. The oldest ones are dropped first.
+     */
+    private static final int QUEUE_CAPACITY = 100;
+
+    /**
+     * Time the Dart callback has to call "background.ready" once the engine has been started
+     */
+    @VisibleForTesting
+    static final long STARTUP_TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * Headless engine running the Dart callback
+     */
+    interface Engine {
+        /**
+         * Channel the Dart callback talks to the dispatcher on
+         */
+        @NonNull
+        MethodChannel getChannel();
+
+        void destroy();
+    }
+
+    /**
+     * Starts headless engines. Replaced in tests, as starting a Flutter engine needs its native library.
+     */
+    interface EngineLauncher {
+        /**
+         * Start an engine running the Dart callback, asynchronously.
+         *
+         * @param callback Called on the main thread once the engine has been created, before the
+         *                 Dart callback runs, or with null if it couldn't be created.
+         */
+        void launch(long callbackHandle, @NonNull LaunchCallback callback);
+    }
+
+    interface LaunchCallback {
+        /**
+         * @return false if the engine isn't needed anymore: it is destroyed without running the Dart callback.
+         */
+        boolean onLaunched(@Nullable Engine engine);
+    }
+
+    @NonNull
+    private final Context context;
+
+    @NonNull
+    private final EngineLauncher launcher;
+
+    private final long idleTimeoutMillis;
+
+    private final Handler mainThreadHandler = new Handler(Looper.getMainLooper());
+
+    private final ArrayDeque<Map<String, Object>> pendingPayloads = new ArrayDeque<>();
+
+    private final Runnable idleShutdown = this::shutdownIfIdle;
+
+    private final Runnable startupTimeout = this::onStartupTimeout;
+
+    @Nullable
+    private Engine engine;
+
+    @Nullable
+    private MethodChannel channel;
+
+    private boolean starting = false;
+
+    private boolean ready = false;
+
+    private int inFlightPayloads = 0;
+
+    // Incremented when an engine is launched or shut down, so that late launches are ignored
+    private int engineGeneration = 0;
+
+    BackgroundPushDispatcher(@NonNull Context context, @NonNull MethodCodec codec, long idleTimeoutMillis) {
+        this(context, new FlutterEngineLauncher(context.getApplicationContext(), codec), idleTimeoutMillis);
+    }
+
+    @VisibleForTesting
+    BackgroundPushDispatcher(@NonNull Context context, @NonNull EngineLauncher launcher, long idleTimeoutMillis) {
+        this.context = context.getApplicationContext();
+        this.launcher = launcher;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    static void saveCallbackHandle(@NonNull Context context, long callbackHandle) {
+        context.getApplicationContext()
+                .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putLong(CALLBACK_HANDLE_KEY, callbackHandle)
+                .apply();
+    }
+
+    static long loadCallbackHandle(@NonNull Context context) {
+        return context.getApplicationContext()
+                .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+                .getLong(CALLBACK_HANDLE_KEY, 0);
+    }
+
+    /**
+     * Dispatch a payload to the Dart callback, starting the headless engine if needed.
+     * Can be called from any thread.
+     */
+    void dispatch(@NonNull Map<String, Object> payload) {
+        mainThreadHandler.post(() -> {
+            if (pendingPayloads.size() >= QUEUE_CAPACITY) {
+                BatchFlutterLogger.e("Too many push payloads are waiting for the background engine, dropping the oldest one.");
+                pendingPayloads.poll();
+            }
+            pendingPayloads.add(payload);
+            mainThreadHandler.removeCallbacks(idleShutdown);
+
+            if (ready) {
+                drain();
+            } else if (!starting) {
+                startEngine();
+            }
+        });
+    }
+
+    private void startEngine() {
+        final long callbackHandle = loadCallbackHandle(context);
+        if (callbackHandle == 0) {
+            BatchFlutterLogger.e("Cannot dispatch push payloads in the background: no Dart callback has been " +
+                    "registered using BatchFlutterPlugin.setBackgroundPushCallbackHandle().");
+            pendingPayloads.clear();
+            return;
+        }
+
+        starting = true;
+        final int generation = ++engineGeneration;
+        mainThreadHandler.postDelayed(startupTimeout, STARTUP_TIMEOUT_MILLIS);
+        launcher.launch(callbackHandle, launchedEngine -> {
+            if (generation != engineGeneration) {
+                // Shut down while launching, such as on startup timeout
+                return false;
+            }
+            if (launchedEngine == null) {
+                shutdown();
+                return false;
+            }
+
+            BatchFlutterLogger.d("Starting the background engine.");
+            engine = launchedEngine;
+            channel = launchedEngine.getChannel();
+            channel.setMethodCallHandler(this);
+            return true;
+        });
+    }
+
+    @Override
+    public void onMethodCall(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
+        if ("background.ready".equals(call.method)) {
+            mainThreadHandler.removeCallbacks(startupTimeout);
+            starting = false;
+            ready = true;
+            result.success(null);
+            drain();
+        } else {
+            result.notImplemented();
+        }
+    }
+
+    private void drain() {
+        final MethodChannel currentChannel = channel;
+        if (currentChannel == null) {
+            return;
+        }
+
+        Map<String, Object> payload;
+        while ((payload = pendingPayloads.poll()) != null) {
+            inFlightPayloads++;
+            currentChannel.invokeMethod("background.onPush", payload, new MethodChannel.Result() {
+                @Override
+                public void success(@Nullable Object result) {
+                    onPayloadHandled();
+                }
+
+                @Override
+                public void error(@NonNull String errorCode, @Nullable String errorMessage, @Nullable Object errorDetails) {
+                    BatchFlutterLogger.e("Background push handler failed: " + errorCode + " " + errorMessage);
+                    onPayloadHandled();
+                }
+
+                @Override
+                public void notImplemented() {
+                    BatchFlutterLogger.e("Background push handler is not implemented.");
+                    onPayloadHandled();
+                }
+            });
+        }
+    }
+
+    private void onPayloadHandled() {
+        inFlightPayloads--;
+        if (inFlightPayloads <= 0 && pendingPayloads.isEmpty()) {
+            inFlightPayloads = 0;
+            mainThreadHandler.removeCallbacks(idleShutdown);
+            mainThreadHandler.postDelayed(idleShutdown, idleTimeoutMillis);
+        }
+    }
+
+    private void onStartupTimeout() {
+        BatchFlutterLogger.e("The background Dart callback did not call 'background.ready' within " +
+                STARTUP_TIMEOUT_MILLIS + "ms, dropping " + pendingPayloads.size() + " push payload(s).");
+        shutdown();
+    }
+
+    private void shutdownIfIdle() {
+        if (inFlightPayloads == 0 && pendingPayloads.isEmpty()) {
+            BatchFlutterLogger.d("Background engine idle, stopping it.");
+            shutdown();
+        }
+    }
+
+    private void shutdown() {
+        mainThreadHandler.removeCallbacks(idleShutdown);
+        mainThreadHandler.removeCallbacks(startupTimeout);
+        pendingPayloads.clear();
+        if (channel != null) {
+            channel.setMethodCallHandler(null);
+            channel = null;
+        }
+        if (engine != null) {
+            engine.destroy();
+            engine = null;
+        }
+        starting = false;
+        ready = false;
+        inFlightPayloads = 0;
+        engineGeneration++;
+    }
+
+    private static final class FlutterEngineLauncher implements EngineLauncher {
+
+        @NonNull
+        private final Context context;
+
+        @NonNull
+        private final MethodCodec codec;
+
+        private final Handler mainThreadHandler = new Handler(Looper.getMainLooper());
+
+        FlutterEngineLauncher(@NonNull Context context, @NonNull MethodCodec codec) {
+            this.context = context;
+            this.codec = codec;
+        }
+
+        @Override
+        public void launch(long callbackHandle, @NonNull LaunchCallback callback) {
+            final FlutterLoader loader = FlutterInjector.instance().flutterLoader();
+            loader.startInitialization(context);
+            loader.ensureInitializationCompleteAsync(context, null, mainThreadHandler, () -> {
+                final FlutterCallbackInformation callbackInformation = FlutterCallbackInformation.lookupCallbackInformation(callbackHandle);
+                if (callbackInformation == null) {
+                    BatchFlutterLogger.e("Cannot dispatch push payloads in the background: the registered Dart callback could not be found.");
+                    callback.onLaunched(null);
+                    return;
+                }
+
+                final FlutterEngine flutterEngine = new FlutterEngine(context);
+                final MethodChannel channel = new MethodChannel(flutterEngine.getDartExecutor(), CHANNEL_NAME, codec);
+                final boolean keep = callback.onLaunched(new Engine() {
+                    @NonNull
+                    @Override
+                    public MethodChannel getChannel() {
+                        return channel;
+                    }
+
+                    @Override
+                    public void destroy() {
+                        flutterEngine.destroy();
+                    }
+                });
+                if (!keep) {
+                    flutterEngine.destroy();
+                    return;
+                }
+                flutterEngine.getDartExecutor().executeDartCallback(
+                        new DartExecutor.DartCallback(context.getAssets(), loader.findAppBundlePath(), callbackInformation));
+            });
+        }
+    }
+}
@@ -4,8 +4,12 @@ import android.app.Activity;
 import android.app.Application;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.core.content.ContextCompat;
 
@@ -15,20 +19,29 @@ import com.batch.batch_flutter.interop.BatchBridge;
 import com.batch.batch_flutter.interop.BatchBridgeException;
 import com.batch.batch_flutter.interop.BatchBridgeNotImplementedException;
 import com.batch.batch_flutter.interop.BatchBridgePublicErrorCode;
+import com.batch.batch_flutter.interop.BatchMessageCodec;
+import com.batch.batch_flutter.interop.BridgeEvents;
+import com.batch.batch_flutter.interop.BridgeMetrics;
+import com.batch.batch_flutter.interop.BridgeSession;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.embedding.engine.plugins.activity.ActivityAware;
 import io.flutter.embedding.engine.plugins.activity.ActivityPluginBinding;
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
 import io.flutter.plugin.common.PluginRegistry;
+import io.flutter.plugin.common.StandardMethodCodec;
 
 /**
  * BatchFlutterPlugin
@@ -41,10 +54,30 @@ public class BatchFlutterPlugin implements FlutterPlugin, MethodCallHandler, Act
 
     private final static BatchPluginConfiguration configuration = new BatchPluginConfiguration();
 
-    private static boolean didCallSetup = false;
+    private static final StandardMethodCodec methodCodec = new StandardMethodCodec(BatchMessageCodec.INSTANCE);
+
+    private static volatile boolean didCallSetup = false;
+
+    /// Whether setup has been deferred to after the first frame, and is not done yet
+    private static volatile boolean isSetupDeferred = false;
+
+    /// Maximum time a deferred setup waits for the first frame, for processes that don't show any activity
+    private static final long DEFERRED_SETUP_MAX_DELAY_MILLIS = 5000;
+
+    /// Maximum number of bridge calls queued while setup is deferred
+    private static final int DEFERRED_SETUP_QUEUE_CAPACITY = 500;
+
+    /// Holds bridge calls and activity lifecycle events until a deferred setup is done
+    private static final SetupGate setupGate = new SetupGate(DEFERRED_SETUP_QUEUE_CAPACITY);
 
     private static boolean manageActivityLifecycle = true;
 
+    /// Dispatches push payloads to the Dart background callback. Lazily created.
+    private static BackgroundPushDispatcher backgroundPushDispatcher;
+
+    // Avoids taking the startup timings' lock on every call. Racy, but marking twice is harmless.
+    private static boolean isFirstCallMarked = false;
+
     /// MethodChannels used to communicate with the plugin
     private MethodChannel coreChannel;
     private MethodChannel userChannel;
@@ -53,9 +86,28 @@ public class BatchFlutterPlugin implements FlutterPlugin, MethodCallHandler, Act
     private MethodChannel messagingChannel;
     private MethodChannel profileChannel;
 
+    /// EventChannels pushing SDK state changes, and their handlers
+    private final List<EventChannel> eventChannels = new ArrayList<>();
+    private final List<BridgeEventStreamHandler> eventStreamHandlers = new ArrayList<>();
+
     /// Current Activity
+    /// Volatile as it can be read from the channels' background task queues
+    @VisibleForTesting
+    protected volatile WeakReference<Activity> currentActivity = new WeakReference<>(null);
+
+    /// Bridge session of the engine this instance is attached to
     @VisibleForTesting
-    protected WeakReference<Activity> currentActivity = new WeakReference<>(null);
+    protected volatile BridgeSession bridgeSession = BatchBridge.openSession();
+
+    /// Application context, given to actions that don't need an activity when none is attached
+    @VisibleForTesting
+    protected volatile Context applicationContext;
+
+    /// Maximum number of calls waiting for an activity
+    private static final int ACTIVITY_CALL_QUEUE_CAPACITY = 100;
+
+    /// Calls waiting for an activity to be attached, such as during configuration changes
+    private final ActivityCallQueue activityCallQueue = new ActivityCallQueue(ACTIVITY_CALL_QUEUE_CAPACITY);
 
     static {
         System.setProperty(PLUGIN_VERSION_SYSTEM_PROPERTY, PLUGIN_VERSION);
@@ -68,18 +120,46 @@ public class BatchFlutterPlugin implements FlutterPlugin, MethodCallHandler, Act
 
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
-        coreChannel = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), "batch_flutter");
-        coreChannel.setMethodCallHandler(this);
-        userChannel = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), "batch_flutter.user");
-        userChannel.setMethodCallHandler(this);
-        pushChannel = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), "batch_flutter.push");
-        pushChannel.setMethodCallHandler(this);
-        inboxChannel = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), "batch_flutter.inbox");
-        inboxChannel.setMethodCallHandler(this);
-        messagingChannel = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), "batch_flutter.messaging");
-        messagingChannel.setMethodCallHandler(this);
-        profileChannel = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), "batch_flutter.profile");
-        profileChannel.setMethodCallHandler(this);
+        BatchFlutterStartupTimings.mark(BatchFlutterStartupTimings.ENGINE_ATTACH_START);
+        applicationContext = flutterPluginBinding.getApplicationContext();
+        // An instance is only attached to one engine at a time, but might be attached again
+        if (bridgeSession.isClosed()) {
+            bridgeSession = BatchBridge.openSession();
+        }
+        // Task queues have to be chosen when creating the channels, make sure we know whether
+        // they're enabled
+        configuration.initFromManifest(flutterPluginBinding.getApplicationContext());
+
+        final BinaryMessenger messenger = flutterPluginBinding.getBinaryMessenger();
+        coreChannel = makeChannel(messenger, "batch_flutter");
+        userChannel = makeChannel(messenger, "batch_flutter.user");
+        pushChannel = makeChannel(messenger, "batch_flutter.push");
+        inboxChannel = makeChannel(messenger, "batch_flutter.inbox");
+        messagingChannel = makeChannel(messenger, "batch_flutter.messaging");
+        profileChannel = makeChannel(messenger, "batch_flutter.profile");
+        for (BridgeEvents.Stream stream : BridgeEvents.Stream.values()) {
+            final EventChannel eventChannel = new EventChannel(messenger, stream.channelName, methodCodec);
+            final BridgeEventStreamHandler handler = new BridgeEventStreamHandler(stream, applicationContext);
+            eventChannel.setStreamHandler(handler);
+            eventChannels.add(eventChannel);
+            eventStreamHandlers.add(handler);
+        }
+        BatchFlutterStartupTimings.mark(BatchFlutterStartupTimings.ENGINE_ATTACH_END);
+    }
+
+    @NonNull
+    private MethodChannel makeChannel(@NonNull BinaryMessenger messenger, @NonNull String name) {
+        MethodChannel channel;
+        if (configuration.isBackgroundTaskQueuesEnabled()) {
+            // One serial queue per channel: calls are ordered within a channel, but channels
+            // run in parallel
+            BinaryMessenger.TaskQueue taskQueue = messenger.makeBackgroundTaskQueue();
+            channel = new MethodChannel(messenger, name, methodCodec, taskQueue);
+        } else {
+            channel = new MethodChannel(messenger, name, methodCodec);
+        }
+        channel.setMethodCallHandler(this);
+        return channel;
     }
 
     @Override
@@ -90,12 +170,37 @@ public class BatchFlutterPlugin implements FlutterPlugin, MethodCallHandler, Act
         inboxChannel.setMethodCallHandler(null);
         messagingChannel.setMethodCallHandler(null);
         profileChannel.setMethodCallHandler(null);
+        for (EventChannel eventChannel : eventChannels) {
+            eventChannel.setStreamHandler(null);
+        }
+        for (BridgeEventStreamHandler handler : eventStreamHandlers) {
+            handler.close();
+        }
+        eventChannels.clear();
+        eventStreamHandlers.clear();
+        // Nothing will receive the results of the calls that are still pending.
+        // Other engines share the bridge, but not this session.
+        activityCallQueue.expireAll();
+        BatchBridge.closeSession(bridgeSession, "engine detached");
     }
 
     //region Method calling
 
     @Override
     public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        handleMethodCall(call, result, System.nanoTime());
+    }
+
+    /**
+     * @param receivedAtNanos {@link System#nanoTime()} when the call was first received, kept when
+     *                        it's replayed, so that bridge metrics include the time it was queued
+     */
+    private void handleMethodCall(@NonNull MethodCall call, @NonNull Result result, long receivedAtNanos) {
+        // Replay calls in order once the SDK is ready, rather than failing them
+        if (isSetupDeferred && !setupGate.isOpen() && setupGate.runWhenOpen(() -> handleMethodCall(call, result, receivedAtNanos))) {
+            return;
+        }
+
         if (!isSetup()) {
             final String message = "batch_flutter's BatchFlutterPlugin.setup() has not been called." +
                     "Please make sure that you followed integration steps, and called this method " +
@@ -110,15 +215,23 @@ public class BatchFlutterPlugin implements FlutterPlugin, MethodCallHandler, Act
         }
 
         Activity activity = currentActivity.get();
-        if (activity == null) {
-            final String message = "batch_flutter isn't attached to an activity.";
-            BatchFlutterLogger.e(message);
-            result.error(BatchBridgePublicErrorCode.NOT_ATTACHED_TO_ACTIVITY.code,
-                    message,
-                    null);
+        final Context context = activity != null ? activity : applicationContext;
+        if ((activity == null && BatchBridge.requiresActivity(call.method)) || context == null) {
+            // Wait for the activity to come back rather than making Dart retry
+            final long deadlineMillis = configuration.getActivityCallDeadlineMillis();
+            if (deadlineMillis > 0 && activityCallQueue.enqueue(() -> handleMethodCall(call, result, receivedAtNanos),
+                    () -> sendNotAttachedError(result, deadlineMillis), deadlineMillis)) {
+                return;
+            }
+            sendNotAttachedError(result, 0);
             return;
         }
 
+        if (!isFirstCallMarked) {
+            isFirstCallMarked = true;
+            BatchFlutterStartupTimings.mark(BatchFlutterStartupTimings.FIRST_CALL);
+        }
+
         Map<String, Object> arguments = null;
         if (call.arguments != null) {
             if (isObjectAMapOfStrings(call.arguments)) {
@@ -142,20 +255,38 @@ public class BatchFlutterPlugin implements FlutterPlugin, MethodCallHandler, Act
             arguments = new HashMap<>();
         }
 
-        BatchBridge.call(call.method, arguments, activity)
-                .setExecutor(ContextCompat.getMainExecutor(activity))
-                .then(result::success)
-                .catchException(e -> {
-                    if (e instanceof BatchBridgeNotImplementedException) {
-                        result.notImplemented();
-                    } else if (e instanceof BatchBridgeException) {
-                        BatchBridgeException bridgeException = (BatchBridgeException) e;
-                        result.error(bridgeException.pluginCode.code, bridgeException.description, bridgeException.details);
-                    } else {
-                        BatchFlutterLogger.e("Unknown bridge error", e);
-                        result.error(BatchBridgePublicErrorCode.UNKNOWN_BRIDGE_ERROR.code, "Unknown Batch native bridge error. Please see logcat for more info.", null);
-                    }
-                });
+        final Promise<Object> promise = BatchBridge.call(call.method, arguments, context, bridgeSession, receivedAtNanos);
+        // Most getters are settled right away: when already on the main thread, answer without
+        // posting to the main looper, which would delay the result by a frame.
+        // Pending promises might be settled from any thread, so they still go through the main executor.
+        if (promise.getStatus() == Promise.Status.PENDING || Looper.myLooper() != Looper.getMainLooper()) {
+            promise.setExecutor(ContextCompat.getMainExecutor(context));
+        }
+        promise.then(result::success)
+                .catchException(e -> sendError(result, e));
+    }
+
+    private static void sendNotAttachedError(@NonNull Result result, long waitedMillis) {
+        String message = "batch_flutter isn't attached to an activity.";
+        if (waitedMillis > 0) {
+            message += " Waited " + waitedMillis + "ms for one.";
+        }
+        BatchFlutterLogger.e(message);
+        result.error(BatchBridgePublicErrorCode.NOT_ATTACHED_TO_ACTIVITY.code,
+                message,
+                null);
+    }
+
+    private static void sendError(@NonNull Result result, @NonNull Exception e) {
+        if (e instanceof BatchBridgeNotImplementedException) {
+            result.notImplemented();
+        } else if (e instanceof BatchBridgeException) {
+            BatchBridgeException bridgeException = (BatchBridgeException) e;
+            result.error(bridgeException.pluginCode.code, bridgeException.description, bridgeException.details);
+        } else {
+            BatchFlutterLogger.e("Unknown bridge error", e);
+            result.error(BatchBridgePublicErrorCode.UNKNOWN_BRIDGE_ERROR.code, "Unknown Batch native bridge error. Please see logcat for more info.", null);
+        }
     }
 
     //endregion
@@ -187,7 +318,7 @@ public class BatchFlutterPlugin implements FlutterPlugin, MethodCallHandler, Act
         BatchFlutterLogger.d("Activity: onNewIntent");
         Activity activity = currentActivity.get();
         if (activity != null) {
-            Batch.onNewIntent(activity, intent);
+            runAfterSetup(() -> Batch.onNewIntent(activity, intent));
         }
         return false;
     }
@@ -196,18 +327,31 @@ public class BatchFlutterPlugin implements FlutterPlugin, MethodCallHandler, Act
         BatchFlutterLogger.d("Activity: attached. Should manage lifecycle: " + manageActivityLifecycle);
         if (manageActivityLifecycle) {
             binding.addOnNewIntentListener(this);
-            Batch.onStart(binding.getActivity());
+            final Activity activity = binding.getActivity();
+            runAfterSetup(() -> {
+                Batch.onStart(activity);
+                // Catches token changes made while the app was not running
+                BatchBridge.refreshEvents(BridgeEvents.Stream.PUSH_TOKEN, activity);
+            });
         }
         currentActivity = new WeakReference<>(binding.getActivity());
+        if (activityCallQueue.size() > 0) {
+            BatchFlutterLogger.d("Replaying " + activityCallQueue.size() + " call(s) made while detached from an activity.");
+            activityCallQueue.replayAll();
+        }
     }
 
     private void detachFromActivity() {
         BatchFlutterLogger.d("Activity: detached. Should manage lifecycle: " + manageActivityLifecycle);
+        // The app might be going to the background, don't keep events around
+        BatchBridge.flushEventBuffer();
         if (manageActivityLifecycle) {
             Activity activity = currentActivity.get();
             if (activity != null) {
-                Batch.onStop(activity);
-                Batch.onDestroy(activity);
+                runAfterSetup(() -> {
+                    Batch.onStop(activity);
+                    Batch.onDestroy(activity);
+                });
             }
         }
     }
@@ -226,31 +370,53 @@ public class BatchFlutterPlugin implements FlutterPlugin, MethodCallHandler, Act
      * Note: If setup has never been called, or if Batch wasn't provided an APIKey in the manifest or
      * using {@link BatchFlutterPlugin#getConfiguration(Context)} and {@link BatchPluginConfiguration#setAPIKey(String)},
      * any method call will throw an exception.
+     * <p>
+     * If {@link BatchPluginConfiguration#setDeferredSetupEnabled(boolean)} has been enabled, Batch is
+     * started once the first activity has drawn a frame and the main thread is idle, or after a few
+     * seconds if no activity is shown. Bridge calls made in the meantime are queued and run in order
+     * once it has started.
      *
      * @return Whether the plugin was successfully setup. Returns true on any subsequent call if one
      * setup call succeeded.
      */
     public static synchronized boolean setup(@NonNull Context context) {
-        if (didCallSetup) {
+        if (didCallSetup || isSetupDeferred) {
             BatchFlutterLogger.i("BatchFlutterPlugin.setup() has already been called once. Ignoring.");
             return true;
         }
 
+        BatchFlutterStartupTimings.mark(BatchFlutterStartupTimings.SETUP_START);
         BatchPluginConfiguration pluginConfiguration = getConfiguration(context);
+        BatchFlutterStartupTimings.mark(BatchFlutterStartupTimings.SETUP_MANIFEST_READ);
         if (pluginConfiguration.getApiKey() != null) {
-            EnumSet<BatchMigration> migrations = EnumSet.noneOf(BatchMigration.class);
-            if (!pluginConfiguration.isProfileCustomIdMigrationEnabled()) {
-                BatchFlutterLogger.d("Disabling profile custom id migration.");
-                migrations.add(BatchMigration.CUSTOM_ID);
-            }
-            if (!pluginConfiguration.isProfileCustomDataMigrationEnabled()) {
-                BatchFlutterLogger.d("Disabling profile custom data migration.");
-                migrations.add(BatchMigration.CUSTOM_DATA);
+            context.getApplicationContext().registerComponentCallbacks(new MemoryTrimCallbacks());
+            // Registered before the SDK starts, so that the first token is notified
+            PushTokenReceiver.register(context);
+            if (pluginConfiguration.isDeferredSetupEnabled()) {
+                // Keep the SDK start off the cold start path: it runs once the first frame is drawn
+                isSetupDeferred = true;
+                final Context applicationContext = context.getApplicationContext();
+                final FirstFrameTrigger trigger = new FirstFrameTrigger(
+                        applicationContext instanceof Application ? (Application) applicationContext : null,
+                        DEFERRED_SETUP_MAX_DELAY_MILLIS,
+                        () -> {
+                            synchronized (BatchFlutterPlugin.class) {
+                                startBatch(pluginConfiguration);
+                            }
+                            BatchFlutterLogger.d("Deferred setup done, replaying " + setupGate.getPendingCount() + " queued operation(s).");
+                            setupGate.open();
+                            isSetupDeferred = false;
+                        });
+                if (Looper.myLooper() == Looper.getMainLooper()) {
+                    trigger.start();
+                } else {
+                    new Handler(Looper.getMainLooper()).post(trigger::start);
+                }
+                return true;
             }
-            Batch.disableMigration(migrations);
-            Batch.start(pluginConfiguration.getApiKey());
-            Batch.Messaging.setDoNotDisturbEnabled(pluginConfiguration.getInitialDoNotDisturbState());
-            didCallSetup = true;
+
+            startBatch(pluginConfiguration);
+            setupGate.open();
             return true;
         } else {
             BatchFlutterLogger.e("Could not setup BatchFlutterPlugin: your configuration is " +
@@ -259,6 +425,53 @@ public class BatchFlutterPlugin implements FlutterPlugin, MethodCallHandler, Act
         }
     }
 
+    private static void startBatch(@NonNull BatchPluginConfiguration pluginConfiguration) {
+        EnumSet<BatchMigration> migrations = EnumSet.noneOf(BatchMigration.class);
+        if (!pluginConfiguration.isProfileCustomIdMigrationEnabled()) {
+            BatchFlutterLogger.d("Disabling profile custom id migration.");
+            migrations.add(BatchMigration.CUSTOM_ID);
+        }
+        if (!pluginConfiguration.isProfileCustomDataMigrationEnabled()) {
+            BatchFlutterLogger.d("Disabling profile custom data migration.");
+            migrations.add(BatchMigration.CUSTOM_DATA);
+        }
+        Batch.disableMigration(migrations);
+        Batch.start(pluginConfiguration.getApiKey());
+        BatchFlutterStartupTimings.mark(BatchFlutterStartupTimings.SETUP_BATCH_STARTED);
+        Batch.Messaging.setDoNotDisturbEnabled(pluginConfiguration.getInitialDoNotDisturbState());
+        BatchBridge.setEventDataLimits(pluginConfiguration.getEventDataMaxDepth(),
+                pluginConfiguration.getEventDataMaxAttributes());
+        BatchBridge.setLocationThrottle(pluginConfiguration.getLocationMinDistanceMeters(),
+                pluginConfiguration.getLocationMinIntervalMillis(),
+                pluginConfiguration.getLocationMaxAccuracyMeters());
+        for (Map.Entry<String, Long> timeout : pluginConfiguration.getActionTimeoutsMillis().entrySet()) {
+            BatchBridge.setActionTimeout(timeout.getKey(), timeout.getValue());
+        }
+        if (pluginConfiguration.isEventBufferingEnabled()) {
+            BatchBridge.enableEventBuffering(pluginConfiguration.getEventBufferCapacity(),
+                    pluginConfiguration.getEventBufferFlushIntervalMillis());
+        }
+        if (pluginConfiguration.getProfileEditCoalescingWindowMillis() > 0) {
+            BatchBridge.enableProfileEditCoalescing(pluginConfiguration.getProfileEditCoalescingWindowMillis());
+        }
+        if (pluginConfiguration.isProfileWriteDeduplicationEnabled()) {
+            BatchBridge.enableProfileWriteDeduplication();
+        }
+        didCallSetup = true;
+        BatchFlutterStartupTimings.mark(BatchFlutterStartupTimings.SETUP_END);
+        BatchFlutterLogger.d("Startup timings: " + BatchFlutterStartupTimings.getTimings());
+    }
+
+    /**
+     * Run work needing Batch to be started, waiting for a deferred setup if there is one.
+     */
+    private static void runAfterSetup(@NonNull Runnable work) {
+        if (isSetupDeferred && setupGate.runWhenOpen(work)) {
+            return;
+        }
+        work.run();
+    }
+
     /**
      * Get the plugin configuration object.
      * It will be initialized with the previous values, including what has been read from the manifest.
@@ -296,6 +509,92 @@ public class BatchFlutterPlugin implements FlutterPlugin, MethodCallHandler, Act
         BatchFlutterPlugin.manageActivityLifecycle = manageActivityLifecycle;
     }
 
+    /**
+     * Set a listener receiving the metrics of every completed bridge call: its action, how long it
+     * waited before being executed, how long it took to execute and its error code if it failed.
+     * Use it to forward bridge performance to your own telemetry.
+     * <p>
+     * The listener might be called from any thread, and must return quickly.
+     *
+     * @param listener Listener, or null to remove it.
+     */
+    public static void setBridgeMetricsListener(@Nullable BridgeMetrics.Listener listener) {
+        BatchBridge.setMetricsListener(listener);
+    }
+
+    /**
+     * Get the aggregated metrics of bridge calls, per action: call count, error count per error code,
+     * and queue wait, execution and total latency histograms.
+     * These are also available from Dart using the "debug.bridgeMetrics" action.
+     */
+    @NonNull
+    public static Map<String, Object> getBridgeMetrics() {
+        return BatchBridge.getMetrics();
+    }
+
+    /**
+     * Register the Dart callback push payloads are dispatched to when
+     * {@link #dispatchBackgroundPush(Context, Map)} is called.
+     * <p>
+     * The handle is persisted, so that pushes received in a new process can still be dispatched.
+     *
+     * @param callbackHandle Handle of the Dart callback, as given by PluginUtilities.getCallbackHandle().
+     *                       The callback must call "background.ready" on the "batch_flutter.background"
+     *                       channel once it is ready to receive payloads.
+     */
+    public static void setBackgroundPushCallbackHandle(@NonNull Context context, long callbackHandle) {
+        BackgroundPushDispatcher.saveCallbackHandle(context, callbackHandle);
+    }
+
+    /**
+     * Dispatch a push payload to the Dart callback registered using
+     * {@link #setBackgroundPushCallbackHandle(Context, long)}, in a headless Flutter engine.
+     * <p>
+     * The engine is started if needed, and kept running for
+     * {@link BatchPluginConfiguration#getBackgroundEngineIdleTimeoutMillis()} after the last payload
+     * has been handled. Payloads dispatched while it starts are queued.
+     * Can be called from any thread, such as from a push receiver or service.
+     *
+     * @param payload Push payload. Values must be supported by Flutter's standard message codec.
+     */
+    public static void dispatchBackgroundPush(@NonNull Context context, @NonNull Map<String, Object> payload) {
+        getBackgroundPushDispatcher(context).dispatch(payload);
+    }
+
+    /**
+     * Dispatch a push payload to the Dart callback registered using
+     * {@link #setBackgroundPushCallbackHandle(Context, long)}, in a headless Flutter engine.
+     * <p>
+     * Convenience method taking the push's extras. Values that are not strings, numbers or booleans
+     * are converted to their string representation.
+     *
+     * @see #dispatchBackgroundPush(Context, Map)
+     */
+    @SuppressWarnings("deprecation")
+    public static void dispatchBackgroundPush(@NonNull Context context, @NonNull Bundle payload) {
+        final Map<String, Object> convertedPayload = new HashMap<>();
+        for (String key : payload.keySet()) {
+            // Bundle.get() is deprecated as it isn't type safe, but extras can hold values of any
+            // type here, and the typed getters would log a ClassCastException for each mismatch
+            final Object value = payload.get(key);
+            if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+                convertedPayload.put(key, value);
+            } else {
+                convertedPayload.put(key, value.toString());
+            }
+        }
+        dispatchBackgroundPush(context, convertedPayload);
+    }
+
+    private static synchronized BackgroundPushDispatcher getBackgroundPushDispatcher(@NonNull Context context) {
+        if (backgroundPushDispatcher == null) {
+            configuration.initFromManifest(context);
+            backgroundPushDispatcher = new BackgroundPushDispatcher(context, methodCodec,
+                    configuration.getBackgroundEngineIdleTimeoutMillis());
+        }
+        return backgroundPushDispatcher;
+    }
+
     //endregion
 
     private boolean isObjectAMapOfStrings(Object object) {
@@ -0,0 +1,66 @@
+package com.batch.batch_flutter;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records when the plugin reaches its startup steps, to measure its share of the app's cold start.
+ * <p>
+ * Timings are in milliseconds, relative to the process start (or to the first step before Android 7),
+ * and can be read using the "debug.startupTimings" bridge action.
+ */
+public final class BatchFlutterStartupTimings {
+
+    public static final String SETUP_START = "setup.start";
+    public static final String SETUP_MANIFEST_READ = "setup.manifestRead";
+    public static final String SETUP_BATCH_STARTED = "setup.batchStarted";
+    public static final String SETUP_END = "setup.end";
+    public static final String ENGINE_ATTACH_START = "engine.attachStart";
+    public static final String ENGINE_ATTACH_END = "engine.attachEnd";
+    public static final String FIRST_CALL = "bridge.firstCall";
+
+    private static final Map<String, Long> timings = new LinkedHashMap<>();
+
+    private BatchFlutterStartupTimings() {
+    }
+
+    /**
+     * Record that a startup step has been reached. Only the first occurrence of a step is kept.
+     */
+    public static void mark(@NonNull String step) {
+        final long uptime = SystemClock.uptimeMillis();
+        synchronized (timings) {
+            if (!timings.containsKey(step)) {
+                timings.put(step, uptime);
+            }
+        }
+    }
+
+    /**
+     * Get the recorded timings in the order they've been reached, serializable by
+     * {@link io.flutter.plugin.common.StandardMessageCodec}
+     */
+    @NonNull
+    public static Map<String, Object> getTimings() {
+        final Map<String, Object> relativeTimings = new LinkedHashMap<>();
+        synchronized (timings) {
+            long origin = -1;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                origin = Process.getStartUptimeMillis();
+            }
+            for (Map.Entry<String, Long> timing : timings.entrySet()) {
+                if (origin < 0) {
+                    origin = timing.getValue();
+                }
+                relativeTimings.put(timing.getKey(), timing.getValue() - origin);
+            }
+        }
+        return relativeTimings;
+    }
+}
@@ -6,6 +6,9 @@ import android.text.TextUtils;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Manages Batch configuration for the flutter plugin.
@@ -17,6 +20,7 @@ public class BatchPluginConfiguration {
     private static final String PROFILE_CUSTOM_ID_MIGRATION_ENABLED_MANIFEST_KEY = "com.batch.flutter.profile_custom_id_migration_enabled";
     private static final String PROFILE_CUSTOM_DATA_MIGRATION_ENABLED_MANIFEST_KEY = "com.batch.flutter.profile_custom_data_migration_enabled";
     private static final String INITIAL_DND_STATE_MANIFEST_KEY = "com.batch.flutter.do_not_disturb_initial_state";
+    private static final String BACKGROUND_TASK_QUEUES_ENABLED_MANIFEST_KEY = "com.batch.flutter.background_task_queues_enabled";
 
     private boolean didReadManifest = false;
 
@@ -25,6 +29,21 @@ public class BatchPluginConfiguration {
     private boolean initialDoNotDisturbState = false;
     private boolean profileCustomIdMigrationEnabled = true;
     private boolean profileCustomDataMigrationEnabled = true;
+    private boolean backgroundTaskQueuesEnabled = false;
+    private boolean eventBufferingEnabled = false;
+    private int eventBufferCapacity = 100;
+    private long eventBufferFlushIntervalMillis = 5000;
+    private long profileEditCoalescingWindowMillis = 0;
+    private boolean profileWriteDeduplicationEnabled = false;
+    private int eventDataMaxDepth = 8;
+    private int eventDataMaxAttributes = 1000;
+    private float locationMinDistanceMeters = 0;
+    private long locationMinIntervalMillis = 0;
+    private float locationMaxAccuracyMeters = 0;
+    private final Map<String, Long> actionTimeoutsMillis = new HashMap<>();
+    private boolean deferredSetupEnabled = false;
+    private long activityCallDeadlineMillis = 5000;
+    private long backgroundEngineIdleTimeoutMillis = 60_000;
 
     synchronized void initFromManifest(@NonNull Context context) {
         //noinspection ConstantConditions
@@ -41,6 +60,7 @@ public class BatchPluginConfiguration {
         initialDoNotDisturbState = manifestReader.readBoolean(INITIAL_DND_STATE_MANIFEST_KEY, false);
         profileCustomIdMigrationEnabled =  manifestReader.readBoolean(PROFILE_CUSTOM_ID_MIGRATION_ENABLED_MANIFEST_KEY, true);
         profileCustomDataMigrationEnabled =  manifestReader.readBoolean(PROFILE_CUSTOM_DATA_MIGRATION_ENABLED_MANIFEST_KEY, true);
+        backgroundTaskQueuesEnabled = manifestReader.readBoolean(BACKGROUND_TASK_QUEUES_ENABLED_MANIFEST_KEY, false);
     }
     //region Public API
 
@@ -122,5 +142,334 @@ public class BatchPluginConfiguration {
         this.profileCustomDataMigrationEnabled = profileCustomDataMigrationEnabled;
         return this;
     }
+
+    /**
+     * Whether bridge calls are executed on background task queues.
+     */
+    public boolean isBackgroundTaskQueuesEnabled() {
+        return backgroundTaskQueuesEnabled;
+    }
+
+    /**
+     * Set whether bridge calls should be executed on background task queues rather than on the platform thread.
+     * <p>
+     * When enabled, each plugin channel gets its own serial background queue: calls stay ordered
+     * within a channel, but different channels are executed in parallel.
+     * Calls that need the UI (such as showing a message or the debug view) are still executed on the main thread.
+     * <p>
+     * This must be set before the Flutter engine is attached to the plugin.
+     *
+     * @param backgroundTaskQueuesEnabled whether background task queues are enabled or not.
+     * @return This BatchPluginConfiguration instance for method chaining.
+     */
+    public BatchPluginConfiguration setBackgroundTaskQueuesEnabled(boolean backgroundTaskQueuesEnabled) {
+        this.backgroundTaskQueuesEnabled = backgroundTaskQueuesEnabled;
+        return this;
+    }
+
+    /**
+     * Whether tracked events are buffered before being handed to Batch.
+     */
+    public boolean isEventBufferingEnabled() {
+        return eventBufferingEnabled;
+    }
+
+    /**
+     * Set whether tracked events should be buffered natively, and handed to Batch in batches on a background thread.
+     * <p>
+     * Buffered events are flushed when the buffer is half full, when the flush interval elapsed,
+     * when the app goes to the background, and before opting out or identifying another profile.
+     * Invalid events are then logged rather than reported to Dart.
+     *
+     * @param eventBufferingEnabled whether event buffering is enabled or not.
+     * @return This BatchPluginConfiguration instance for method chaining.
+     */
+    public BatchPluginConfiguration setEventBufferingEnabled(boolean eventBufferingEnabled) {
+        this.eventBufferingEnabled = eventBufferingEnabled;
+        return this;
+    }
+
+    /**
+     * Get the maximum number of buffered events.
+     */
+    public int getEventBufferCapacity() {
+        return eventBufferCapacity;
+    }
+
+    /**
+     * Set the maximum number of buffered events. Once the buffer is full, the oldest events are dropped.
+     * Only used if event buffering is enabled.
+     *
+     * @param eventBufferCapacity the maximum number of buffered events. Must be greater than 0.
+     * @return This BatchPluginConfiguration instance for method chaining.
+     */
+    public BatchPluginConfiguration setEventBufferCapacity(int eventBufferCapacity) {
+        if (eventBufferCapacity > 0) {
+            this.eventBufferCapacity = eventBufferCapacity;
+        }
+        return this;
+    }
+
+    /**
+     * Get the maximum time an event can stay buffered, in milliseconds.
+     */
+    public long getEventBufferFlushIntervalMillis() {
+        return eventBufferFlushIntervalMillis;
+    }
+
+    /**
+     * Set the maximum time an event can stay buffered before being handed to Batch.
+     * Only used if event buffering is enabled.
+     *
+     * @param eventBufferFlushIntervalMillis the flush interval, in milliseconds.
+     * @return This BatchPluginConfiguration instance for method chaining.
+     */
+    public BatchPluginConfiguration setEventBufferFlushIntervalMillis(long eventBufferFlushIntervalMillis) {
+        if (eventBufferFlushIntervalMillis >= 0) {
+            this.eventBufferFlushIntervalMillis = eventBufferFlushIntervalMillis;
+        }
+        return this;
+    }
+
+    /**
+     * Get the profile edit coalescing window, in milliseconds. 0 means that coalescing is disabled.
+     */
+    public long getProfileEditCoalescingWindowMillis() {
+        return profileEditCoalescingWindowMillis;
+    }
+
+    /**
+     * Set the profile edit coalescing window.
+     * When greater than 0, profile edits received within this window are merged and saved once,
+     * rather than once per edit. Defaults to 0 (disabled).
+     *
+     * @param profileEditCoalescingWindowMillis the coalescing window, in milliseconds.
+     * @return This BatchPluginConfiguration instance for method chaining.
+     */
+    public BatchPluginConfiguration setProfileEditCoalescingWindowMillis(long profileEditCoalescingWindowMillis) {
+        if (profileEditCoalescingWindowMillis >= 0) {
+            this.profileEditCoalescingWindowMillis = profileEditCoalescingWindowMillis;
+        }
+        return this;
+    }
+
+    /**
+     * Get whether profile write deduplication is enabled or not.
+     */
+    public boolean isProfileWriteDeduplicationEnabled() {
+        return profileWriteDeduplicationEnabled;
+    }
+
+    /**
+     * Set whether profile write deduplication is enabled or not.
+     * When enabled, the plugin remembers the values saved by profile edits for the current identifier,
+     * and skips operations that wouldn't change them. Edits that end up empty aren't saved at all.
+     * Only enable this if the profile isn't edited natively, as those edits can't be taken into account.
+     * Defaults to false.
+     *
+     * @param profileWriteDeduplicationEnabled whether profile write deduplication is enabled or not.
+     * @return This BatchPluginConfiguration instance for method chaining.
+     */
+    public BatchPluginConfiguration setProfileWriteDeduplicationEnabled(boolean profileWriteDeduplicationEnabled) {
+        this.profileWriteDeduplicationEnabled = profileWriteDeduplicationEnabled;
+        return this;
+    }
+
+    /**
+     * Get the maximum nesting depth of tracked event data.
+     */
+    public int getEventDataMaxDepth() {
+        return eventDataMaxDepth;
+    }
+
+    /**
+     * Set the maximum nesting depth of tracked event data, top level attributes being at depth 1.
+     * Events nested deeper are rejected without being tracked. Defaults to 8.
+     *
+     * @param eventDataMaxDepth the maximum depth. Must be greater than 0.
+     * @return This BatchPluginConfiguration instance for method chaining.
+     */
+    public BatchPluginConfiguration setEventDataMaxDepth(int eventDataMaxDepth) {
+        if (eventDataMaxDepth > 0) {
+            this.eventDataMaxDepth = eventDataMaxDepth;
+        }
+        return this;
+    }
+
+    /**
+     * Get the maximum number of attributes of tracked event data.
+     */
+    public int getEventDataMaxAttributes() {
+        return eventDataMaxAttributes;
+    }
+
+    /**
+     * Set the maximum number of attributes of tracked event data, counting nested ones.
+     * Events with more attributes are rejected without being tracked. Defaults to 1000.
+     *
+     * @param eventDataMaxAttributes the maximum number of attributes. Must be greater than 0.
+     * @return This BatchPluginConfiguration instance for method chaining.
+     */
+    public BatchPluginConfiguration setEventDataMaxAttributes(int eventDataMaxAttributes) {
+        if (eventDataMaxAttributes > 0) {
+            this.eventDataMaxAttributes = eventDataMaxAttributes;
+        }
+        return this;
+    }
+
+    /**
+     * Get the minimum distance between two tracked locations, in meters.
+     */
+    public float getLocationMinDistanceMeters() {
+        return locationMinDistanceMeters;
+    }
+
+    /**
+     * Set the minimum distance between two tracked locations.
+     * Locations closer than this to the last tracked one are dropped. Defaults to 0 (disabled).
+     *
+     * @param locationMinDistanceMeters the minimum distance, in meters.
+     * @return This BatchPluginConfiguration instance for method chaining.
+     */
+    public BatchPluginConfiguration setLocationMinDistanceMeters(float locationMinDistanceMeters) {
+        if (locationMinDistanceMeters >= 0) {
+            this.locationMinDistanceMeters = locationMinDistanceMeters;
+        }
+        return this;
+    }
+
+    /**
+     * Get the minimum interval between two tracked locations, in milliseconds.
+     */
+    public long getLocationMinIntervalMillis() {
+        return locationMinIntervalMillis;
+    }
+
+    /**
+     * Set the minimum interval between two tracked locations.
+     * Locations dated less than this after the last tracked one are dropped. Defaults to 0 (disabled).
+     *
+     * @param locationMinIntervalMillis the minimum interval, in milliseconds.
+     * @return This BatchPluginConfiguration instance for method chaining.
+     */
+    public BatchPluginConfiguration setLocationMinIntervalMillis(long locationMinIntervalMillis) {
+        if (locationMinIntervalMillis >= 0) {
+            this.locationMinIntervalMillis = locationMinIntervalMillis;
+        }
+        return this;
+    }
+
+    /**
+     * Get the maximum accuracy radius of tracked locations, in meters.
+     */
+    public float getLocationMaxAccuracyMeters() {
+        return locationMaxAccuracyMeters;
+    }
+
+    /**
+     * Set the maximum accuracy radius of tracked locations.
+     * Locations with a larger accuracy radius are dropped. Defaults to 0 (disabled).
+     *
+     * @param locationMaxAccuracyMeters the maximum accuracy radius, in meters.
+     * @return This BatchPluginConfiguration instance for method chaining.
+     */
+    public BatchPluginConfiguration setLocationMaxAccuracyMeters(float locationMaxAccuracyMeters) {
+        if (locationMaxAccuracyMeters >= 0) {
+            this.locationMaxAccuracyMeters = locationMaxAccuracyMeters;
+        }
+        return this;
+    }
+
+    /**
+     * Get the per-action call timeouts, in milliseconds, by action name.
+     */
+    @NonNull
+    public Map<String, Long> getActionTimeoutsMillis() {
+        return Collections.unmodifiableMap(actionTimeoutsMillis);
+    }
+
+    /**
+     * Set the time after which a bridge action's calls are rejected with a "callTimeout" error if
+     * they haven't completed.
+     * Actions relying on an SDK callback, such as fetching attributes, default to 30 seconds.
+     *
+     * @param actionName    the bridge action name, such as "user.fetch.attributes".
+     * @param timeoutMillis the timeout, in milliseconds. 0 disables it.
+     * @return This BatchPluginConfiguration instance for method chaining.
+     */
+    public BatchPluginConfiguration setActionTimeoutMillis(@NonNull String actionName, long timeoutMillis) {
+        if (timeoutMillis >= 0) {
+            actionTimeoutsMillis.put(actionName, timeoutMillis);
+        }
+        return this;
+    }
+
+    /**
+     * Get whether the SDK is started after the app's first frame rather than during Application.onCreate().
+     */
+    public boolean isDeferredSetupEnabled() {
+        return deferredSetupEnabled;
+    }
+
+    /**
+     * Set whether {@link BatchFlutterPlugin#setup(Context)} should start the SDK once the first
+     * activity has drawn a frame and the main thread is idle, rather than during Application.onCreate(),
+     * to shorten the app's cold start. Processes that don't show any activity start it after a few seconds.
+     * Bridge calls and activity lifecycle events received before the SDK is started are queued and
+     * run in order once it is.
+     * Defaults to false.
+     *
+     * @param deferredSetupEnabled whether setup should be deferred.
+     * @return This BatchPluginConfiguration instance for method chaining.
+     */
+    public BatchPluginConfiguration setDeferredSetupEnabled(boolean deferredSetupEnabled) {
+        this.deferredSetupEnabled = deferredSetupEnabled;
+        return this;
+    }
+
+    /**
+     * Get how long bridge calls needing an activity wait for one, in milliseconds.
+     */
+    public long getActivityCallDeadlineMillis() {
+        return activityCallDeadlineMillis;
+    }
+
+    /**
+     * Set how long bridge calls needing an activity wait for one to be attached, such as during
+     * configuration changes, before failing. Defaults to 5000 milliseconds.
+     *
+     * @param activityCallDeadlineMillis the deadline, in milliseconds. 0 fails the calls right away.
+     * @return This BatchPluginConfiguration instance for method chaining.
+     */
+    public BatchPluginConfiguration setActivityCallDeadlineMillis(long activityCallDeadlineMillis) {
+        if (activityCallDeadlineMillis >= 0) {
+            this.activityCallDeadlineMillis = activityCallDeadlineMillis;
+        }
+        return this;
+    }
+
+    /**
+     * Get how long the background push engine is kept running once idle, in milliseconds.
+     */
+    public long getBackgroundEngineIdleTimeoutMillis() {
+        return backgroundEngineIdleTimeoutMillis;
+    }
+
+    /**
+     * Set how long the headless engine used by {@link BatchFlutterPlugin#dispatchBackgroundPush(Context, Map)}
+     * is kept running after the last payload has been handled, so that following pushes don't have to
+     * start it again. Defaults to 60000 milliseconds.
+     * <p>
+     * Must be set before the first background push is dispatched.
+     *
+     * @param backgroundEngineIdleTimeoutMillis the idle timeout, in milliseconds.
+     * @return This BatchPluginConfiguration instance for method chaining.
+     */
+    public BatchPluginConfiguration setBackgroundEngineIdleTimeoutMillis(long backgroundEngineIdleTimeoutMillis) {
+        if (backgroundEngineIdleTimeoutMillis >= 0) {
+            this.backgroundEngineIdleTimeoutMillis = backgroundEngineIdleTimeoutMillis;
+        }
+        return this;
+    }
     //endregion
 }
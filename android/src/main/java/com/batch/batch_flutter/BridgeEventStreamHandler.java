@@ -0,0 +1,78 @@
+package com.batch.batch_flutter;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.batch.batch_flutter.interop.BatchBridge;
+import com.batch.batch_flutter.interop.BridgeEvents;
+
+import io.flutter.plugin.common.EventChannel;
+
+/**
+ * Forwards a stream of {@link BridgeEvents} to Dart, through an event channel.
+ * <p>
+ * Events can be emitted from any thread: they're posted to the main thread, where event sinks
+ * must be called.
+ */
+final class BridgeEventStreamHandler implements EventChannel.StreamHandler {
+
+    @NonNull
+    private final BridgeEvents.Stream stream;
+
+    @NonNull
+    private final Context context;
+
+    private final Handler mainThreadHandler = new Handler(Looper.getMainLooper());
+
+    // Only accessed on the main thread
+    @Nullable
+    private EventChannel.EventSink sink;
+
+    @Nullable
+    private BridgeEvents.Listener listener;
+
+    BridgeEventStreamHandler(@NonNull BridgeEvents.Stream stream, @NonNull Context context) {
+        this.stream = stream;
+        this.context = context;
+    }
+
+    @Override
+    public void onListen(Object arguments, EventChannel.EventSink events) {
+        close();
+        sink = events;
+        final BridgeEvents.Listener newListener = new BridgeEvents.Listener() {
+            @Override
+            public void onEvent(@Nullable Object event) {
+                mainThreadHandler.post(() -> {
+                    // Dart might have stopped listening in the meantime
+                    if (listener == this && sink != null) {
+                        sink.success(event);
+                    }
+                });
+            }
+        };
+        listener = newListener;
+        BatchBridge.getEvents().addListener(stream, newListener);
+        BatchBridge.refreshEvents(stream, context);
+    }
+
+    @Override
+    public void onCancel(Object arguments) {
+        close();
+    }
+
+    /**
+     * Stop forwarding events. Must be called on the main thread.
+     */
+    void close() {
+        if (listener != null) {
+            BatchBridge.getEvents().removeListener(stream, listener);
+            listener = null;
+        }
+        sink = null;
+    }
+}
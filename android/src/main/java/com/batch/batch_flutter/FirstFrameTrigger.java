@@ -0,0 +1,105 @@
+package com.batch.batch_flutter;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Runs a task off the cold start path: once the first resumed activity has drawn a frame and the
+ * main thread has become idle.
+ * <p>
+ * Processes that don't show any activity, such as ones started to handle a push, run the task
+ * after a maximum delay instead.
+ * Must be started on the main thread. The task runs once, on the main thread.
+ */
+final class FirstFrameTrigger implements Application.ActivityLifecycleCallbacks {
+
+    @Nullable
+    private final Application application;
+
+    private final long maxDelayMillis;
+
+    @NonNull
+    private final Runnable task;
+
+    private final Handler mainThreadHandler = new Handler(Looper.getMainLooper());
+
+    private final Runnable timeout = this::run;
+
+    private boolean waitingForFrame = false;
+
+    private boolean done = false;
+
+    /**
+     * @param application    Application to watch the activities of. If null, the task runs after the maximum delay.
+     * @param maxDelayMillis Time after which the task runs if no activity has drawn a frame
+     */
+    FirstFrameTrigger(@Nullable Application application, long maxDelayMillis, @NonNull Runnable task) {
+        this.application = application;
+        this.maxDelayMillis = maxDelayMillis;
+        this.task = task;
+    }
+
+    void start() {
+        if (application != null) {
+            application.registerActivityLifecycleCallbacks(this);
+        }
+        mainThreadHandler.postDelayed(timeout, maxDelayMillis);
+    }
+
+    private void run() {
+        if (done) {
+            return;
+        }
+        done = true;
+        mainThreadHandler.removeCallbacks(timeout);
+        if (application != null) {
+            application.unregisterActivityLifecycleCallbacks(this);
+        }
+        task.run();
+    }
+
+    @Override
+    public void onActivityResumed(@NonNull Activity activity) {
+        if (done || waitingForFrame) {
+            return;
+        }
+        waitingForFrame = true;
+        // Frame callbacks run before the frame is drawn: wait for the main thread to be idle
+        // afterwards, which is once the frame has been drawn and pending messages handled
+        Choreographer.getInstance().postFrameCallback(frameTimeNanos -> Looper.myQueue().addIdleHandler(() -> {
+            run();
+            return false;
+        }));
+    }
+
+    @Override
+    public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityStarted(@NonNull Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(@NonNull Activity activity) {
+    }
+
+    @Override
+    public void onActivityStopped(@NonNull Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(@NonNull Activity activity) {
+    }
+}
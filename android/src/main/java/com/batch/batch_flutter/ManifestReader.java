@@ -9,11 +9,18 @@ import androidx.annotation.Nullable;
 
 /**
  * Simple manifest reader
+ * <p>
+ * Meta-data is read from the package manager once, on first use, as each read is a binder call.
  */
 class ManifestReader {
     @NonNull
     private final Context context;
 
+    @Nullable
+    private Bundle metadata;
+
+    private boolean didReadMetadata = false;
+
     ManifestReader(@NonNull Context context) {
         this.context = context.getApplicationContext();
     }
@@ -38,13 +45,17 @@ class ManifestReader {
 
     @Nullable
     private Bundle readMetadata() {
-        try {
-            return context
-                    .getPackageManager()
-                    .getApplicationInfo(context.getPackageName(), PackageManager.GET_META_DATA)
-                    .metaData;
-        } catch (PackageManager.NameNotFoundException e) {
-            return null;
+        if (!didReadMetadata) {
+            didReadMetadata = true;
+            try {
+                metadata = context
+                        .getPackageManager()
+                        .getApplicationInfo(context.getPackageName(), PackageManager.GET_META_DATA)
+                        .metaData;
+            } catch (PackageManager.NameNotFoundException e) {
+                metadata = null;
+            }
         }
+        return metadata;
     }
 }
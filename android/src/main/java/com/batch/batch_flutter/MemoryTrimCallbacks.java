@@ -0,0 +1,28 @@
+package com.batch.batch_flutter;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+
+import androidx.annotation.NonNull;
+
+import com.batch.batch_flutter.interop.BatchBridge;
+
+/**
+ * Releases the bridge's fetchers and caches when the system asks the app to trim its memory
+ */
+final class MemoryTrimCallbacks implements ComponentCallbacks2 {
+
+    @Override
+    public void onTrimMemory(int level) {
+        BatchBridge.onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        BatchBridge.onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+}
@@ -1,23 +1,59 @@
 package com.batch.batch_flutter;
 
-import java.util.ArrayDeque;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
- * A simple Promise-like implementation that is not thread-safe.
+ * A simple Promise-like implementation.
  * then() can't mutate the value.
  * <p>
+ * Settling and adding callbacks are lock-free, using compare-and-set.
+ * The first then and catch callbacks are stored in their own fields, as a promise rarely has more.
+ * Other callbacks are kept in a list, in the state field which eventually holds the settled result.
+ * Callbacks run in the order they've been added.
+ * <p>
  * Be careful: catch only works for an explicit rejection, NOT automatically for exceptions thrown in
  * ThenRunnables
  */
 public class Promise<T> {
-    private Status status = Status.PENDING;
-    private T resolvedValue = null;
-    private Exception rejectException = null;
-    private Executor executor = new CurrentThreadExecutor();
 
-    private final ArrayDeque<ThenRunnable<T>> thenQueue = new ArrayDeque<>(1);
-    private final ArrayDeque<CatchRunnable> catchQueue = new ArrayDeque<>(1);
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Promise, Object> STATE_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(Promise.class, Object.class, "state");
+
+    // The first callback fields are typed as Object, so that updaters don't have to check the
+    // type of written callbacks against their interface
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Promise, Object> FIRST_THEN_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(Promise.class, Object.class, "firstThen");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Promise, Object> FIRST_CATCH_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(Promise.class, Object.class, "firstCatch");
+
+    // Marks the first callback fields once they've been taken by whoever runs them
+    private static final Object CONSUMED = new Object();
+
+    // Shared results of the most common settled values
+    private static final Settled RESOLVED_NULL = new Settled(Status.RESOLVED, null, null);
+    private static final Settled RESOLVED_TRUE = new Settled(Status.RESOLVED, Boolean.TRUE, null);
+    private static final Settled RESOLVED_FALSE = new Settled(Status.RESOLVED, Boolean.FALSE, null);
+
+    /**
+     * Either null (pending), a {@link Callback} (pending, head of the list of callbacks added after
+     * the first ones, most recently added first) or a {@link Settled} result.
+     */
+    private volatile Object state = null;
+
+    // ThenRunnable<T>, or CONSUMED
+    private volatile Object firstThen = null;
+
+    // CatchRunnable, or CONSUMED
+    private volatile Object firstCatch = null;
+
+    /**
+     * Executor then/catch runnables are posted on. Null means the current thread.
+     */
+    private volatile Executor executor = null;
 
     public Promise() {
     }
@@ -45,90 +81,173 @@ public class Promise<T> {
 
     public static <T> Promise<T> resolved(T value) {
         final Promise<T> promise = new Promise<>();
-        promise.resolve(value);
+        promise.state = settledValue(value);
         return promise;
     }
 
     public static <T> Promise<T> rejected(Exception exception) {
         final Promise<T> promise = new Promise<>();
-        promise.reject(exception);
+        promise.state = new Settled(Status.REJECTED, null, exception);
         return promise;
     }
 
-    public synchronized void resolve(T value) {
-        if (status != Status.PENDING) {
-            return;
-        }
+    public void resolve(T value) {
+        settle(settledValue(value));
+    }
 
-        status = Status.RESOLVED;
-        resolvedValue = value;
+    public void reject(Exception exception) {
+        settle(new Settled(Status.REJECTED, null, exception));
+    }
 
-        ThenRunnable<T> thenRunnable;
-        while (!thenQueue.isEmpty()) {
-            thenRunnable = thenQueue.removeFirst();
-            postThenRunnable(thenRunnable, value);
-        }
+    public Promise<T> then(ThenRunnable<T> thenRunnable) {
+        addThen(thenRunnable);
+        return this;
     }
 
-    public synchronized void reject(Exception exception) {
-        if (status != Status.PENDING) {
-            return;
-        }
+    public Promise<T> catchException(CatchRunnable catchRunnable) {
+        addCatch(catchRunnable);
+        return this;
+    }
 
-        status = Status.REJECTED;
-        rejectException = exception;
+    public Status getStatus() {
+        final Object currentState = state;
+        return currentState instanceof Settled ? ((Settled) currentState).status : Status.PENDING;
+    }
 
-        CatchRunnable catchRunnable;
-        while (!catchQueue.isEmpty()) {
-            catchRunnable = catchQueue.removeFirst();
-            postCatchRunnable(catchRunnable, exception);
-        }
+    /**
+     * Set the executor then/catch runnables should be posted on
+     */
+    public Promise<T> setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
     }
 
-    public synchronized Promise<T> then(ThenRunnable<T> thenRunnable) {
-        switch (status) {
-            case PENDING:
-                thenQueue.push(thenRunnable);
-                break;
-            case RESOLVED:
-                postThenRunnable(thenRunnable, resolvedValue);
-                break;
+    private static Settled settledValue(Object value) {
+        if (value == null) {
+            return RESOLVED_NULL;
+        } else if (value == Boolean.TRUE) {
+            return RESOLVED_TRUE;
+        } else if (value == Boolean.FALSE) {
+            return RESOLVED_FALSE;
         }
-
-        return this;
+        return new Settled(Status.RESOLVED, value, null);
     }
 
-    public synchronized Promise<T> catchException(CatchRunnable catchRunnable) {
-        switch (status) {
-            case PENDING:
-                catchQueue.push(catchRunnable);
-                break;
-            case REJECTED:
-                postCatchRunnable(catchRunnable, rejectException);
-                break;
+    @SuppressWarnings("unchecked")
+    private void settle(Settled result) {
+        Object currentState;
+        do {
+            currentState = state;
+            if (currentState instanceof Settled) {
+                return;
+            }
+        } while (!STATE_UPDATER.compareAndSet(this, currentState, result));
+
+        // Take the first callback matching the result, unless a concurrent then() or catchException()
+        // saw the promise settled and already took it. Callbacks added after this read see the
+        // promise settled, and run themselves.
+        // The other one will never run: drop it, so that it doesn't keep what it captured alive.
+        if (result.status == Status.RESOLVED) {
+            final Object thenRunnable = firstThen;
+            if (thenRunnable != null && FIRST_THEN_UPDATER.compareAndSet(this, thenRunnable, CONSUMED)) {
+                post((ThenRunnable<T>) thenRunnable, null, result);
+            }
+            firstCatch = CONSUMED;
+        } else {
+            final Object catchRunnable = firstCatch;
+            if (catchRunnable != null && FIRST_CATCH_UPDATER.compareAndSet(this, catchRunnable, CONSUMED)) {
+                post(null, (CatchRunnable) catchRunnable, result);
+            }
+            firstThen = CONSUMED;
         }
 
-        return this;
+        // Other callbacks are stored most recent first: reverse them to run them in order
+        Callback callback = (Callback) currentState;
+        Callback ordered = null;
+        while (callback != null) {
+            final Callback next = callback.next;
+            callback.next = ordered;
+            ordered = callback;
+            callback = next;
+        }
+
+        while (ordered != null) {
+            post(ordered.thenRunnable, ordered.catchRunnable, result);
+            ordered = ordered.next;
+        }
     }
 
-    public Status getStatus() {
-        return status;
+    private void addThen(ThenRunnable<T> thenRunnable) {
+        if (thenRunnable == null) {
+            return;
+        }
+        if (!(state instanceof Settled) && firstThen == null && FIRST_THEN_UPDATER.compareAndSet(this, null, thenRunnable)) {
+            // The promise might have been settled before it could see the callback
+            final Object currentState = state;
+            if (currentState instanceof Settled && FIRST_THEN_UPDATER.compareAndSet(this, thenRunnable, CONSUMED)) {
+                post(thenRunnable, null, (Settled) currentState);
+            }
+            return;
+        }
+        addCallback(thenRunnable, null);
     }
 
-    private void postThenRunnable(ThenRunnable<T> thenRunnable, T value) {
-        executor.execute(() -> thenRunnable.run(value));
+    private void addCatch(CatchRunnable catchRunnable) {
+        if (catchRunnable == null) {
+            return;
+        }
+        if (!(state instanceof Settled) && firstCatch == null && FIRST_CATCH_UPDATER.compareAndSet(this, null, catchRunnable)) {
+            // The promise might have been settled before it could see the callback
+            final Object currentState = state;
+            if (currentState instanceof Settled && FIRST_CATCH_UPDATER.compareAndSet(this, catchRunnable, CONSUMED)) {
+                post(null, catchRunnable, (Settled) currentState);
+            }
+            return;
+        }
+        addCallback(null, catchRunnable);
     }
 
-    private void postCatchRunnable(CatchRunnable catchRunnable, Exception exception) {
-        executor.execute(() -> catchRunnable.run(exception));
+    private void addCallback(ThenRunnable<T> thenRunnable, CatchRunnable catchRunnable) {
+        Callback callback = null;
+        Object currentState;
+        while (true) {
+            currentState = state;
+            if (currentState instanceof Settled) {
+                post(thenRunnable, catchRunnable, (Settled) currentState);
+                return;
+            }
+            if (callback == null) {
+                callback = new Callback(thenRunnable, catchRunnable);
+            }
+            callback.next = (Callback) currentState;
+            if (STATE_UPDATER.compareAndSet(this, currentState, callback)) {
+                return;
+            }
+        }
     }
 
-    /**
-     * Set the executor then/catch runnables should be posted on
-     */
-    public synchronized Promise<T> setExecutor(Executor executor) {
-        this.executor = executor;
-        return this;
+    @SuppressWarnings("unchecked")
+    private void post(ThenRunnable<T> thenRunnable, CatchRunnable catchRunnable, Settled result) {
+        final Executor currentExecutor = executor;
+        if (result.status == Status.RESOLVED) {
+            if (thenRunnable == null) {
+                return;
+            }
+            if (currentExecutor == null) {
+                thenRunnable.run((T) result.value);
+            } else {
+                currentExecutor.execute(() -> thenRunnable.run((T) result.value));
+            }
+        } else {
+            if (catchRunnable == null) {
+                return;
+            }
+            if (currentExecutor == null) {
+                catchRunnable.run(result.exception);
+            } else {
+                currentExecutor.execute(() -> catchRunnable.run(result.exception));
+            }
+        }
     }
 
     /**
@@ -160,9 +279,32 @@ public class Promise<T> {
         REJECTED
     }
 
-    private static class CurrentThreadExecutor implements Executor {
-        public void execute(Runnable r) {
-            r.run();
+    /**
+     * A then or catch callback, added while the promise was pending
+     */
+    private static final class Callback {
+        final ThenRunnable thenRunnable;
+        final CatchRunnable catchRunnable;
+        Callback next;
+
+        Callback(ThenRunnable thenRunnable, CatchRunnable catchRunnable) {
+            this.thenRunnable = thenRunnable;
+            this.catchRunnable = catchRunnable;
+        }
+    }
+
+    /**
+     * Result of a settled promise
+     */
+    private static final class Settled {
+        final Status status;
+        final Object value;
+        final Exception exception;
+
+        Settled(Status status, Object value, Exception exception) {
+            this.status = status;
+            this.value = value;
+            this.exception = exception;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,31 @@
+package com.batch.batch_flutter;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import androidx.annotation.NonNull;
+import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+
+import com.batch.android.Batch;
+import com.batch.batch_flutter.interop.BatchBridge;
+
+/**
+ * Forwards the push tokens obtained by the SDK to the bridge, so that the push token event channel
+ * is notified of them
+ */
+final class PushTokenReceiver extends BroadcastReceiver {
+
+    static void register(@NonNull Context context) {
+        LocalBroadcastManager.getInstance(context.getApplicationContext())
+                .registerReceiver(new PushTokenReceiver(), new IntentFilter(Batch.ACTION_REGISTRATION_IDENTIFIER_OBTAINED));
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (Batch.ACTION_REGISTRATION_IDENTIFIER_OBTAINED.equals(intent.getAction())) {
+            BatchBridge.onPushTokenObtained(intent.getStringExtra(Batch.EXTRA_REGISTRATION_IDENTIFIER));
+        }
+    }
+}
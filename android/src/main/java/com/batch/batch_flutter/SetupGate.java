@@ -0,0 +1,76 @@
+package com.batch.batch_flutter;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+
+/**
+ * Holds work that needs the plugin to be setup until it is, when setup is deferred.
+ * <p>
+ * Work is run in the order it has been submitted: once opened, the gate only lets new work run
+ * directly after everything queued before has run.
+ */
+final class SetupGate {
+
+    private final Object lock = new Object();
+
+    private final ArrayDeque<Runnable> pendingWork = new ArrayDeque<>();
+
+    private final int capacity;
+
+    private volatile boolean open = false;
+
+    SetupGate(int capacity) {
+        this.capacity = capacity;
+    }
+
+    boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Run work right away if the gate is open, or queue it until it is.
+     *
+     * @return false if the work couldn't be queued, because too much is pending already
+     */
+    boolean runWhenOpen(@NonNull Runnable work) {
+        synchronized (lock) {
+            if (!open) {
+                if (pendingWork.size() >= capacity) {
+                    return false;
+                }
+                pendingWork.add(work);
+                return true;
+            }
+        }
+        work.run();
+        return true;
+    }
+
+    /**
+     * Run the queued work in order on the calling thread, then let new work run directly.
+     */
+    void open() {
+        while (true) {
+            final Runnable work;
+            synchronized (lock) {
+                work = pendingWork.poll();
+                if (work == null) {
+                    open = true;
+                    return;
+                }
+            }
+            try {
+                work.run();
+            } catch (Exception e) {
+                BatchFlutterLogger.e("Work queued until setup failed", e);
+            }
+        }
+    }
+
+    int getPendingCount() {
+        synchronized (lock) {
+            return pendingWork.size();
+        }
+    }
+}
@@ -29,6 +29,7 @@ enum Action
 	PROFILE_EDIT("profile.edit"),
 	PROFILE_TRACK_EVENT("profile.track.event"),
     PROFILE_TRACK_LOCATION("profile.track.location"),
+    PROFILE_TRACK_LOCATIONS("profile.track.locations"),
 
     USER_GET_IDENTIFIER("user.getIdentifier"),
     USER_GET_LANGUAGE("user.getLanguage"),
@@ -38,6 +39,12 @@ enum Action
     USER_FETCH_TAGS("user.fetch.tags"),
     USER_CLEAR_INSTALLATION_DATA("user.clearInstallationData"),
     DEBUG_SHOW_DEBUG_VIEW("debug.showDebugView"),
+    DEBUG_EVENT_BUFFER_METRICS("debug.eventBufferMetrics"),
+    DEBUG_EVENT_SCHEMA_CACHE_METRICS("debug.eventSchemaCacheMetrics"),
+    DEBUG_LOCATION_METRICS("debug.locationMetrics"),
+    DEBUG_PENDING_CALLS("debug.pendingCalls"),
+    DEBUG_STARTUP_TIMINGS("debug.startupTimings"),
+    DEBUG_BRIDGE_METRICS("debug.bridgeMetrics"),
 
     INBOX_CREATE_INSTALLATION_FETCHER("inbox.createInstallationFetcher"),
     INBOX_CREATE_USER_FETCHER("inbox.createUserFetcher"),
@@ -50,13 +57,16 @@ enum Action
     INBOX_MARK_AS_DELETED("inbox.markAsDeleted"),
     INBOX_DISPLAY_LANDING("inbox.displayLandingMessage"),
 
+    BRIDGE_BATCH("bridge.batch"),
+    BRIDGE_CANCEL("bridge.cancel"),
+
     /// For testing
     ECHO("echo");
 
     /**
      * Action name, the one passed as a paremeter in {@link com.batch.batch_flutter.interop.BatchBridge}
      */
-    private String name;
+    private final String name;
 
     /**
      * Init an action with its string representation
@@ -73,24 +83,4 @@ enum Action
     {
         return name;
     }
-
-    /**
-     * Create an Action from its string name.
-     *
-     * @throws IllegalArgumentException Thrown when the supplied name doesn't match any known action
-     * @param actionName Action name
-     * @return Action
-     */
-    public static Action fromName(String actionName) throws IllegalArgumentException
-    {
-        for (Action parameterValue : values())
-        {
-            if (parameterValue.getName().equalsIgnoreCase(actionName))
-            {
-                return parameterValue;
-            }
-        }
-
-        throw new IllegalArgumentException("Unknown action.");
-    }
 }
@@ -0,0 +1,24 @@
+package com.batch.batch_flutter.interop;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.batch.batch_flutter.Promise;
+
+import java.util.Map;
+
+/**
+ * Implementation of a single bridge {@link Action}.
+ * <p>
+ * Handlers are bound to their action once, in {@link ActionRegistry}, so that dispatching a call
+ * doesn't need to go through a switch.
+ * <p>
+ * Handlers are given the current activity, unless their route declared that the application context
+ * is enough, in which case they might be given either. They're also given the session of the engine
+ * making the call.
+ */
+interface ActionHandler {
+    @NonNull
+    Promise<Object> handle(@NonNull Map<String, Object> parameters, @NonNull Context context, @NonNull BridgeSession session) throws BatchBridgeException, BatchBridgeNotImplementedException;
+}
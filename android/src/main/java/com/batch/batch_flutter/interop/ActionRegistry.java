@@ -0,0 +1,92 @@
+package com.batch.batch_flutter.interop;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.batch.batch_flutter.interop.ActionRoute.ContextRequirement;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Precomputed action name to {@link ActionRoute} index.
+ * <p>
+ * Routes are registered once when the bridge is created: looking up a route afterwards is a single
+ * hash lookup, and doesn't allocate.
+ */
+final class ActionRegistry {
+
+    private final Map<String, ActionRoute> routesByName = new HashMap<>();
+
+    private final Map<String, ActionRoute> routesByLowercaseName = new HashMap<>();
+
+    private final EnumMap<Action, ActionRoute> routesByAction = new EnumMap<>(Action.class);
+
+    /**
+     * Register a handler for an action. Registering an action twice replaces the previous handler.
+     */
+    void register(@NonNull Action action,
+                  @NonNull ActionRoute.Threading threading,
+                  @NonNull ActionHandler handler) {
+        ActionRoute route = new ActionRoute(action, threading, handler);
+        routesByName.put(action.getName(), route);
+        routesByLowercaseName.put(action.getName().toLowerCase(Locale.ROOT), route);
+        routesByAction.put(action, route);
+    }
+
+    /**
+     * Set the timeout of an already registered action.
+     *
+     * @param timeoutMillis Time after which a call's promise is rejected. 0 means no timeout.
+     */
+    void setTimeout(@NonNull Action action, long timeoutMillis) {
+        ActionRoute route = routesByAction.get(action);
+        if (route != null) {
+            route.timeoutMillis = Math.max(0, timeoutMillis);
+        }
+    }
+
+    /**
+     * Set the context already registered actions need. Actions need an activity by default.
+     */
+    void setContextRequirement(@NonNull ContextRequirement requirement, @NonNull Action... actions) {
+        for (Action action : actions) {
+            ActionRoute route = routesByAction.get(action);
+            if (route != null) {
+                route.contextRequirement = requirement;
+            }
+        }
+    }
+
+    /**
+     * Find the route for an action name.
+     * <p>
+     * Action names are matched case insensitively, but the exact name is tried first as that is
+     * what the Dart side sends.
+     *
+     * @return The matching route, or null if no handler has been registered for this name.
+     */
+    @Nullable
+    ActionRoute find(@Nullable String actionName) {
+        if (actionName == null) {
+            return null;
+        }
+        ActionRoute route = routesByName.get(actionName);
+        if (route == null) {
+            route = routesByLowercaseName.get(actionName.toLowerCase(Locale.ROOT));
+        }
+        return route;
+    }
+
+    /**
+     * Get the route for an action.
+     *
+     * @return The matching route, or null if no handler has been registered for this action.
+     */
+    @Nullable
+    ActionRoute get(@NonNull Action action) {
+        return routesByAction.get(action);
+    }
+}
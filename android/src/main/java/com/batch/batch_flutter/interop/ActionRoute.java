@@ -0,0 +1,62 @@
+package com.batch.batch_flutter.interop;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Binds an {@link Action} to its {@link ActionHandler}, along with the execution requirements
+ * the handler declared.
+ */
+final class ActionRoute {
+
+    /**
+     * Thread a handler must be executed on
+     */
+    enum Threading {
+        /**
+         * The handler can be executed from any thread, including a background one.
+         */
+        ANY,
+        /**
+         * The handler touches the UI or the Activity and must be executed on the main thread.
+         */
+        MAIN
+    }
+
+    /**
+     * Context a handler needs
+     */
+    enum ContextRequirement {
+        /**
+         * The handler only needs a context, or none at all. It can run while no activity is
+         * attached, such as in a headless engine, and is then given the application context.
+         */
+        APPLICATION,
+        /**
+         * The handler shows UI or forwards the activity to the SDK, and must be given the current activity.
+         */
+        ACTIVITY
+    }
+
+    @NonNull
+    final Action action;
+
+    @NonNull
+    final ActionHandler handler;
+
+    @NonNull
+    final Threading threading;
+
+    /**
+     * Time after which a call's promise is rejected if it hasn't been settled. 0 means no timeout.
+     */
+    volatile long timeoutMillis = 0;
+
+    @NonNull
+    volatile ContextRequirement contextRequirement = ContextRequirement.ACTIVITY;
+
+    ActionRoute(@NonNull Action action, @NonNull Threading threading, @NonNull ActionHandler handler) {
+        this.action = action;
+        this.handler = handler;
+        this.threading = threading;
+    }
+}
@@ -1,40 +1,45 @@
 package com.batch.batch_flutter.interop;
 
-import static com.batch.batch_flutter.interop.BatchBridgeUtils.convertSerializedEventDataToEventAttributes;
 import static com.batch.batch_flutter.interop.BatchBridgeUtils.getOptionalTypedParameter;
 import static com.batch.batch_flutter.interop.BatchBridgeUtils.getTypedParameter;
 
 import android.app.Activity;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.location.Location;
-import android.util.Log;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.batch.android.Batch;
 import com.batch.android.BatchAttributesFetchListener;
 import com.batch.android.BatchDataCollectionConfig;
-import com.batch.android.BatchEmailSubscriptionState;
 import com.batch.android.BatchEventAttributes;
 import com.batch.android.BatchMessage;
 import com.batch.android.BatchOptOutResultListener;
 import com.batch.android.BatchPermissionListener;
 import com.batch.android.BatchProfileAttributeEditor;
 import com.batch.android.BatchPushRegistration;
-import com.batch.android.BatchSMSSubscriptionState;
 import com.batch.android.BatchTagCollectionsFetchListener;
 import com.batch.android.BatchUserAttribute;
 import com.batch.batch_flutter.BatchFlutterLogger;
+import com.batch.batch_flutter.BatchFlutterStartupTimings;
 import com.batch.batch_flutter.Promise;
+import com.batch.batch_flutter.interop.ActionRoute.ContextRequirement;
+import com.batch.batch_flutter.interop.ActionRoute.Threading;
 
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Bridge that allows code to use Batch's APIs via an action+parameters request, to easily bridge it to some kind of JSON RPC
@@ -47,18 +52,80 @@ public class BatchBridge {
 
     private static final String BRIDGE_VERSION = "Bridge/3.1";
 
+    /**
+     * Default timeout of the actions settled by an SDK listener
+     */
+    private static final long LISTENER_TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * Optional parameter of any call, allowing it to be cancelled using {@link Action#BRIDGE_CANCEL}
+     */
+    private static final String CALL_TOKEN_PARAMETER = "callToken";
+
     private static final InboxBridge inboxBridge = new InboxBridge();
 
+    private static final ActionRegistry registry = createRegistry();
+
+    private static final Handler mainThreadHandler = new Handler(Looper.getMainLooper());
+
+    @Nullable
+    private static ScheduledExecutorService backgroundExecutor = null;
+
+    @Nullable
+    private static PendingCallWatchdog pendingCallWatchdog = null;
+
+    @NonNull
+    private static volatile EventAttributesConverter eventAttributesConverter = new EventAttributesConverter(
+            EventAttributesConverter.DEFAULT_MAX_DEPTH, EventAttributesConverter.DEFAULT_MAX_ATTRIBUTES);
+
+    @NonNull
+    private static volatile LocationThrottle locationThrottle = new LocationThrottle(0, 0, 0);
+
+    private static final BridgeEvents events = new BridgeEvents();
+
+    private static final BridgeMetrics metrics = new BridgeMetrics();
+
+    private static final EventSchemaCache eventSchemaCache = new EventSchemaCache(EventSchemaCache.DEFAULT_CAPACITY);
+
+    @Nullable
+    private static volatile EventBuffer eventBuffer = null;
+
+    @Nullable
+    private static volatile ProfileEditCoalescer profileEditCoalescer = null;
+
+    @Nullable
+    private static volatile ProfileSnapshot profileSnapshot = null;
+
+    // Actions waiting on the background executor for pending work to be handed to the SDK
+    private static final AtomicInteger pendingWorkActions = new AtomicInteger();
+
     static {
         System.setProperty(BRIDGE_VERSION_ENVIRONEMENT_VAR, BRIDGE_VERSION);
     }
 
     @SuppressWarnings("unused")
-    public static Promise<Object> call(String action, Map<String, Object> parameters, Activity activity) {
+    public static Promise<Object> call(String action, Map<String, Object> parameters, Context context) {
+        return call(action, parameters, context, BridgeSession.DEFAULT);
+    }
+
+    /**
+     * Make a bridge call on behalf of an engine's session
+     */
+    public static Promise<Object> call(String action, Map<String, Object> parameters, Context context, @NonNull BridgeSession session) {
+        return call(action, parameters, context, session, System.nanoTime());
+    }
+
+    /**
+     * Make a bridge call on behalf of an engine's session
+     *
+     * @param receivedAtNanos {@link System#nanoTime()} when the call was received, so that the time
+     *                        it waited before reaching the bridge is part of its metrics
+     */
+    public static Promise<Object> call(String action, Map<String, Object> parameters, Context context, @NonNull BridgeSession session, long receivedAtNanos) {
         Promise<Object> result;
 
         try {
-            result = doAction(action, parameters, activity);
+            result = doAction(action, parameters, context, session, receivedAtNanos);
         } catch (Exception e) {
             result = Promise.rejected(e);
         }
@@ -67,135 +134,246 @@ public class BatchBridge {
     }
 
     @NonNull
-    private static Promise<Object> doAction(String actionName, Map<String, Object> parameters, Activity activity) throws BatchBridgeException, BatchBridgeNotImplementedException {
+    private static Promise<Object> doAction(String actionName, Map<String, Object> parameters, Context context, @NonNull BridgeSession session, long receivedAtNanos) throws BatchBridgeException, BatchBridgeNotImplementedException {
         if (actionName == null || actionName.isEmpty()) {
             throw new BatchBridgeException(BatchBridgePublicErrorCode.INTERNAL_BRIDGE_ERROR, "Invalid parameter : Empty or null action");
         }
 
-        Action action;
-        try {
-            action = Action.fromName(actionName);
-        } catch (IllegalArgumentException actionParsingException) {
+        ActionRoute route = registry.find(actionName);
+        if (route == null) {
             BatchFlutterLogger.e("Bridge action '" + actionName + "' is not implemented.");
             throw new BatchBridgeNotImplementedException(actionName);
         }
 
-        switch (action) {
-            case OPT_IN:
-                optIn(activity);
-                return Promise.resolved(null);
-            case OPT_OUT:
-                return optOut(activity, false);
-            case OPT_OUT_AND_WIPE_DATA:
-                return optOut(activity, true);
-            case IS_OPTED_OUT:
-                return Promise.resolved(Batch.isOptedOut(activity));
-            case SET_AUTOMATIC_DATA_COLLECTION:
-                setAutomaticDataCollection(parameters);
-                return Promise.resolved(null);
-            case MESSAGING_SET_DO_NOT_DISTURB_ENABLED:
-                Batch.Messaging.setDoNotDisturbEnabled(getTypedParameter(parameters, "enabled", Boolean.class));
-                return Promise.resolved(null);
-            case MESSAGING_SHOW_PENDING_MESSAGE:
-                showPendingMessage(activity);
-                return Promise.resolved(null);
-            case PUSH_GET_LAST_KNOWN_TOKEN:
-                return Promise.resolved(getLastKnownPushToken());
-            case PUSH_DISMISS_NOTIFICATIONS:
-                dismissNotifications();
-                return Promise.resolved(null);
-            case PUSH_SET_SHOW_NOTIFICATIONS:
-                setShowNotifications(parameters);
-                return Promise.resolved(null);
-            case PUSH_SHOULD_SHOW_NOTIFICATIONS:
-                return Promise.resolved(shouldShowNotifications(activity));
-            case PUSH_REQUEST_PERMISSION:
-                Batch.Push.requestNotificationPermission(activity);
-                return Promise.resolved(null);
-            case PUSH_REQUEST_PERMISSION_ASYNC:
-                return requestNotificationPermission(activity);
-            case PUSH_IOS_REFRESH_TOKEN:
-            case PUSH_IOS_REQUEST_PROVISIONAL_PERMISSION:
-            case PUSH_CLEAR_BADGE:
-            case PUSH_IOS_SET_SHOW_FOREGROUND:
-                // iOS only, do nothing
-                return Promise.resolved(null);
-            case USER_GET_INSTALLATION_ID:
-                return Promise.resolved(Batch.User.getInstallationID());
-            case USER_GET_IDENTIFIER:
-                return Promise.resolved(Batch.User.getIdentifier(activity));
-            case USER_GET_LANGUAGE:
-                return Promise.resolved(Batch.User.getLanguage(activity));
-            case USER_GET_REGION:
-                return Promise.resolved(Batch.User.getRegion(activity));
-            case USER_CLEAR_INSTALLATION_DATA:
-                Batch.User.clearInstallationData();
-                return Promise.resolved(null);
-            case PROFILE_IDENTIFY:
-                identify(parameters);
-                return Promise.resolved(null);
-            case PROFILE_EDIT:
-                editProfileAttributes(parameters);
-                return Promise.resolved(null);
-            case PROFILE_TRACK_EVENT:
-                return trackEvent(parameters);
-            case PROFILE_TRACK_LOCATION:
-                trackLocation(parameters);
-                return Promise.resolved(null);
-            case USER_FETCH_ATTRIBUTES:
-                return userFetchAttributes(activity);
-            case USER_FETCH_TAGS:
-                return userFetchTags(activity);
-            case DEBUG_SHOW_DEBUG_VIEW:
-                showDebugView(activity);
-                return Promise.resolved(null);
-
-            case INBOX_CREATE_INSTALLATION_FETCHER:
-            case INBOX_CREATE_USER_FETCHER:
-            case INBOX_RELEASE_FETCHER:
-            case INBOX_FETCH_NEW_NOTIFICATIONS:
-            case INBOX_FETCH_NEXT_PAGE:
-            case INBOX_GET_FETCHED_NOTIFICATIONS:
-            case INBOX_MARK_AS_READ:
-            case INBOX_MARK_ALL_AS_READ:
-            case INBOX_MARK_AS_DELETED:
-            case INBOX_DISPLAY_LANDING:
-                return inboxBridge.doAction(action, parameters, activity);
+        final BridgeMetrics.Call timing = metrics.startCall(route.action, receivedAtNanos);
+        final Promise<Object> promise;
+        try {
+            if (route.contextRequirement == ContextRequirement.ACTIVITY && !(context instanceof Activity)) {
+                throw new BatchBridgeException(BatchBridgePublicErrorCode.NOT_ATTACHED_TO_ACTIVITY,
+                        "'" + actionName + "' needs batch_flutter to be attached to an activity");
+            }
 
-            case ECHO:
-                return Promise.resolved(parameters.get("value"));
-            default:
-                throw new BatchBridgeNotImplementedException(actionName);
+            if (route.threading == Threading.MAIN && Looper.myLooper() != Looper.getMainLooper()) {
+                promise = runOnMainThread(route, parameters, context, session, timing);
+            } else {
+                timing.start();
+                promise = route.handler.handle(parameters, context, session);
+            }
+        } catch (Exception e) {
+            timing.finish(e);
+            throw e;
         }
+
+        final Object token = parameters != null ? parameters.get(CALL_TOKEN_PARAMETER) : null;
+        final Promise<Object> trackedPromise = getPendingCallWatchdog().track(route.action.getName(), promise, session,
+                token instanceof String ? (String) token : null, route.timeoutMillis);
+        // Added before the caller's callbacks, so that metrics are recorded right before the result is sent
+        trackedPromise.then(value -> timing.finish(null)).catchException(timing::finish);
+        return trackedPromise;
+    }
+
+    /**
+     * Execute a route's handler on the main thread, forwarding its result to the returned promise.
+     * Used when the bridge is called from a background task queue.
+     */
+    @NonNull
+    private static Promise<Object> runOnMainThread(@NonNull ActionRoute route, Map<String, Object> parameters, Context context,
+                                                   @NonNull BridgeSession session, @NonNull BridgeMetrics.Call timing) {
+        return new Promise<>(promise -> mainThreadHandler.post(() -> {
+            timing.start();
+            Promise<Object> handlerPromise;
+            try {
+                handlerPromise = route.handler.handle(parameters, context, session);
+            } catch (Exception e) {
+                promise.reject(e);
+                return;
+            }
+            handlerPromise.then(promise::resolve).catchException(promise::reject);
+            // Forward cancellations and timeouts, so that the handler can skip building its response
+            promise.catchException(handlerPromise::reject);
+        }));
     }
 
+    /**
+     * Build the action routing table.
+     * New actions should be registered here (or in {@link InboxBridge#registerActions(ActionRegistry)}
+     * for inbox ones).
+     */
+    @NonNull
+    private static ActionRegistry createRegistry() {
+        final ActionRegistry r = new ActionRegistry();
+
+        r.register(Action.OPT_IN, Threading.MAIN, (parameters, context, session) -> {
+            optIn((Activity) context);
+            return Promise.resolved(null);
+        });
+        // Pending edits and buffered events have been made before opting out: hand them to the SDK first
+        r.register(Action.OPT_OUT, Threading.ANY, afterPendingWork((parameters, context, session) -> optOut(context, false)));
+        r.register(Action.OPT_OUT_AND_WIPE_DATA, Threading.ANY, afterPendingWork((parameters, context, session) -> optOut(context, true)));
+        r.register(Action.IS_OPTED_OUT, Threading.ANY, (parameters, context, session) -> Promise.resolved(Batch.isOptedOut(context)));
+        r.register(Action.SET_AUTOMATIC_DATA_COLLECTION, Threading.ANY, (parameters, context, session) -> {
+            setAutomaticDataCollection(parameters);
+            return Promise.resolved(null);
+        });
+
+        r.register(Action.MESSAGING_SET_DO_NOT_DISTURB_ENABLED, Threading.ANY, (parameters, context, session) -> {
+            Batch.Messaging.setDoNotDisturbEnabled(getTypedParameter(parameters, "enabled", Boolean.class));
+            return Promise.resolved(null);
+        });
+        r.register(Action.MESSAGING_SHOW_PENDING_MESSAGE, Threading.MAIN, (parameters, context, session) -> {
+            showPendingMessage((Activity) context);
+            return Promise.resolved(null);
+        });
+
+        r.register(Action.PUSH_GET_LAST_KNOWN_TOKEN, Threading.ANY, (parameters, context, session) -> Promise.resolved(getLastKnownPushToken()));
+        r.register(Action.PUSH_DISMISS_NOTIFICATIONS, Threading.ANY, (parameters, context, session) -> {
+            dismissNotifications();
+            return Promise.resolved(null);
+        });
+        r.register(Action.PUSH_SET_SHOW_NOTIFICATIONS, Threading.ANY, (parameters, context, session) -> {
+            Batch.Push.setShowNotifications(getTypedParameter(parameters, "enabled", Boolean.class));
+            return Promise.resolved(null);
+        });
+        r.register(Action.PUSH_SHOULD_SHOW_NOTIFICATIONS, Threading.ANY, (parameters, context, session) -> Promise.resolved(shouldShowNotifications(context)));
+        r.register(Action.PUSH_REQUEST_PERMISSION, Threading.MAIN, (parameters, context, session) -> {
+            Batch.Push.requestNotificationPermission(context);
+            return Promise.resolved(null);
+        });
+        r.register(Action.PUSH_REQUEST_PERMISSION_ASYNC, Threading.MAIN, (parameters, context, session) -> requestNotificationPermission(context));
+        // iOS only, do nothing
+        final ActionHandler iOSOnlyHandler = (parameters, context, session) -> Promise.resolved(null);
+        r.register(Action.PUSH_IOS_REFRESH_TOKEN, Threading.ANY, iOSOnlyHandler);
+        r.register(Action.PUSH_IOS_REQUEST_PROVISIONAL_PERMISSION, Threading.ANY, iOSOnlyHandler);
+        r.register(Action.PUSH_CLEAR_BADGE, Threading.ANY, iOSOnlyHandler);
+        r.register(Action.PUSH_IOS_SET_SHOW_FOREGROUND, Threading.ANY, iOSOnlyHandler);
+
+        r.register(Action.USER_GET_INSTALLATION_ID, Threading.ANY, (parameters, context, session) -> Promise.resolved(Batch.User.getInstallationID()));
+        r.register(Action.USER_GET_IDENTIFIER, Threading.ANY, (parameters, context, session) -> Promise.resolved(Batch.User.getIdentifier(context)));
+        r.register(Action.USER_GET_LANGUAGE, Threading.ANY, (parameters, context, session) -> Promise.resolved(Batch.User.getLanguage(context)));
+        r.register(Action.USER_GET_REGION, Threading.ANY, (parameters, context, session) -> Promise.resolved(Batch.User.getRegion(context)));
+        r.register(Action.USER_CLEAR_INSTALLATION_DATA, Threading.ANY, (parameters, context, session) -> {
+            Batch.User.clearInstallationData();
+            return Promise.resolved(null);
+        });
+        r.register(Action.USER_FETCH_ATTRIBUTES, Threading.ANY,
+                (parameters, context, session) -> userFetchAttributes(context, getOptionalTypedParameter(parameters, "typedAttributes", Boolean.class, false)));
+        r.register(Action.USER_FETCH_TAGS, Threading.ANY, (parameters, context, session) -> userFetchTags(context));
+
+        r.register(Action.PROFILE_IDENTIFY, Threading.ANY, afterPendingWork((parameters, context, session) -> {
+            // Pending edits and buffered events belong to the previous profile
+            identify(parameters);
+            return Promise.resolved(null);
+        }));
+        r.register(Action.PROFILE_EDIT, Threading.ANY, (parameters, context, session) -> editProfileAttributes(parameters));
+        r.register(Action.PROFILE_TRACK_EVENT, Threading.ANY, (parameters, context, session) -> trackEvent(parameters));
+        r.register(Action.PROFILE_TRACK_LOCATION, Threading.ANY, (parameters, context, session) -> {
+            trackLocation(parameters);
+            return Promise.resolved(null);
+        });
+        r.register(Action.PROFILE_TRACK_LOCATIONS, Threading.ANY, (parameters, context, session) -> Promise.resolved(trackLocations(parameters)));
+
+        r.register(Action.DEBUG_EVENT_BUFFER_METRICS, Threading.ANY, (parameters, context, session) -> Promise.resolved(getEventBufferMetrics()));
+        r.register(Action.DEBUG_EVENT_SCHEMA_CACHE_METRICS, Threading.ANY, (parameters, context, session) -> Promise.resolved(eventSchemaCache.getStats()));
+        r.register(Action.DEBUG_LOCATION_METRICS, Threading.ANY, (parameters, context, session) -> Promise.resolved(locationThrottle.getStats()));
+        r.register(Action.DEBUG_PENDING_CALLS, Threading.ANY, (parameters, context, session) -> Promise.resolved(getPendingCallWatchdog().getStats()));
+        r.register(Action.DEBUG_BRIDGE_METRICS, Threading.ANY, (parameters, context, session) -> Promise.resolved(metrics.getStats()));
+        r.register(Action.DEBUG_STARTUP_TIMINGS, Threading.ANY, (parameters, context, session) -> Promise.resolved(BatchFlutterStartupTimings.getTimings()));
+        r.register(Action.DEBUG_SHOW_DEBUG_VIEW, Threading.MAIN, (parameters, context, session) -> {
+            showDebugView((Activity) context);
+            return Promise.resolved(null);
+        });
+
+        inboxBridge.registerActions(r);
 
+        r.register(Action.BRIDGE_BATCH, Threading.ANY, BridgeCallBatch::execute);
+        r.register(Action.BRIDGE_CANCEL, Threading.ANY,
+                (parameters, context, session) -> Promise.resolved(getPendingCallWatchdog().cancel(session, getTypedParameter(parameters, "token", String.class))));
+
+        r.register(Action.ECHO, Threading.ANY, (parameters, context, session) -> Promise.resolved(parameters.get("value")));
+
+        // Actions settled by an SDK listener, which might never be called
+        for (Action action : new Action[]{Action.OPT_OUT, Action.OPT_OUT_AND_WIPE_DATA,
+                Action.USER_FETCH_ATTRIBUTES, Action.USER_FETCH_TAGS,
+                Action.INBOX_FETCH_NEW_NOTIFICATIONS, Action.INBOX_FETCH_NEXT_PAGE}) {
+            r.setTimeout(action, LISTENER_TIMEOUT_MILLIS);
+        }
+
+        // Actions only needing a context, which can run without an activity (such as in headless engines).
+        // Opting in, showing UI and requesting permissions still need one.
+        r.setContextRequirement(ContextRequirement.APPLICATION,
+                Action.OPT_OUT, Action.OPT_OUT_AND_WIPE_DATA, Action.IS_OPTED_OUT, Action.SET_AUTOMATIC_DATA_COLLECTION,
+                Action.MESSAGING_SET_DO_NOT_DISTURB_ENABLED,
+                Action.PUSH_GET_LAST_KNOWN_TOKEN, Action.PUSH_DISMISS_NOTIFICATIONS, Action.PUSH_SET_SHOW_NOTIFICATIONS,
+                Action.PUSH_SHOULD_SHOW_NOTIFICATIONS, Action.PUSH_IOS_REFRESH_TOKEN,
+                Action.PUSH_IOS_REQUEST_PROVISIONAL_PERMISSION, Action.PUSH_CLEAR_BADGE, Action.PUSH_IOS_SET_SHOW_FOREGROUND,
+                Action.USER_GET_INSTALLATION_ID, Action.USER_GET_IDENTIFIER, Action.USER_GET_LANGUAGE,
+                Action.USER_GET_REGION, Action.USER_CLEAR_INSTALLATION_DATA, Action.USER_FETCH_ATTRIBUTES,
+                Action.USER_FETCH_TAGS,
+                Action.PROFILE_IDENTIFY, Action.PROFILE_EDIT, Action.PROFILE_TRACK_EVENT, Action.PROFILE_TRACK_LOCATION,
+                Action.PROFILE_TRACK_LOCATIONS,
+                Action.DEBUG_EVENT_BUFFER_METRICS, Action.DEBUG_EVENT_SCHEMA_CACHE_METRICS, Action.DEBUG_LOCATION_METRICS,
+                Action.DEBUG_PENDING_CALLS, Action.DEBUG_STARTUP_TIMINGS, Action.DEBUG_BRIDGE_METRICS,
+                // Nested calls needing an activity fail on their own
+                Action.BRIDGE_BATCH, Action.BRIDGE_CANCEL, Action.ECHO);
+
+        return r;
+    }
+
+    /**
+     * Serialize a bridge error in the same shape as a MethodChannel error, for results that
+     * can't use {@link io.flutter.plugin.common.MethodChannel.Result#error(String, String, Object)}
+     * directly.
+     */
+    @NonNull
+    static Map<String, Object> serializeError(@NonNull Exception e) {
+        Map<String, Object> error = new HashMap<>(3);
+        if (e instanceof BatchBridgeException) {
+            BatchBridgeException bridgeException = (BatchBridgeException) e;
+            error.put("code", bridgeException.pluginCode.code);
+            error.put("message", bridgeException.description);
+            error.put("details", bridgeException.details);
+        } else {
+            BatchFlutterLogger.e("Unknown bridge error", e);
+            error.put("code", BatchBridgePublicErrorCode.UNKNOWN_BRIDGE_ERROR.code);
+            error.put("message", "Unknown Batch native bridge error. Please see logcat for more info.");
+        }
+        return error;
+    }
 
     private static void optIn(Activity activity) {
         Batch.optIn(activity);
         Batch.onStart(activity);
+        events.emit(BridgeEvents.Stream.OPT_STATE, makeOptStateEvent(false));
     }
 
-    private static Promise<Object> optOut(Activity activity, boolean wipeData) {
+    private static Promise<Object> optOut(Context context, boolean wipeData) {
+        final ProfileSnapshot snapshot = profileSnapshot;
+        if (snapshot != null) {
+            snapshot.clear();
+        }
+
         return new Promise<>(promise -> {
 
+            // Errors are ignored, meaning that the SDK opts out anyway
             BatchOptOutResultListener resultListener = new BatchOptOutResultListener() {
                 @Override
                 public void onSuccess() {
+                    events.emit(BridgeEvents.Stream.OPT_STATE, makeOptStateEvent(true));
                     promise.resolve(null);
                 }
 
                 @Override
                 public ErrorPolicy onError() {
+                    events.emit(BridgeEvents.Stream.OPT_STATE, makeOptStateEvent(true));
                     promise.resolve(null);
                     return ErrorPolicy.IGNORE;
                 }
             };
 
             if (wipeData) {
-                Batch.optOutAndWipeData(activity, resultListener);
+                Batch.optOutAndWipeData(context, resultListener);
             } else {
-                Batch.optOut(activity, resultListener);
+                Batch.optOut(context, resultListener);
             }
         });
     }
@@ -210,29 +388,35 @@ public class BatchBridge {
         });
     }
 
+    @NonNull
+    private static Map<String, Object> makeOptStateEvent(boolean optedOut) {
+        final Map<String, Object> event = new HashMap<>();
+        event.put("optedOut", optedOut);
+        return event;
+    }
+
     private static String getLastKnownPushToken() {
         BatchPushRegistration registration = Batch.Push.getRegistration();
-        return registration != null ? registration.getToken() : null;
+        final String token = registration != null ? registration.getToken() : null;
+        // Tokens are notified when obtained: this catches one obtained before the receiver was registered
+        events.emitIfChanged(BridgeEvents.Stream.PUSH_TOKEN, token);
+        return token;
     }
 
     private static void dismissNotifications() {
         Batch.Push.dismissNotifications();
     }
 
-    private static void setShowNotifications(Map<String, Object> parameters) throws BatchBridgeException {
-        Boolean enabled = getTypedParameter(parameters, "enabled", Boolean.class);
-        Batch.Push.setShowNotifications(enabled);
-    }
-
     private static Boolean shouldShowNotifications(Context context) {
         return Batch.Push.shouldShowNotifications(context);
     }
 
-    private static Promise<Object> requestNotificationPermission(Activity activity) {
+    private static Promise<Object> requestNotificationPermission(Context context) {
         return new Promise<>(promise ->
-                Batch.Push.requestNotificationPermission(activity, new BatchPermissionListener() {
+                Batch.Push.requestNotificationPermission(context, new BatchPermissionListener() {
                     @Override
                     public void onPermissionRequested(boolean granted) {
+                        events.emit(BridgeEvents.Stream.NOTIFICATION_PERMISSION, granted);
                         promise.resolve(granted);
                     }
                 })
@@ -247,253 +431,441 @@ public class BatchBridge {
             throw new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, "Identifier can only be a string or null");
         }
         Batch.Profile.identify((String) identifier);
+
+        final ProfileSnapshot snapshot = profileSnapshot;
+        if (snapshot != null) {
+            snapshot.setIdentifier((String) identifier);
+        }
     }
 
-    @SuppressWarnings({"unchecked", "ConstantConditions"})
-    private static void editProfileAttributes(Map<String, Object> parameters) throws BatchBridgeException {
-        try {
-            List<Map<String, Object>> operations = getTypedParameter(parameters, "operations", List.class);
-            if (operations == null) {
-                return;
-            }
+    @NonNull
+    private static Promise<Object> editProfileAttributes(Map<String, Object> parameters) throws BatchBridgeException {
+        List<ProfileOperation> operations = ProfileOperationDecoder.decode(parameters);
 
-            BatchProfileAttributeEditor editor = Batch.Profile.editor();
+        final ProfileEditCoalescer coalescer = profileEditCoalescer;
+        if (coalescer != null) {
+            return coalescer.enqueue(operations);
+        }
 
-            for (Map<String, Object> operationDescription : operations) {
-                String operationName = getTypedParameter(operationDescription, "operation", String.class);
+        return runAfterPendingWork(() -> saveProfileOperations(operations));
+    }
 
-                switch (operationName) {
-                    case "SET_LANGUAGE": {
-                        Object value = operationDescription.get("value");
+    private static void saveProfileOperations(@NonNull List<ProfileOperation> operations) {
+        final ProfileSnapshot snapshot = profileSnapshot;
+        if (snapshot == null) {
+            applyProfileOperations(operations);
+        } else if (!snapshot.save(operations, BatchBridge::applyProfileOperations)) {
+            BatchFlutterLogger.d("Skipping profile edit: it doesn't change anything");
+        }
+    }
 
-                        if (value != null && !(value instanceof String)) {
-                            Log.e("Batch Bridge", "Invalid SET_LANGUAGE value: it can only be a string or null");
-                            // Invalid value, continue. NULL is allowed though
-                            continue;
-                        }
+    private static void applyProfileOperations(@NonNull List<ProfileOperation> operations) {
+        BatchProfileAttributeEditor editor = Batch.Profile.editor();
+        for (ProfileOperation operation : operations) {
+            operation.apply(editor);
+        }
+        editor.save();
+    }
 
-                        editor.setLanguage((String) value);
-                        break;
-                    }
-                    case "SET_REGION": {
-                        Object value = operationDescription.get("value");
+    private static Promise<Object> trackEvent(Map<String, Object> parameters) {
+        return new Promise<>(promise -> {
+            String name = null;
+            try {
+                name = getTypedParameter(parameters, "name", String.class);
+            } catch (BatchBridgeException e) {
+                promise.reject(new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, "Missing event name parameter."));
+                return;
+            }
+            Object data = parameters.get("event_data");
 
-                        if (value != null && !(value instanceof String)) {
-                            Log.e("Batch Bridge", "Invalid SET_REGION value: it can only be a string or null");
-                            // Invalid value, continue. NULL is allowed though
-                            continue;
-                        }
+            final EventBuffer buffer = eventBuffer;
+            if (buffer != null) {
+                // Conversion and validation errors will be logged when the buffer is flushed
+                buffer.add(name, data);
+                promise.resolve(null);
+                return;
+            }
 
-                        editor.setRegion((String) value);
-                        break;
-                    }
-                    case "SET_EMAIL_ADDRESS": {
-                        Object value = operationDescription.get("value");
+            final String eventName = name;
+            runAfterPendingWork(() -> sendEvent(eventName, data))
+                    .then(promise::resolve)
+                    .catchException(promise::reject);
+        });
+    }
 
-                        if (value != null && !(value instanceof String)) {
-                            // Invalid value, continue. NULL is allowed though
-                            continue;
-                        }
+    /**
+     * Convert, validate and track an event.
+     *
+     * @param data Raw event data: a serialized map, {@link EncodedEventAttributes} copied by
+     *             {@link BatchMessageCodec}, or null. Data of any other type is ignored.
+     */
+    @SuppressWarnings("unchecked")
+    private static void sendEvent(@NonNull String name, Object data) throws BatchBridgeException {
+        // Event data are optionals, disregard them if they're not of an expected type
+        if (!(data instanceof Map) && !(data instanceof EncodedEventAttributes)) {
+            Batch.Profile.trackEvent(name, null);
+            return;
+        }
 
-                        editor.setEmailAddress((String) value);
-                        break;
-                    }
-                    case "SET_EMAIL_MARKETING_SUBSCRIPTION": {
-                        Object value = operationDescription.get("value");
-                        if ("subscribed".equals(value)) {
-                            editor.setEmailMarketingSubscription(BatchEmailSubscriptionState.SUBSCRIBED);
-                        } else if ("unsubscribed".equals(value)) {
-                            editor.setEmailMarketingSubscription(BatchEmailSubscriptionState.UNSUBSCRIBED);
-                        } else {
-                            Log.e("Batch Bridge", "Invalid SET_EMAIL_MARKETING_SUBSCRIPTION value: it can only be `subscribed` or `unsubscribed`.");
-                        }
-                        break;
-                    }
-                    case "SET_PHONE_NUMBER": {
-                        Object value = operationDescription.get("value");
+        // Event data encoded using BatchMessageCodec's native type don't record their shape:
+        // they're always validated
+        if (data instanceof EncodedEventAttributes) {
+            final BatchEventAttributes attributes = eventAttributesConverter.decode((EncodedEventAttributes) data);
+            validateEventAttributes(attributes);
+            Batch.Profile.trackEvent(name, attributes);
+            return;
+        }
 
-                        if (value != null && !(value instanceof String)) {
-                            // Invalid value, continue. NULL is allowed though
-                            continue;
-                        }
+        EventAttributesConverter.EventShape shape = new EventAttributesConverter.EventShape();
+        BatchEventAttributes batchEventAttributes = eventAttributesConverter.convert((Map<String, Object>) data, shape);
+        if (!eventSchemaCache.isValidated(name, shape)) {
+            validateEventAttributes(batchEventAttributes);
+            eventSchemaCache.addValidated(name, shape);
+        }
+        Batch.Profile.trackEvent(name, batchEventAttributes);
+    }
 
-                        editor.setPhoneNumber((String) value);
-                        break;
-                    }
-                    case "SET_SMS_MARKETING_SUBSCRIPTION": {
-                        Object value = operationDescription.get("value");
-                        if ("subscribed".equals(value)) {
-                            editor.setSMSMarketingSubscription(BatchSMSSubscriptionState.SUBSCRIBED);
-                        } else if ("unsubscribed".equals(value)) {
-                            editor.setSMSMarketingSubscription(BatchSMSSubscriptionState.UNSUBSCRIBED);
-                        } else {
-                            Log.e("Batch Bridge", "Invalid SET_SMS_MARKETING_SUBSCRIPTION value: it can only be `subscribed` or `unsubscribed`.");
-                        }
-                        break;
-                    }
-                    case "SET_TOPIC_PREFERENCES": {
-                        Object value = operationDescription.get("value");
-                        if (value == null) {
-                            editor.setTopicPreferences(null);
-                            break;
-                        }
+    private static void validateEventAttributes(@NonNull BatchEventAttributes attributes) throws BatchBridgeException {
+        List<String> errors = attributes.validateEventAttributes();
+        if (!errors.isEmpty()) {
+            throw new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, errors.toString());
+        }
+    }
 
-                        editor.setTopicPreferences(new ArrayList<>(getTypedParameter(operationDescription, "value", ArrayList.class)));
-                        break;
-                    }
-                    case "ADD_TO_TOPIC_PREFERENCES": {
-                        editor.addToTopicPreferences(new ArrayList<>(getTypedParameter(operationDescription, "value", ArrayList.class)));
-                        break;
-                    }
-                    case "REMOVE_FROM_TOPIC_PREFERENCES": {
-                        editor.removeFromTopicPreferences(new ArrayList<>(getTypedParameter(operationDescription, "value", ArrayList.class)));
-                        break;
-                    }
-                    case "SET_ATTRIBUTE": {
-                        String key = getTypedParameter(operationDescription, "key", String.class);
-                        String type = getTypedParameter(operationDescription, "type", String.class);
+    /**
+     * Set the limits of the event data the bridge accepts. Events exceeding them are rejected
+     * before being converted.
+     *
+     * @param maxDepth      Maximum nesting depth of objects, top level attributes being at depth 1
+     * @param maxAttributes Maximum number of attributes, counting nested ones
+     */
+    public static void setEventDataLimits(int maxDepth, int maxAttributes) {
+        eventAttributesConverter = new EventAttributesConverter(maxDepth, maxAttributes);
+    }
 
-                        switch (type) {
-                            case "string":
-                                editor.setAttribute(key, getTypedParameter(operationDescription, "value", String.class));
-                                break;
-                            case "url":
-                                try {
-                                    editor.setAttribute(key, new URI(getTypedParameter(operationDescription, "value", String.class)));
-                                } catch (URISyntaxException e) {
-                                    Log.e("Batch Bridge", "Invalid SET_ATTRIBUTE url value: couldn't parse value", e);
-                                }
-                                break;
-                            case "date":
-                                editor.setAttribute(key, new Date(getTypedParameter(operationDescription, "value", Number.class).longValue()));
-                                break;
-                            case "integer": {
-                                Object rawValue = operationDescription.get("value");
-
-                                if (rawValue instanceof Number) {
-                                    editor.setAttribute(key, ((Number) rawValue).longValue());
-                                } else if (rawValue instanceof String) {
-                                    try {
-                                        editor.setAttribute(key, Long.parseLong((String) rawValue));
-                                    } catch (NumberFormatException e) {
-                                        Log.e("Batch Bridge", "Invalid SET_ATTRIBUTE integer value: couldn't parse value", e);
-                                    }
-                                }
-                                break;
-                            }
-                            case "float": {
-                                Object rawValue = operationDescription.get("value");
-
-                                if (rawValue instanceof Number) {
-                                    editor.setAttribute(key, ((Number) rawValue).doubleValue());
-                                } else if (rawValue instanceof String) {
-                                    try {
-                                        editor.setAttribute(key, Double.parseDouble((String) rawValue));
-                                    } catch (NumberFormatException e) {
-                                        Log.e("Batch Bridge", "Invalid SET_ATTRIBUTE float value: couldn't parse value", e);
-                                    }
-                                }
-                                break;
-                            }
-                            case "boolean": {
-                                Object rawValue = operationDescription.get("value");
-
-                                if (rawValue instanceof Boolean) {
-                                    editor.setAttribute(key, (Boolean) rawValue);
-                                } else if (rawValue instanceof String) {
-                                    try {
-                                        editor.setAttribute(key, Boolean.parseBoolean((String) rawValue));
-                                    } catch (NumberFormatException e) {
-                                        Log.e("Batch Bridge", "Invalid SET_ATTRIBUTE boolean value: couldn't parse value", e);
-                                    }
-                                }
-                                break;
-                            }
-                            case "array": {
-                                List<String> value = new ArrayList<String>(getTypedParameter(operationDescription, "value", ArrayList.class));
-                                if (value != null) {
-                                    editor.setAttribute(key, value);
-                                }
-                                break;
-                            }
-                        }
-                        break;
-                    }
-                    case "REMOVE_ATTRIBUTE": {
-                        String key = getTypedParameter(operationDescription, "key", String.class);
-                        editor.removeAttribute(key);
-                        break;
-                    }
-                    case "ADD_TO_ARRAY": {
-                        String key = getTypedParameter(operationDescription, "key", String.class);
-                        String value = getTypedParameter(operationDescription, "value", String.class);
-                        editor.addToArray(key, value);
-                        break;
+    //region Event buffering
+
+    /**
+     * Enable event buffering: tracked events will be buffered and handed to the SDK in batches,
+     * on a background thread.
+     * Events are then always accepted by the bridge: invalid events are logged and dropped when
+     * the buffer is flushed.
+     *
+     * @param capacity            Maximum number of buffered events. A flush is triggered once the buffer is half full,
+     *                            and the oldest events are dropped if it is full.
+     * @param flushIntervalMillis Maximum time an event can stay in the buffer before it is flushed
+     */
+    public static synchronized void enableEventBuffering(int capacity, long flushIntervalMillis) {
+        if (eventBuffer != null) {
+            return;
+        }
+        eventBuffer = new EventBuffer(capacity, flushIntervalMillis, BatchBridge::sendEvent, getBackgroundExecutor());
+    }
+
+    /**
+     * Asynchronously flush buffered events, if event buffering is enabled.
+     */
+    public static void flushEventBuffer() {
+        final EventBuffer buffer = eventBuffer;
+        if (buffer != null) {
+            buffer.flushAsync();
+        }
+    }
+
+    /**
+     * Wrap the handler of an action changing the SDK state in a way that would affect pending
+     * profile edits and buffered events, so that they're handed to the SDK before it runs.
+     * <p>
+     * The pending work is taken when the action is called. If there is some, it is handed to the
+     * SDK on the background executor, followed by the action: the calling thread isn't blocked, and
+     * the action's promise is settled afterwards. Edits and events received in the meantime are
+     * handed to the SDK after the action, even those that aren't buffered.
+     */
+    @NonNull
+    private static ActionHandler afterPendingWork(@NonNull ActionHandler handler) {
+        return (parameters, context, session) -> {
+            final ProfileEditCoalescer coalescer = profileEditCoalescer;
+            final EventBuffer buffer = eventBuffer;
+            final Runnable pendingEdits = coalescer != null ? coalescer.takePending() : null;
+            final Runnable pendingEvents = buffer != null ? buffer.takePending() : null;
+            if (pendingEdits == null && pendingEvents == null) {
+                return handler.handle(parameters, context, session);
+            }
+
+            pendingWorkActions.incrementAndGet();
+            return new Promise<>(promise -> getBackgroundExecutor().execute(() -> {
+                try {
+                    if (pendingEdits != null) {
+                        pendingEdits.run();
                     }
-                    case "REMOVE_FROM_ARRAY": {
-                        String key = getTypedParameter(operationDescription, "key", String.class);
-                        String value = getTypedParameter(operationDescription, "value", String.class);
-                        editor.removeFromArray(key, value);
-                        break;
+                    if (pendingEvents != null) {
+                        pendingEvents.run();
                     }
+                    handler.handle(parameters, context, session)
+                            .then(promise::resolve)
+                            .catchException(promise::reject);
+                } catch (Exception e) {
+                    promise.reject(e);
+                } finally {
+                    pendingWorkActions.decrementAndGet();
                 }
-            }
-            editor.save();
-        } catch (ClassCastException e) {
-            throw new BatchBridgeException(BatchBridgePublicErrorCode.INTERNAL_BRIDGE_ERROR, "Error while decoding user data operations ", null, e);
-        }
+            }));
+        };
     }
 
-    private static Promise<Object> trackEvent(Map<String, Object> parameters) {
-        return new Promise<>(promise -> {
-            String name = null;
+    /**
+     * Hand an unbuffered profile edit or event to the SDK: right away, or on the background executor
+     * if an action waiting for pending work is in progress, so that it stays ordered after it.
+     */
+    @NonNull
+    private static Promise<Object> runAfterPendingWork(@NonNull SdkWork work) {
+        if (pendingWorkActions.get() == 0) {
             try {
-                name = getTypedParameter(parameters, "name", String.class);
+                work.run();
+                return Promise.resolved(null);
             } catch (BatchBridgeException e) {
-                promise.reject(new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, "Missing event name parameter."));
-                return;
+                return Promise.rejected(e);
             }
-            Map<String, Object>  data = null;
+        }
+
+        return new Promise<>(promise -> getBackgroundExecutor().execute(() -> {
             try {
-                data = getTypedParameter(parameters, "event_data", Map.class);
+                work.run();
+                promise.resolve(null);
             } catch (BatchBridgeException e) {
-                // Event data are optionals, disregard the exception
-            }
-            if (data != null) {
-                try {
-                    BatchEventAttributes batchEventAttributes = convertSerializedEventDataToEventAttributes(data);
-                    List<String> errors = batchEventAttributes.validateEventAttributes();
-                    if (errors.isEmpty()) {
-                        Batch.Profile.trackEvent(name, batchEventAttributes);
-                        promise.resolve(null);
-                    } else {
-                        promise.reject(new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, errors.toString()));
-                    }
-                } catch (BatchBridgeException e) {
-                    promise.reject(e);
-                }
-            } else {
-                Batch.Profile.trackEvent(name, null);
+                promise.reject(e);
             }
-        });
+        }));
     }
 
-    private static void trackLocation(Map<String, Object> parameters) throws BatchBridgeException {
-        double latitude = getTypedParameter(parameters, "latitude", Number.class).doubleValue();
-        double longitude = getTypedParameter(parameters, "longitude", Number.class).doubleValue();
+    private interface SdkWork {
+        void run() throws BatchBridgeException;
+    }
 
-        Integer precision = null;
-        try {
-            precision = getTypedParameter(parameters, "precision", Integer.class);
-        } catch (BatchBridgeException e) {
-            // The parameter is optional, disregard the exception
+    //endregion
+
+    //region Profile edit coalescing and deduplication
+
+    /**
+     * Enable profile edit coalescing: operations of the profile edits received within the window
+     * will be applied on a single editor, and saved once on a background thread.
+     * Their promises are resolved once the merged save is done.
+     *
+     * @param windowMillis Time to wait for other edits after receiving one
+     */
+    public static synchronized void enableProfileEditCoalescing(long windowMillis) {
+        if (profileEditCoalescer != null) {
+            return;
         }
+        profileEditCoalescer = new ProfileEditCoalescer(windowMillis, BatchBridge::saveProfileOperations, getBackgroundExecutor());
+    }
 
-        Number date = null;
-        try {
-            date = getTypedParameter(parameters, "date", Number.class);
-        } catch (BatchBridgeException e) {
-            // The parameter is optional, disregard the exception
+    /**
+     * Enable profile write deduplication: the values saved by profile edits will be remembered, and
+     * operations that wouldn't change them will be dropped. Edits that end up empty aren't saved.
+     * <p>
+     * The remembered values are cleared when the identifier changes, or on opt-out. As edits made
+     * outside of the plugin can't be seen, only enable this if the profile is only edited from Flutter.
+     */
+    public static synchronized void enableProfileWriteDeduplication() {
+        if (profileSnapshot == null) {
+            profileSnapshot = new ProfileSnapshot();
+        }
+    }
+
+    //endregion
+
+    /**
+     * Get the executor used for the bridge's background work, creating it if needed.
+     */
+    @NonNull
+    private static synchronized ScheduledExecutorService getBackgroundExecutor() {
+        if (backgroundExecutor == null) {
+            backgroundExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "batch_flutter.bridge");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return backgroundExecutor;
+    }
+
+    @NonNull
+    private static synchronized PendingCallWatchdog getPendingCallWatchdog() {
+        if (pendingCallWatchdog == null) {
+            pendingCallWatchdog = new PendingCallWatchdog(getBackgroundExecutor());
+        }
+        return pendingCallWatchdog;
+    }
+
+    //region Pending calls
+
+    /**
+     * Set the time after which an action's calls are rejected with
+     * {@link BatchBridgePublicErrorCode#CALL_TIMEOUT} if they haven't completed.
+     *
+     * @param actionName    Action name, as sent by the Dart side
+     * @param timeoutMillis Timeout. 0 disables it.
+     */
+    public static void setActionTimeout(@NonNull String actionName, long timeoutMillis) {
+        ActionRoute route = registry.find(actionName);
+        if (route == null) {
+            BatchFlutterLogger.e("Cannot set the timeout of unknown action '" + actionName + "'");
+            return;
+        }
+        registry.setTimeout(route.action, timeoutMillis);
+    }
+
+    /**
+     * Whether calls to an action need an activity.
+     * Unknown actions don't, so that calling them fails right away.
+     */
+    public static boolean requiresActivity(@NonNull String actionName) {
+        ActionRoute route = registry.find(actionName);
+        return route != null && route.contextRequirement == ContextRequirement.ACTIVITY;
+    }
+
+    /**
+     * Open a session for an engine attaching to the plugin.
+     * Sessions share the bridge's native state, but keep track of the calls and fetchers of their engine.
+     */
+    @NonNull
+    public static BridgeSession openSession() {
+        return new BridgeSession();
+    }
+
+    /**
+     * Close an engine's session: reject the calls it made that haven't completed yet, so that they
+     * don't hold their result callbacks forever, and release its inbox fetchers.
+     * Other sessions are not affected.
+     */
+    public static void closeSession(@NonNull BridgeSession session, @NonNull String reason) {
+        if (session == BridgeSession.DEFAULT || session.closed) {
+            return;
+        }
+        session.closed = true;
+        getPendingCallWatchdog().releaseSession(session, reason);
+        inboxBridge.releaseFetchers(session);
+    }
+
+    /**
+     * Release memory held by the bridge, as asked by {@link ComponentCallbacks2#onTrimMemory(int)}.
+     * <p>
+     * Under moderate pressure, inbox fetchers unused for a while and caches are released. Under
+     * critical pressure, all inbox fetchers are. Evicted fetchers fail with
+     * {@link BatchBridgePublicErrorCode#INBOX_FETCHER_EVICTED} when used, so that Dart can create
+     * new ones.
+     */
+    public static void onTrimMemory(int level) {
+        final boolean critical = level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL ||
+                level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
+        final boolean moderate = level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW ||
+                level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+        if (!critical && !moderate) {
+            return;
+        }
+
+        eventSchemaCache.clear();
+        final int evictedFetchers = inboxBridge.trimFetchers(critical);
+        BatchFlutterLogger.d("Trimmed memory (level " + level + "): evicted " + evictedFetchers + " inbox fetcher(s).");
+    }
+
+    /**
+     * Set the listener receiving the metrics of every completed bridge call. Null removes it.
+     */
+    public static void setMetricsListener(@Nullable BridgeMetrics.Listener listener) {
+        metrics.setListener(listener);
+    }
+
+    /**
+     * Get the per-action metrics of bridge calls, as returned by the debug.bridgeMetrics action
+     */
+    @NonNull
+    public static Map<String, Object> getMetrics() {
+        return metrics.getStats();
+    }
+
+    /**
+     * State change events, sent to the plugin's event channels
+     */
+    @NonNull
+    public static BridgeEvents getEvents() {
+        return events;
+    }
+
+    /**
+     * Emit a push token obtained by the SDK, as notified by its registration identifier broadcast
+     */
+    public static void onPushTokenObtained(@Nullable String token) {
+        if (token != null) {
+            events.emitIfChanged(BridgeEvents.Stream.PUSH_TOKEN, token);
+        }
+    }
+
+    /**
+     * Check a state, and emit an event if it changed.
+     * Called when Dart starts listening to a stream, so that it gets the current state even if
+     * it was never notified, and when the app comes to the foreground.
+     */
+    public static void refreshEvents(@NonNull BridgeEvents.Stream stream, @NonNull Context context) {
+        switch (stream) {
+            case PUSH_TOKEN:
+                getLastKnownPushToken();
+                break;
+            case OPT_STATE:
+                events.emitIfChanged(stream, makeOptStateEvent(Batch.isOptedOut(context)));
+                break;
+            case NOTIFICATION_PERMISSION:
+                // Only known when requested
+                break;
+        }
+    }
+
+    //endregion
+
+    //region Event buffering metrics
+
+    @NonNull
+    private static Map<String, Object> getEventBufferMetrics() {
+        final EventBuffer buffer = eventBuffer;
+        Map<String, Object> metrics;
+        if (buffer != null) {
+            metrics = buffer.getStats();
+            metrics.put("enabled", true);
+        } else {
+            metrics = new HashMap<>();
+            metrics.put("enabled", false);
+        }
+        return metrics;
+    }
+
+    //endregion
+
+    /**
+     * Set the filter applied to tracked locations. A value of 0 disables the matching check.
+     *
+     * @param minDistanceMeters Minimum distance from the last tracked location
+     * @param minIntervalMillis Minimum time elapsed since the last tracked location
+     * @param maxAccuracyMeters Maximum accuracy radius
+     */
+    public static void setLocationThrottle(float minDistanceMeters, long minIntervalMillis, float maxAccuracyMeters) {
+        locationThrottle = new LocationThrottle(minDistanceMeters, minIntervalMillis, maxAccuracyMeters);
+    }
+
+    /**
+     * Track a location, unless the location throttle drops it
+     *
+     * @return Whether the location has been tracked
+     */
+    private static boolean trackLocation(Map<String, Object> parameters) throws BatchBridgeException {
+        double latitude = getTypedParameter(parameters, "latitude", Number.class).doubleValue();
+        double longitude = getTypedParameter(parameters, "longitude", Number.class).doubleValue();
+        Integer precision = getOptionalTypedParameter(parameters, "precision", Integer.class, null);
+        Number date = getOptionalTypedParameter(parameters, "date", Number.class, null);
+
+        long time = date != null ? date.longValue() : System.currentTimeMillis();
+        if (!locationThrottle.accept(latitude, longitude, precision != null ? precision.floatValue() : null, time)) {
+            return false;
         }
 
         Location location = new Location("com.batch.batch_flutter.interop");
@@ -509,19 +881,59 @@ public class BatchBridge {
         }
 
         Batch.Profile.trackLocation(location);
+        return true;
+    }
+
+    /**
+     * Track a list of locations, in order. All of them are checked before tracking any, so that an
+     * invalid location fails the whole call.
+     *
+     * @return The number of accepted and dropped locations
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> trackLocations(Map<String, Object> parameters) throws BatchBridgeException {
+        List<Object> locations = getTypedParameter(parameters, "locations", List.class);
+        for (Object location : locations) {
+            if (!(location instanceof Map)) {
+                throw new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, "Locations can only be maps");
+            }
+            getTypedParameter((Map<String, Object>) location, "latitude", Number.class);
+            getTypedParameter((Map<String, Object>) location, "longitude", Number.class);
+        }
+
+        int accepted = 0;
+        for (Object location : locations) {
+            if (trackLocation((Map<String, Object>) location)) {
+                accepted++;
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("accepted", accepted);
+        result.put("dropped", locations.size() - accepted);
+        return result;
     }
     // endregion
 
     //region User Data
-    private static Promise<Object> userFetchAttributes(Activity activity) {
+    /**
+     * @param typedAttributes Whether attributes should be sent as {@link BatchUserAttribute}, encoded
+     *                        by {@link BatchMessageCodec}, rather than as maps. Callers must decode
+     *                        the result using BatchMessageCodec.
+     */
+    private static Promise<Object> userFetchAttributes(Context context, boolean typedAttributes) {
         return new Promise<>(promise -> {
-            Batch.User.fetchAttributes(activity, new BatchAttributesFetchListener() {
+            Batch.User.fetchAttributes(context, new BatchAttributesFetchListener() {
                 @Override
                 public void onSuccess(@NonNull Map<String, BatchUserAttribute> map) {
-                    Map<String, Map<String, Object>> bridgeAttributes = new HashMap<>();
+                    if (promise.getStatus() != Promise.Status.PENDING) {
+                        // Cancelled or timed out: nobody will read the response
+                        return;
+                    }
+                    Map<String, Object> bridgeAttributes = new HashMap<>();
 
                     for (Map.Entry<String, BatchUserAttribute> attributeEntry : map.entrySet()) {
-                        Map<String, Object> typedBrdigeAttribute = new HashMap<>();
                         BatchUserAttribute attribute = attributeEntry.getValue();
 
                         String type;
@@ -566,6 +978,13 @@ public class BatchBridge {
                                 return;
                         }
 
+                        if (typedAttributes) {
+                            // Values have been checked: the codec encodes them without an intermediate map
+                            bridgeAttributes.put(attributeEntry.getKey(), attribute);
+                            continue;
+                        }
+
+                        Map<String, Object> typedBrdigeAttribute = new HashMap<>();
                         typedBrdigeAttribute.put("type", type);
                         typedBrdigeAttribute.put("value", value);
 
@@ -584,11 +1003,14 @@ public class BatchBridge {
         });
     }
 
-    private static Promise<Object> userFetchTags(Activity activity) {
+    private static Promise<Object> userFetchTags(Context context) {
         return new Promise<>(promise -> {
-            Batch.User.fetchTagCollections(activity, new BatchTagCollectionsFetchListener() {
+            Batch.User.fetchTagCollections(context, new BatchTagCollectionsFetchListener() {
                 @Override
                 public void onSuccess(@NonNull Map<String, Set<String>> map) {
+                    if (promise.getStatus() != Promise.Status.PENDING) {
+                        return;
+                    }
                     Map<String, List<String>> bridgeTagCollections = new HashMap<>();
 
                     for (Map.Entry<String, Set<String>> tagCollection : map.entrySet()) {
@@ -12,7 +12,10 @@ public enum BatchBridgePublicErrorCode {
     BAD_BRIDGE_ARGUMENT_TYPE("badBridgeArgumentType"),
     MISSING_SETUP("missingSetup"),
     NOT_ATTACHED_TO_ACTIVITY("android_notAttachedToActivity"),
-    INBOX_MISSING_NATIVE_FETCHER("inboxNoNativeFetcher");
+    INBOX_MISSING_NATIVE_FETCHER("inboxNoNativeFetcher"),
+    INBOX_FETCHER_EVICTED("inboxFetcherEvicted"),
+    CALL_TIMEOUT("callTimeout"),
+    CALL_CANCELLED("callCancelled");
 
     public final String code;
 
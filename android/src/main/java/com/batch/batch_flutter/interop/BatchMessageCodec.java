@@ -0,0 +1,129 @@
+package com.batch.batch_flutter.interop;
+
+import androidx.annotation.NonNull;
+
+import com.batch.android.BatchUserAttribute;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import io.flutter.plugin.common.StandardMessageCodec;
+
+/**
+ * {@link StandardMessageCodec} extension that adds native types used by Batch's APIs.
+ * <p>
+ * Standard values are encoded exactly like {@link StandardMessageCodec} does, so this codec can be
+ * used by callers that only send standard values.
+ * Additional types use tags starting at 128:
+ * <ul>
+ *     <li>{@link #TYPE_DATE}: milliseconds since epoch as an int64, decoded as a {@link Date}</li>
+ *     <li>{@link #TYPE_URI}: UTF-8 string, decoded as a {@link java.net.URI}</li>
+ *     <li>{@link #TYPE_EVENT_ATTRIBUTES}: size followed by that many bytes of an event attribute tree,
+ *     described in {@link EncodedEventAttributes}. It's copied as is, and decoded by the bridge.</li>
+ *     <li>{@link #TYPE_USER_ATTRIBUTE}: a fetched {@link BatchUserAttribute}, encoded as its type tag
+ *     (one of "sbifdu", as a byte) followed by its value as a standard value. Dates are sent as
+ *     milliseconds since epoch and URLs as strings. Only written.</li>
+ * </ul>
+ * <p>
+ * Decoding happens before the plugin can report errors: types that can be malformed are not
+ * decoded here.
+ */
+public class BatchMessageCodec extends StandardMessageCodec {
+
+    public static final BatchMessageCodec INSTANCE = new BatchMessageCodec();
+
+    static final byte TYPE_DATE = (byte) 128;
+    static final byte TYPE_URI = (byte) 129;
+    static final byte TYPE_EVENT_ATTRIBUTES = (byte) 130;
+    static final byte TYPE_USER_ATTRIBUTE = (byte) 131;
+
+    @Override
+    protected void writeValue(@NonNull ByteArrayOutputStream stream, Object value) {
+        if (value instanceof Date) {
+            stream.write(TYPE_DATE);
+            writeLong(stream, ((Date) value).getTime());
+        } else if (value instanceof URI) {
+            stream.write(TYPE_URI);
+            final byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+            writeSize(stream, bytes.length);
+            writeBytes(stream, bytes);
+        } else if (value instanceof EncodedEventAttributes) {
+            stream.write(TYPE_EVENT_ATTRIBUTES);
+            final byte[] bytes = ((EncodedEventAttributes) value).bytes;
+            writeSize(stream, bytes.length);
+            writeBytes(stream, bytes);
+        } else if (value instanceof BatchUserAttribute) {
+            writeUserAttribute(stream, (BatchUserAttribute) value);
+        } else {
+            super.writeValue(stream, value);
+        }
+    }
+
+    private void writeUserAttribute(@NonNull ByteArrayOutputStream stream, @NonNull BatchUserAttribute attribute) {
+        char type;
+        Object value = attribute.value;
+        switch (attribute.type) {
+            case BOOL:
+                type = 'b';
+                break;
+            case DATE: {
+                type = 'd';
+                final Date date = attribute.getDateValue();
+                value = date != null ? date.getTime() : null;
+                break;
+            }
+            case STRING:
+                type = 's';
+                break;
+            case URL: {
+                type = 'u';
+                final URI uri = attribute.getUriValue();
+                value = uri != null ? uri.toString() : null;
+                break;
+            }
+            case LONGLONG:
+                type = 'i';
+                break;
+            case DOUBLE:
+                type = 'f';
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported user attribute type: " + attribute.type);
+        }
+        stream.write(TYPE_USER_ATTRIBUTE);
+        stream.write(type);
+        super.writeValue(stream, value);
+    }
+
+    @Override
+    protected Object readValueOfType(byte type, @NonNull ByteBuffer buffer) {
+        switch (type) {
+            case TYPE_DATE:
+                return new Date(buffer.getLong());
+            case TYPE_URI:
+                return readURI(buffer);
+            case TYPE_EVENT_ATTRIBUTES:
+                return new EncodedEventAttributes(readBytes(buffer));
+            default:
+                return super.readValueOfType(type, buffer);
+        }
+    }
+
+    /**
+     * Decode a URI, or keep its string if it's malformed: throwing would fail the whole message
+     * with no error reported to Dart, while the handler expecting a URI rejects the call.
+     */
+    @NonNull
+    private Object readURI(@NonNull ByteBuffer buffer) {
+        final String rawURI = new String(readBytes(buffer), StandardCharsets.UTF_8);
+        try {
+            return new URI(rawURI);
+        } catch (URISyntaxException e) {
+            return rawURI;
+        }
+    }
+}
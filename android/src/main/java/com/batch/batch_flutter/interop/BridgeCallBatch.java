@@ -0,0 +1,154 @@
+package com.batch.batch_flutter.interop;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.batch.batch_flutter.Promise;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes the calls of a "bridge.batch" action.
+ * <p>
+ * Calls are executed in order through {@link BatchBridge#call(String, Map, Context, BridgeSession)}: a call only starts
+ * once the previous one has been settled, so that a batch behaves exactly like the same calls made
+ * one after another.
+ * <p>
+ * The batch resolves with one entry per executed call: <code>{"result": value}</code> on success,
+ * <code>{"error": {"code", "message", "details"}}</code> on failure, or <code>{"notImplemented": true}</code>.
+ * If "stopOnError" is true, the calls following the first failure are not executed and have no entry.
+ */
+final class BridgeCallBatch {
+
+    private static final int STEP_RUNNING = 0;
+    private static final int STEP_COMPLETED_SYNCHRONOUSLY = 1;
+    private static final int STEP_WAITING = 2;
+
+    @NonNull
+    private final List<?> calls;
+
+    private final boolean stopOnError;
+
+    private final Context context;
+
+    @NonNull
+    private final BridgeSession session;
+
+    @NonNull
+    private final List<Map<String, Object>> results;
+
+    @NonNull
+    private final Promise<Object> promise = new Promise<>();
+
+    private int nextCallIndex = 0;
+
+    private boolean stopped = false;
+
+    private BridgeCallBatch(@NonNull List<?> calls, boolean stopOnError, Context context, @NonNull BridgeSession session) {
+        this.calls = calls;
+        this.stopOnError = stopOnError;
+        this.context = context;
+        this.session = session;
+        this.results = new ArrayList<>(calls.size());
+    }
+
+    @NonNull
+    static Promise<Object> execute(@NonNull Map<String, Object> parameters, Context context, @NonNull BridgeSession session) throws BatchBridgeException {
+        List<?> calls = BatchBridgeUtils.getTypedParameter(parameters, "calls", List.class);
+        boolean stopOnError = BatchBridgeUtils.getOptionalTypedParameter(parameters, "stopOnError", Boolean.class, false);
+
+        BridgeCallBatch batch = new BridgeCallBatch(calls, stopOnError, context, session);
+        batch.runNextCalls();
+        return batch.promise;
+    }
+
+    /**
+     * Run calls until one of them completes asynchronously, or until the end of the batch.
+     * Calls that complete synchronously are handled in a loop rather than recursively, so that
+     * large batches of simple calls don't grow the stack.
+     */
+    private void runNextCalls() {
+        while (!stopped && nextCallIndex < calls.size()) {
+            final Object call = calls.get(nextCallIndex);
+            nextCallIndex++;
+
+            final AtomicInteger step = new AtomicInteger(STEP_RUNNING);
+            callEntry(call)
+                    .then(value -> {
+                        addSuccess(value);
+                        if (!step.compareAndSet(STEP_RUNNING, STEP_COMPLETED_SYNCHRONOUSLY)) {
+                            runNextCalls();
+                        }
+                    })
+                    .catchException(e -> {
+                        addFailure(e);
+                        if (!step.compareAndSet(STEP_RUNNING, STEP_COMPLETED_SYNCHRONOUSLY)) {
+                            runNextCalls();
+                        }
+                    });
+
+            if (step.compareAndSet(STEP_RUNNING, STEP_WAITING)) {
+                // The call's completion will resume the batch
+                return;
+            }
+        }
+
+        promise.resolve(results);
+    }
+
+    @NonNull
+    @SuppressWarnings("unchecked")
+    private Promise<Object> callEntry(@Nullable Object call) {
+        if (!(call instanceof Map)) {
+            return Promise.rejected(new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE,
+                    "Batched call descriptions must be maps"));
+        }
+
+        Map<String, Object> callDescription = (Map<String, Object>) call;
+        Object method = callDescription.get("method");
+        if (!(method instanceof String)) {
+            return Promise.rejected(new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE,
+                    "Batched call is missing its method"));
+        }
+        if (Action.BRIDGE_BATCH.getName().equalsIgnoreCase((String) method)) {
+            return Promise.rejected(new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE,
+                    "Batched calls cannot be nested"));
+        }
+
+        Object arguments = callDescription.get("arguments");
+        if (arguments != null && !(arguments instanceof Map)) {
+            return Promise.rejected(new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE,
+                    "Batched call arguments must be a map"));
+        }
+
+        return BatchBridge.call((String) method,
+                arguments != null ? (Map<String, Object>) arguments : new HashMap<>(),
+                context,
+                session);
+    }
+
+    private synchronized void addSuccess(@Nullable Object value) {
+        Map<String, Object> entry = new HashMap<>(1);
+        entry.put("result", value);
+        results.add(entry);
+    }
+
+    private synchronized void addFailure(@NonNull Exception e) {
+        Map<String, Object> entry = new HashMap<>(1);
+        if (e instanceof BatchBridgeNotImplementedException) {
+            entry.put("notImplemented", true);
+        } else {
+            entry.put("error", BatchBridge.serializeError(e));
+        }
+        results.add(entry);
+        if (stopOnError) {
+            stopped = true;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.batch.batch_flutter.interop;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SDK state changes, pushed to the plugin's event channels so that Dart doesn't have to poll them.
+ * <p>
+ * The last event of each stream is kept, and replayed to listeners when they're added.
+ * Events are rare: listeners are called synchronously, under the hub's lock, and should only
+ * hand the event off to another thread.
+ */
+public final class BridgeEvents {
+
+    public enum Stream {
+        /**
+         * Push token (String), or null if none is known yet
+         */
+        PUSH_TOKEN("batch_flutter.push.token"),
+
+        /**
+         * Opt-out state: map with an "optedOut" boolean
+         */
+        OPT_STATE("batch_flutter.optState"),
+
+        /**
+         * Result (boolean) of notification permission requests
+         */
+        NOTIFICATION_PERMISSION("batch_flutter.push.permission");
+
+        @NonNull
+        public final String channelName;
+
+        Stream(@NonNull String channelName) {
+            this.channelName = channelName;
+        }
+    }
+
+    public interface Listener {
+        void onEvent(@Nullable Object event);
+    }
+
+    // Marks streams that never had an event, as null is a valid one
+    private static final Object NO_EVENT = new Object();
+
+    private final Map<Stream, List<Listener>> listeners = new EnumMap<>(Stream.class);
+
+    private final Map<Stream, Object> lastEvents = new EnumMap<>(Stream.class);
+
+    BridgeEvents() {
+        for (Stream stream : Stream.values()) {
+            listeners.put(stream, new ArrayList<>());
+            lastEvents.put(stream, NO_EVENT);
+        }
+    }
+
+    /**
+     * Add a listener, and send it the last event of the stream if there is one
+     */
+    public synchronized void addListener(@NonNull Stream stream, @NonNull Listener listener) {
+        //noinspection ConstantConditions
+        listeners.get(stream).add(listener);
+        final Object lastEvent = lastEvents.get(stream);
+        if (lastEvent != NO_EVENT) {
+            listener.onEvent(lastEvent);
+        }
+    }
+
+    public synchronized void removeListener(@NonNull Stream stream, @NonNull Listener listener) {
+        //noinspection ConstantConditions
+        listeners.get(stream).remove(listener);
+    }
+
+    synchronized void emit(@NonNull Stream stream, @Nullable Object event) {
+        lastEvents.put(stream, event);
+        //noinspection ConstantConditions
+        for (Listener listener : listeners.get(stream)) {
+            listener.onEvent(event);
+        }
+    }
+
+    /**
+     * Emit an event unless it's equal to the last one of the stream.
+     * Used for states that are both checked and notified, such as the push token.
+     */
+    synchronized void emitIfChanged(@NonNull Stream stream, @Nullable Object event) {
+        final Object lastEvent = lastEvents.get(stream);
+        if (lastEvent != NO_EVENT && (lastEvent == null ? event == null : lastEvent.equals(event))) {
+            return;
+        }
+        emit(stream, event);
+    }
+}
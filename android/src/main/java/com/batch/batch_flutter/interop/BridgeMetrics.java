@@ -0,0 +1,266 @@
+package com.batch.batch_flutter.interop;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.batch.batch_flutter.BatchFlutterLogger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-action metrics of bridge calls: call and error counts, and latency histograms.
+ * <p>
+ * Recording is lock-free: metrics are preallocated for every {@link Action}, and only use atomic
+ * counters. Histograms have fixed buckets, so that recording is a single increment.
+ * <p>
+ * A call's latency is split in:
+ * <ul>
+ *     <li>queue wait: from the plugin receiving the call to its handler starting, such as while
+ *     waiting for setup, an activity or the main thread,</li>
+ *     <li>execution: from its handler starting to its result being ready to be sent,</li>
+ *     <li>total: from the plugin receiving the call to its result being ready to be sent.</li>
+ * </ul>
+ */
+public final class BridgeMetrics {
+
+    /**
+     * Receives every completed bridge call, such as to forward them to an app's telemetry
+     */
+    public interface Listener {
+        /**
+         * Called once a bridge call completed. Might be called from any thread, and must return quickly.
+         *
+         * @param action          Action name
+         * @param queueWaitMicros Time the call waited before being executed
+         * @param executionMicros Time the call took to execute
+         * @param totalMicros     Time between the call being received and its result being ready
+         * @param errorCode       Public error code of a failed call, or null if it succeeded
+         */
+        void onBridgeCall(@NonNull String action, long queueWaitMicros, long executionMicros, long totalMicros, @Nullable String errorCode);
+    }
+
+    /**
+     * Upper bounds of the histogram buckets, in microseconds. A last bucket holds larger values.
+     */
+    static final long[] BUCKET_UPPER_BOUNDS_MICROS = {
+            100, 250, 500,
+            1_000, 2_500, 5_000,
+            10_000, 25_000, 50_000,
+            100_000, 250_000, 500_000,
+            1_000_000, 2_500_000, 5_000_000
+    };
+
+    /**
+     * Error key of calls to actions that are not implemented
+     */
+    static final String NOT_IMPLEMENTED_ERROR = "notImplemented";
+
+    private static final BatchBridgePublicErrorCode[] ERROR_CODES = BatchBridgePublicErrorCode.values();
+
+    /**
+     * Fixed-bucket histogram, updated with atomic increments
+     */
+    static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_UPPER_BOUNDS_MICROS.length + 1);
+        private final AtomicLong sumMicros = new AtomicLong();
+        private final AtomicLong maxMicros = new AtomicLong();
+
+        void record(long micros) {
+            int bucket = 0;
+            while (bucket < BUCKET_UPPER_BOUNDS_MICROS.length && micros > BUCKET_UPPER_BOUNDS_MICROS[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+            sumMicros.addAndGet(micros);
+            long currentMax;
+            do {
+                currentMax = maxMicros.get();
+            } while (micros > currentMax && !maxMicros.compareAndSet(currentMax, micros));
+        }
+
+        long getCount() {
+            long count = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        @NonNull
+        Map<String, Object> getStats() {
+            final List<Long> counts = new ArrayList<>(buckets.length());
+            for (int i = 0; i < buckets.length(); i++) {
+                counts.add(buckets.get(i));
+            }
+            final Map<String, Object> stats = new HashMap<>();
+            stats.put("buckets", counts);
+            stats.put("sumMicros", sumMicros.get());
+            stats.put("maxMicros", maxMicros.get());
+            return stats;
+        }
+    }
+
+    /**
+     * Metrics of a single action
+     */
+    static final class ActionMetrics {
+        final AtomicLong calls = new AtomicLong();
+        // Indexed by error code ordinal, followed by calls that weren't implemented
+        final AtomicLongArray errors = new AtomicLongArray(ERROR_CODES.length + 1);
+        final Histogram queueWait = new Histogram();
+        final Histogram execution = new Histogram();
+        final Histogram total = new Histogram();
+
+        @NonNull
+        Map<String, Object> getStats() {
+            final Map<String, Object> errorStats = new HashMap<>();
+            for (int i = 0; i < ERROR_CODES.length; i++) {
+                final long count = errors.get(i);
+                if (count > 0) {
+                    errorStats.put(ERROR_CODES[i].code, count);
+                }
+            }
+            final long notImplemented = errors.get(ERROR_CODES.length);
+            if (notImplemented > 0) {
+                errorStats.put(NOT_IMPLEMENTED_ERROR, notImplemented);
+            }
+
+            final Map<String, Object> stats = new HashMap<>();
+            stats.put("calls", calls.get());
+            stats.put("errors", errorStats);
+            stats.put("queueWait", queueWait.getStats());
+            stats.put("execution", execution.getStats());
+            stats.put("total", total.getStats());
+            return stats;
+        }
+    }
+
+    /**
+     * Timing of a call being executed
+     */
+    final class Call {
+        @NonNull
+        private final Action action;
+
+        private final long receivedAtNanos;
+
+        private volatile long startedAtNanos;
+
+        Call(@NonNull Action action, long receivedAtNanos) {
+            this.action = action;
+            this.receivedAtNanos = receivedAtNanos;
+            this.startedAtNanos = receivedAtNanos;
+        }
+
+        /**
+         * Mark the call's handler as starting
+         */
+        void start() {
+            startedAtNanos = System.nanoTime();
+        }
+
+        void finish(@Nullable Exception error) {
+            record(this, error);
+        }
+    }
+
+    private final ActionMetrics[] metrics;
+
+    @Nullable
+    private volatile Listener listener;
+
+    BridgeMetrics() {
+        final Action[] actions = Action.values();
+        metrics = new ActionMetrics[actions.length];
+        for (int i = 0; i < actions.length; i++) {
+            metrics[i] = new ActionMetrics();
+        }
+    }
+
+    /**
+     * Start timing a call
+     *
+     * @param receivedAtNanos {@link System#nanoTime()} when the plugin received the call
+     */
+    @NonNull
+    Call startCall(@NonNull Action action, long receivedAtNanos) {
+        return new Call(action, receivedAtNanos);
+    }
+
+    /**
+     * Set the listener receiving every completed call. Null removes it.
+     */
+    void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    @NonNull
+    ActionMetrics get(@NonNull Action action) {
+        return metrics[action.ordinal()];
+    }
+
+    private void record(@NonNull Call call, @Nullable Exception error) {
+        final long now = System.nanoTime();
+        final long queueWaitMicros = Math.max(0, call.startedAtNanos - call.receivedAtNanos) / 1000;
+        final long executionMicros = Math.max(0, now - call.startedAtNanos) / 1000;
+        final long totalMicros = Math.max(0, now - call.receivedAtNanos) / 1000;
+
+        final ActionMetrics actionMetrics = get(call.action);
+        actionMetrics.calls.incrementAndGet();
+        actionMetrics.queueWait.record(queueWaitMicros);
+        actionMetrics.execution.record(executionMicros);
+        actionMetrics.total.record(totalMicros);
+
+        String errorCode = null;
+        if (error instanceof BatchBridgeException) {
+            final BatchBridgePublicErrorCode code = ((BatchBridgeException) error).pluginCode;
+            actionMetrics.errors.incrementAndGet(code.ordinal());
+            errorCode = code.code;
+        } else if (error instanceof BatchBridgeNotImplementedException) {
+            actionMetrics.errors.incrementAndGet(ERROR_CODES.length);
+            errorCode = NOT_IMPLEMENTED_ERROR;
+        } else if (error != null) {
+            actionMetrics.errors.incrementAndGet(BatchBridgePublicErrorCode.UNKNOWN_BRIDGE_ERROR.ordinal());
+            errorCode = BatchBridgePublicErrorCode.UNKNOWN_BRIDGE_ERROR.code;
+        }
+
+        final Listener currentListener = listener;
+        if (currentListener != null) {
+            try {
+                currentListener.onBridgeCall(call.action.getName(), queueWaitMicros, executionMicros, totalMicros, errorCode);
+            } catch (Exception e) {
+                BatchFlutterLogger.e("Bridge metrics listener threw an exception", e);
+            }
+        }
+    }
+
+    /**
+     * Get the metrics of the actions that have been called, serializable by
+     * {@link io.flutter.plugin.common.StandardMessageCodec}
+     */
+    @NonNull
+    Map<String, Object> getStats() {
+        final Map<String, Object> actionStats = new HashMap<>();
+        final Action[] actions = Action.values();
+        for (int i = 0; i < actions.length; i++) {
+            if (metrics[i].calls.get() > 0) {
+                actionStats.put(actions[i].getName(), metrics[i].getStats());
+            }
+        }
+
+        final List<Long> bounds = new ArrayList<>(BUCKET_UPPER_BOUNDS_MICROS.length);
+        for (long bound : BUCKET_UPPER_BOUNDS_MICROS) {
+            bounds.add(bound);
+        }
+
+        final Map<String, Object> stats = new HashMap<>();
+        stats.put("bucketUpperBoundsMicros", bounds);
+        stats.put("actions", actionStats);
+        return stats;
+    }
+}
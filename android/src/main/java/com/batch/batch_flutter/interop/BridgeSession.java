@@ -0,0 +1,52 @@
+package com.batch.batch_flutter.interop;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bridge state belonging to a single Flutter engine.
+ * <p>
+ * Engines share the bridge's native state (fetchers, caches, buffers): a session only records what
+ * its engine owns, so that detaching an engine releases its pending calls and inbox fetchers
+ * without affecting the other ones. Sessions are opened using {@link BatchBridge#openSession()}.
+ */
+public final class BridgeSession {
+
+    private static final AtomicInteger nextSessionID = new AtomicInteger();
+
+    /**
+     * Session of calls made without one, such as through {@link BatchBridge#call(String, java.util.Map, android.content.Context)}.
+     * It is never closed.
+     */
+    static final BridgeSession DEFAULT = new BridgeSession();
+
+    final int id;
+
+    /**
+     * IDs of the inbox fetchers created by this session, and not released yet
+     */
+    final Set<String> fetcherIDs = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    volatile boolean closed = false;
+
+    BridgeSession() {
+        this.id = nextSessionID.incrementAndGet();
+    }
+
+    /**
+     * Whether the session has been closed, using {@link BatchBridge#closeSession(BridgeSession, String)}
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "BridgeSession{id=" + id + ", closed=" + closed + "}";
+    }
+}
@@ -0,0 +1,34 @@
+package com.batch.batch_flutter.interop;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Event attributes encoded by {@link BatchMessageCodec}, not decoded yet.
+ * <p>
+ * The codec runs before the plugin can report errors, so it only copies the encoded tree: it's
+ * decoded by {@link EventAttributesConverter#decode(EncodedEventAttributes)}, which checks its
+ * limits and reports malformed payloads as bridge errors.
+ * <p>
+ * Encoding, little endian:
+ * <pre>
+ * attributes   := count:int32, count * (key:string, tag:uint8, value)
+ * string       := length:int32, length * UTF-8 byte
+ * value, by tag:
+ *   's', 'u'   := string
+ *   'b'        := uint8 (0 or 1)
+ *   'i', 'd'   := int64 (milliseconds since epoch for dates)
+ *   'f'        := float64
+ *   'o'        := attributes
+ *   'S'        := count:int32, count * string
+ *   'O'        := count:int32, count * attributes
+ * </pre>
+ */
+final class EncodedEventAttributes {
+
+    @NonNull
+    final byte[] bytes;
+
+    EncodedEventAttributes(@NonNull byte[] bytes) {
+        this.bytes = bytes;
+    }
+}
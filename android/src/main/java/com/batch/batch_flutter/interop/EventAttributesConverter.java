@@ -0,0 +1,651 @@
+package com.batch.batch_flutter.interop;
+
+import static com.batch.batch_flutter.interop.BatchBridgeUtils.getTypedParameter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.batch.android.BatchEventAttributes;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts serialized event data to {@link BatchEventAttributes}.
+ * <p>
+ * Serialized attributes are maps with a "type" tag and a "value". Nested objects ("o") and object
+ * arrays ("oa") are converted iteratively using an explicit work stack, so that deeply nested
+ * payloads can't overflow the thread's stack.
+ * <p>
+ * Payloads are bounded by a maximum nesting depth and a maximum total number of attributes. They're
+ * checked by an iterative pass over the raw payload before converting it, so that a payload
+ * exceeding them fails before any attribute is built.
+ * <p>
+ * While converting, the payload's shape can be recorded in an {@link EventShape}: see
+ * {@link EventSchemaCache}.
+ * <p>
+ * Attributes encoded by {@link BatchMessageCodec} use the same type tags, and are decoded in two
+ * iterative passes: the first one checks the payload's structure and limits without allocating,
+ * the second one builds the attributes.
+ */
+final class EventAttributesConverter {
+
+    static final int DEFAULT_MAX_DEPTH = 8;
+    static final int DEFAULT_MAX_ATTRIBUTES = 1000;
+
+    //region Type tags
+
+    private static final int TAG_STRING = 's';
+    private static final int TAG_BOOLEAN = 'b';
+    private static final int TAG_INTEGER = 'i';
+    private static final int TAG_FLOAT = 'f';
+    private static final int TAG_DATE = 'd';
+    private static final int TAG_URL = 'u';
+    private static final int TAG_OBJECT = 'o';
+    private static final int TAG_STRING_ARRAY = 'S';
+    private static final int TAG_OBJECT_ARRAY = 'O';
+    private static final int TAG_UNKNOWN = 0;
+
+    //endregion
+
+    //region Value limits, matching the SDK's validation
+
+    static final int MAX_STRING_LENGTH = 300;
+    static final int MAX_URL_LENGTH = 2048;
+    static final int MAX_STRING_ARRAY_SIZE = 25;
+    static final int MAX_LABEL_LENGTH = 200;
+    static final int MAX_TAGS_COUNT = 10;
+    static final int MAX_TAG_LENGTH = 64;
+
+    private static final String LABEL_KEY = "$label";
+    private static final String TAGS_KEY = "$tags";
+
+    //endregion
+
+    /**
+     * Shape of a converted payload
+     */
+    static final class EventShape {
+        /**
+         * Fingerprint of the attribute keys, types and nesting, independent of the attributes' order
+         * in objects
+         */
+        long fingerprint;
+
+        /**
+         * Whether all values are within the SDK's limits. If false, the payload has to be fully
+         * validated to know why.
+         */
+        boolean valuesWithinLimits = true;
+    }
+
+    private final int maxDepth;
+
+    private final int maxAttributes;
+
+    EventAttributesConverter(int maxDepth, int maxAttributes) {
+        this.maxDepth = Math.max(1, maxDepth);
+        this.maxAttributes = Math.max(1, maxAttributes);
+    }
+
+    /**
+     * A nested object or object array being converted
+     */
+    private static final class Frame {
+        @Nullable
+        final Frame parent;
+
+        // Key of this frame's value in its parent object
+        @Nullable
+        final String key;
+
+        // Object frames
+        @Nullable
+        final Iterator<Map.Entry<String, Object>> entries;
+        @Nullable
+        final BatchEventAttributes attributes;
+
+        // Object array frames
+        @Nullable
+        final List<?> items;
+        @Nullable
+        final List<BatchEventAttributes> convertedItems;
+        int nextItem = 0;
+
+        // Combined hash of the converted attributes' shapes
+        long shapeHash = 0;
+
+        Frame(@Nullable Frame parent, @Nullable String key, @NonNull Map<String, Object> object) {
+            this.parent = parent;
+            this.key = key;
+            this.entries = object.entrySet().iterator();
+            this.attributes = new BatchEventAttributes();
+            this.items = null;
+            this.convertedItems = null;
+        }
+
+        Frame(@NonNull Frame parent, @NonNull String key, @NonNull List<?> items) {
+            this.parent = parent;
+            this.key = key;
+            this.entries = null;
+            this.attributes = null;
+            this.items = items;
+            this.convertedItems = new ArrayList<>(items.size());
+        }
+    }
+
+    @Nullable
+    BatchEventAttributes convert(@Nullable Map<String, Object> eventData) throws BatchBridgeException {
+        return convert(eventData, null);
+    }
+
+    /**
+     * Convert event data, recording its shape
+     *
+     * @param shape Filled with the payload's shape, if not null
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    BatchEventAttributes convert(@Nullable Map<String, Object> eventData, @Nullable EventShape shape) throws BatchBridgeException {
+        if (eventData == null) {
+            return null;
+        }
+
+        checkLimits(eventData);
+
+        final Frame root = new Frame(null, null, eventData);
+        final ArrayDeque<Frame> stack = new ArrayDeque<>();
+        stack.push(root);
+
+        while (!stack.isEmpty()) {
+            final Frame frame = stack.peek();
+
+            if (frame.items != null) {
+                // Object array: convert the next item, skipping nulls
+                if (frame.nextItem < frame.items.size()) {
+                    final Object item = frame.items.get(frame.nextItem++);
+                    if (item != null) {
+                        if (!(item instanceof Map)) {
+                            throw new BatchBridgeException(BatchBridgePublicErrorCode.INTERNAL_BRIDGE_ERROR, "Object arrays can only contain objects");
+                        }
+                        stack.push(new Frame(frame, null, (Map<String, Object>) item));
+                    }
+                } else {
+                    stack.pop();
+                    frame.parent.attributes.putObjectList(frame.key, frame.convertedItems);
+                    frame.parent.shapeHash += entryHash(frame.key, TAG_OBJECT_ARRAY, mix(frame.shapeHash + frame.convertedItems.size()));
+                }
+                continue;
+            }
+
+            if (!frame.entries.hasNext()) {
+                stack.pop();
+                final Frame parent = frame.parent;
+                final long objectHash = mix(frame.shapeHash + TAG_OBJECT);
+                if (parent != null) {
+                    if (parent.convertedItems != null) {
+                        parent.convertedItems.add(frame.attributes);
+                        // Items of object arrays are ordered
+                        parent.shapeHash = parent.shapeHash * 31 + objectHash;
+                    } else {
+                        parent.attributes.put(frame.key, frame.attributes);
+                        parent.shapeHash += entryHash(frame.key, TAG_OBJECT, objectHash);
+                    }
+                } else if (shape != null) {
+                    shape.fingerprint = objectHash;
+                }
+                continue;
+            }
+
+            final Map.Entry<String, Object> attributeEntry = frame.entries.next();
+            final Object entryKey = attributeEntry.getKey();
+            final Object entryValue = attributeEntry.getValue();
+            if (!(entryKey instanceof String) || !(entryValue instanceof Map)) {
+                continue;
+            }
+
+            final String key = (String) entryKey;
+            final Map<String, Object> entryMapValue = (Map<String, Object>) entryValue;
+            final BatchEventAttributes attributes = frame.attributes;
+
+            final int tag = typeTag(getTypedParameter(entryMapValue, "type", String.class));
+            switch (tag) {
+                case TAG_STRING: {
+                    final String value = getTypedParameter(entryMapValue, "value", String.class);
+                    if (shape != null && value.length() > (frame == root && LABEL_KEY.equals(key) ? MAX_LABEL_LENGTH : MAX_STRING_LENGTH)) {
+                        shape.valuesWithinLimits = false;
+                    }
+                    attributes.put(key, value);
+                    break;
+                }
+                case TAG_BOOLEAN:
+                    attributes.put(key, getTypedParameter(entryMapValue, "value", Boolean.class));
+                    break;
+                case TAG_INTEGER:
+                    attributes.put(key, getTypedParameter(entryMapValue, "value", Number.class).longValue());
+                    break;
+                case TAG_FLOAT:
+                    attributes.put(key, getTypedParameter(entryMapValue, "value", Number.class).doubleValue());
+                    break;
+                case TAG_DATE:
+                    attributes.put(key, new Date(getTypedParameter(entryMapValue, "value", Number.class).longValue()));
+                    break;
+                case TAG_URL: {
+                    final String value = getTypedParameter(entryMapValue, "value", String.class);
+                    if (shape != null && value.length() > MAX_URL_LENGTH) {
+                        shape.valuesWithinLimits = false;
+                    }
+                    try {
+                        attributes.put(key, new URI(value));
+                    } catch (URISyntaxException e) {
+                        throw new BatchBridgeException(BatchBridgePublicErrorCode.INTERNAL_BRIDGE_ERROR, "Bad URL event data syntax", null, e);
+                    }
+                    break;
+                }
+                case TAG_STRING_ARRAY: {
+                    final List<String> value = getTypedParameter(entryMapValue, "value", List.class);
+                    if (shape != null && shape.valuesWithinLimits) {
+                        final boolean isTags = frame == root && TAGS_KEY.equals(key);
+                        shape.valuesWithinLimits = areStringsWithinLimits(value,
+                                isTags ? MAX_TAGS_COUNT : MAX_STRING_ARRAY_SIZE,
+                                isTags ? MAX_TAG_LENGTH : MAX_STRING_LENGTH);
+                    }
+                    attributes.putStringList(key, value);
+                    break;
+                }
+                case TAG_OBJECT:
+                    stack.push(new Frame(frame, key, getTypedParameter(entryMapValue, "value", Map.class)));
+                    break;
+                case TAG_OBJECT_ARRAY:
+                    stack.push(new Frame(frame, key, getTypedParameter(entryMapValue, "value", List.class)));
+                    break;
+                default:
+                    throw new BatchBridgeException(BatchBridgePublicErrorCode.INTERNAL_BRIDGE_ERROR, "Unknown event_data.attributes type");
+            }
+
+            if (tag != TAG_OBJECT && tag != TAG_OBJECT_ARRAY) {
+                // Nested values are added to the hash once converted
+                frame.shapeHash += entryHash(key, tag, 0);
+            }
+        }
+
+        return root.attributes;
+    }
+
+    /**
+     * A raw object waiting to be checked, at a depth. Root object is at depth 1.
+     */
+    private static final class PendingObject {
+        @NonNull
+        final Map<?, ?> object;
+
+        final int depth;
+
+        PendingObject(@NonNull Map<?, ?> object, int depth) {
+            this.object = object;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Check the raw payload's depth and attribute count, counting attributes the same way
+     * conversion does. Values of unexpected types are left for the conversion to report.
+     */
+    private void checkLimits(@NonNull Map<String, Object> eventData) throws BatchBridgeException {
+        int attributeCount = 0;
+        final ArrayDeque<PendingObject> stack = new ArrayDeque<>();
+        stack.push(new PendingObject(eventData, 1));
+
+        while (!stack.isEmpty()) {
+            final PendingObject pending = stack.pop();
+            for (Map.Entry<?, ?> attributeEntry : pending.object.entrySet()) {
+                final Object entryValue = attributeEntry.getValue();
+                if (!(attributeEntry.getKey() instanceof String) || !(entryValue instanceof Map)) {
+                    continue;
+                }
+
+                if (++attributeCount > maxAttributes) {
+                    throw new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE,
+                            "Event data has more than " + maxAttributes + " attributes");
+                }
+
+                final Map<?, ?> entryMapValue = (Map<?, ?>) entryValue;
+                final Object type = entryMapValue.get("type");
+                if (!(type instanceof String)) {
+                    continue;
+                }
+                final int tag = typeTag((String) type);
+                if (tag != TAG_OBJECT && tag != TAG_OBJECT_ARRAY) {
+                    continue;
+                }
+
+                final int depth = pending.depth + 1;
+                checkDepth(depth);
+                final Object value = entryMapValue.get("value");
+                if (tag == TAG_OBJECT && value instanceof Map) {
+                    stack.push(new PendingObject((Map<?, ?>) value, depth));
+                } else if (tag == TAG_OBJECT_ARRAY && value instanceof List) {
+                    for (Object item : (List<?>) value) {
+                        if (item instanceof Map) {
+                            stack.push(new PendingObject((Map<?, ?>) item, depth));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * An encoded object or object array being decoded
+     */
+    private static final class EncodedFrame {
+        @Nullable
+        final EncodedFrame parent;
+
+        @Nullable
+        final String key;
+
+        int remaining;
+
+        // Object frames
+        @Nullable
+        final BatchEventAttributes attributes;
+
+        // Object array frames
+        @Nullable
+        final List<BatchEventAttributes> items;
+
+        EncodedFrame(@Nullable EncodedFrame parent, @Nullable String key, int remaining, boolean isArray) {
+            this.parent = parent;
+            this.key = key;
+            this.remaining = remaining;
+            this.attributes = isArray ? null : new BatchEventAttributes();
+            this.items = isArray ? new ArrayList<>(remaining) : null;
+        }
+    }
+
+    /**
+     * Decode event attributes encoded by {@link BatchMessageCodec}
+     */
+    @NonNull
+    BatchEventAttributes decode(@NonNull EncodedEventAttributes encoded) throws BatchBridgeException {
+        try {
+            checkEncoded(wrap(encoded));
+            return decodeEncoded(wrap(encoded));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, "Truncated event data", null, e);
+        }
+    }
+
+    @NonNull
+    private static ByteBuffer wrap(@NonNull EncodedEventAttributes encoded) {
+        return ByteBuffer.wrap(encoded.bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Walk encoded attributes without building them, checking their structure, depth and size.
+     * Objects and object arrays being walked are tracked in arrays rather than frames, so that
+     * nothing is allocated per attribute.
+     */
+    private void checkEncoded(@NonNull ByteBuffer buffer) throws BatchBridgeException {
+        // An object array and its current item use a slot each
+        int[] remaining = new int[16];
+        int[] depths = new int[16];
+        boolean[] isArray = new boolean[16];
+
+        int top = 0;
+        remaining[0] = readCount(buffer);
+        depths[0] = 1;
+        int attributeCount = 0;
+
+        while (top >= 0) {
+            if (remaining[top] == 0) {
+                top--;
+                continue;
+            }
+            remaining[top]--;
+
+            if (top + 1 == remaining.length) {
+                remaining = Arrays.copyOf(remaining, remaining.length * 2);
+                depths = Arrays.copyOf(depths, depths.length * 2);
+                isArray = Arrays.copyOf(isArray, isArray.length * 2);
+            }
+
+            if (isArray[top]) {
+                top++;
+                remaining[top] = readCount(buffer);
+                depths[top] = depths[top - 1];
+                isArray[top] = false;
+                continue;
+            }
+
+            skipString(buffer);
+            if (++attributeCount > maxAttributes) {
+                throw new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE,
+                        "Event data has more than " + maxAttributes + " attributes");
+            }
+
+            final int tag = buffer.get();
+            switch (tag) {
+                case TAG_STRING:
+                case TAG_URL:
+                    skipString(buffer);
+                    break;
+                case TAG_BOOLEAN:
+                    buffer.get();
+                    break;
+                case TAG_INTEGER:
+                case TAG_FLOAT:
+                case TAG_DATE:
+                    buffer.getLong();
+                    break;
+                case TAG_STRING_ARRAY: {
+                    final int count = readCount(buffer);
+                    for (int i = 0; i < count; i++) {
+                        skipString(buffer);
+                    }
+                    break;
+                }
+                case TAG_OBJECT:
+                case TAG_OBJECT_ARRAY:
+                    checkDepth(depths[top] + 1);
+                    top++;
+                    remaining[top] = readCount(buffer);
+                    depths[top] = depths[top - 1] + 1;
+                    isArray[top] = tag == TAG_OBJECT_ARRAY;
+                    break;
+                default:
+                    throw new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, "Unknown event_data.attributes type");
+            }
+        }
+
+        if (buffer.hasRemaining()) {
+            throw new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, "Unexpected bytes after event data");
+        }
+    }
+
+    /**
+     * Build encoded attributes, once {@link #checkEncoded(ByteBuffer)} accepted them
+     */
+    @NonNull
+    private static BatchEventAttributes decodeEncoded(@NonNull ByteBuffer buffer) throws BatchBridgeException {
+        final EncodedFrame root = new EncodedFrame(null, null, readCount(buffer), false);
+        final ArrayDeque<EncodedFrame> stack = new ArrayDeque<>();
+        stack.push(root);
+
+        while (!stack.isEmpty()) {
+            final EncodedFrame frame = stack.peek();
+
+            if (frame.remaining == 0) {
+                stack.pop();
+                final EncodedFrame parent = frame.parent;
+                if (parent == null) {
+                    continue;
+                }
+                if (parent.items != null) {
+                    parent.items.add(frame.attributes);
+                } else if (frame.items != null) {
+                    parent.attributes.putObjectList(frame.key, frame.items);
+                } else {
+                    parent.attributes.put(frame.key, frame.attributes);
+                }
+                continue;
+            }
+            frame.remaining--;
+
+            if (frame.items != null) {
+                stack.push(new EncodedFrame(frame, null, readCount(buffer), false));
+                continue;
+            }
+
+            final String key = readString(buffer);
+            final BatchEventAttributes attributes = frame.attributes;
+            final int tag = buffer.get();
+            switch (tag) {
+                case TAG_STRING:
+                    attributes.put(key, readString(buffer));
+                    break;
+                case TAG_BOOLEAN:
+                    attributes.put(key, buffer.get() != 0);
+                    break;
+                case TAG_INTEGER:
+                    attributes.put(key, buffer.getLong());
+                    break;
+                case TAG_FLOAT:
+                    attributes.put(key, buffer.getDouble());
+                    break;
+                case TAG_DATE:
+                    attributes.put(key, new Date(buffer.getLong()));
+                    break;
+                case TAG_URL:
+                    try {
+                        attributes.put(key, new URI(readString(buffer)));
+                    } catch (URISyntaxException e) {
+                        throw new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, "Bad URL event data syntax", null, e);
+                    }
+                    break;
+                case TAG_STRING_ARRAY: {
+                    final int count = readCount(buffer);
+                    final List<String> strings = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        strings.add(readString(buffer));
+                    }
+                    attributes.putStringList(key, strings);
+                    break;
+                }
+                case TAG_OBJECT:
+                case TAG_OBJECT_ARRAY:
+                    stack.push(new EncodedFrame(frame, key, readCount(buffer), tag == TAG_OBJECT_ARRAY));
+                    break;
+                default:
+                    // Rejected by checkEncoded()
+                    throw new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, "Unknown event_data.attributes type");
+            }
+        }
+
+        //noinspection ConstantConditions
+        return root.attributes;
+    }
+
+    private static int readCount(@NonNull ByteBuffer buffer) throws BatchBridgeException {
+        final int count = buffer.getInt();
+        // Each item takes at least a byte: larger counts can only be garbage
+        if (count < 0 || count > buffer.remaining()) {
+            throw new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, "Bad event data size: " + count);
+        }
+        return count;
+    }
+
+    private static void skipString(@NonNull ByteBuffer buffer) throws BatchBridgeException {
+        final int length = readCount(buffer);
+        buffer.position(buffer.position() + length);
+    }
+
+    @NonNull
+    private static String readString(@NonNull ByteBuffer buffer) throws BatchBridgeException {
+        final int length = readCount(buffer);
+        final String string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return string;
+    }
+
+    private void checkDepth(int depth) throws BatchBridgeException {
+        if (depth > maxDepth) {
+            throw new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE,
+                    "Event data is nested deeper than " + maxDepth + " levels");
+        }
+    }
+
+    private static boolean areStringsWithinLimits(@NonNull List<?> strings, int maxCount, int maxLength) {
+        if (strings.size() > maxCount) {
+            return false;
+        }
+        for (Object string : strings) {
+            if (string instanceof String && ((String) string).length() > maxLength) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long entryHash(@NonNull String key, int tag, long valueHash) {
+        return mix(((long) key.hashCode() << 32) ^ ((long) tag << 24) ^ valueHash);
+    }
+
+    /**
+     * 64 bit hash finalizer (from MurmurHash3), so that summed entry hashes don't cancel out
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Resolve a serialized type to its tag, without comparing whole strings
+     */
+    private static int typeTag(@NonNull String type) {
+        switch (type.length()) {
+            case 1:
+                final char tag = type.charAt(0);
+                switch (tag) {
+                    case 's':
+                    case 'b':
+                    case 'i':
+                    case 'f':
+                    case 'd':
+                    case 'u':
+                    case 'o':
+                        return tag;
+                    default:
+                        return TAG_UNKNOWN;
+                }
+            case 2:
+                if (type.charAt(1) == 'a') {
+                    switch (type.charAt(0)) {
+                        case 's':
+                            return TAG_STRING_ARRAY;
+                        case 'o':
+                            return TAG_OBJECT_ARRAY;
+                    }
+                }
+                return TAG_UNKNOWN;
+            default:
+                return TAG_UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.batch.batch_flutter.interop;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.batch.batch_flutter.BatchFlutterLogger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded ring buffer of tracked events, used when event buffering is enabled.
+ * <p>
+ * Events are stored as they were received from the bridge, and converted then handed to the SDK
+ * in batches on a background thread. A flush happens:
+ * <ul>
+ *     <li>when the buffer is half full,</li>
+ *     <li>once the flush interval elapsed after the first buffered event,</li>
+ *     <li>when explicitly asked to, such as when the app goes to the background or before an opt-out.</li>
+ * </ul>
+ * If events are received faster than they can be flushed and the buffer is full, the oldest
+ * event is dropped.
+ */
+final class EventBuffer {
+
+    /**
+     * Receives the flushed events
+     */
+    interface Sink {
+        void send(@NonNull String name, @Nullable Object data) throws BatchBridgeException;
+    }
+
+    private final int capacity;
+
+    private final int flushThreshold;
+
+    private final long flushIntervalMillis;
+
+    @NonNull
+    private final Sink sink;
+
+    @NonNull
+    private final ScheduledExecutorService executor;
+
+    // Ring buffer, stored as parallel arrays to avoid allocating an entry per event
+    private final String[] names;
+    private final Object[] data;
+    private int head = 0;
+    private int size = 0;
+
+    // Set when a delayed flush has been scheduled, or an immediate one submitted, so that adding
+    // events doesn't submit a flush task each
+    private boolean flushScheduled = false;
+    private boolean flushQueued = false;
+
+    // Incremented every time events are taken, so that flush tasks submitted before don't send
+    // events added after them. Guarded by "this".
+    private long generation = 0;
+
+    // Serializes sends, so that events are sent in order
+    private final Object flushLock = new Object();
+
+    // Stats, guarded by "this"
+    private long droppedEvents = 0;
+    private long sentEvents = 0;
+    private long failedEvents = 0;
+    private long flushCount = 0;
+    private long lastFlushLatencyNanos = 0;
+    private long maxFlushLatencyNanos = 0;
+    private long totalFlushLatencyNanos = 0;
+
+    EventBuffer(int capacity, long flushIntervalMillis, @NonNull Sink sink, @NonNull ScheduledExecutorService executor) {
+        this.capacity = Math.max(1, capacity);
+        this.flushThreshold = Math.max(1, this.capacity / 2);
+        this.flushIntervalMillis = Math.max(0, flushIntervalMillis);
+        this.sink = sink;
+        this.executor = executor;
+        this.names = new String[this.capacity];
+        this.data = new Object[this.capacity];
+    }
+
+    /**
+     * Add an event to the buffer, scheduling a flush if needed
+     */
+    void add(@NonNull String name, @Nullable Object eventData) {
+        boolean flushNow = false;
+        boolean scheduleFlush = false;
+        final long taskGeneration;
+
+        synchronized (this) {
+            if (size == capacity) {
+                // Drop the oldest event
+                names[head] = null;
+                data[head] = null;
+                head = (head + 1) % capacity;
+                size--;
+                droppedEvents++;
+            }
+
+            final int tail = (head + size) % capacity;
+            names[tail] = name;
+            data[tail] = eventData;
+            size++;
+
+            if (size >= flushThreshold) {
+                if (!flushQueued) {
+                    flushQueued = true;
+                    flushNow = true;
+                }
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                scheduleFlush = true;
+            }
+            taskGeneration = generation;
+        }
+
+        if (flushNow) {
+            executor.execute(() -> flush(taskGeneration));
+        } else if (scheduleFlush) {
+            executor.schedule(() -> flush(taskGeneration), flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Asynchronously flush the buffer
+     */
+    void flushAsync() {
+        executor.execute(this::flush);
+    }
+
+    /**
+     * Flush the buffer on the current thread, returning once all buffered events have been handed
+     * to the SDK.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            send(take());
+        }
+    }
+
+    /**
+     * Take the buffered events right away, without sending them.
+     * <p>
+     * Events added afterwards stay in the buffer, and won't be sent by flushes submitted before
+     * this call: they're sent after the taken events, once they have been.
+     *
+     * @return A task sending the taken events on the current thread, or null if the buffer was empty.
+     */
+    @Nullable
+    Runnable takePending() {
+        final TakenEvents events = take();
+        if (events == null) {
+            return null;
+        }
+        return () -> {
+            synchronized (flushLock) {
+                send(events);
+            }
+        };
+    }
+
+    private void flush(long taskGeneration) {
+        synchronized (flushLock) {
+            final TakenEvents events;
+            synchronized (this) {
+                if (taskGeneration != generation) {
+                    // The events this task was submitted for have already been taken
+                    return;
+                }
+                events = take();
+            }
+            send(events);
+        }
+    }
+
+    @Nullable
+    private synchronized TakenEvents take() {
+        flushScheduled = false;
+        flushQueued = false;
+        generation++;
+        final int count = size;
+        if (count == 0) {
+            return null;
+        }
+        final TakenEvents events = new TakenEvents(count);
+        for (int i = 0; i < count; i++) {
+            final int index = (head + i) % capacity;
+            events.names[i] = names[index];
+            events.data[i] = data[index];
+            names[index] = null;
+            data[index] = null;
+        }
+        head = 0;
+        size = 0;
+        return events;
+    }
+
+    private void send(@Nullable TakenEvents events) {
+        if (events == null) {
+            return;
+        }
+        final int count = events.names.length;
+        final long start = SystemClock.elapsedRealtimeNanos();
+        int failed = 0;
+        for (int i = 0; i < count; i++) {
+            try {
+                sink.send(events.names[i], events.data[i]);
+            } catch (BatchBridgeException e) {
+                failed++;
+                BatchFlutterLogger.e("Dropping buffered event '" + events.names[i] + "': " + e.description);
+            } catch (RuntimeException e) {
+                failed++;
+                BatchFlutterLogger.e("Dropping buffered event '" + events.names[i] + "'", e);
+            }
+        }
+        final long latency = SystemClock.elapsedRealtimeNanos() - start;
+
+        synchronized (this) {
+            sentEvents += count - failed;
+            failedEvents += failed;
+            flushCount++;
+            lastFlushLatencyNanos = latency;
+            maxFlushLatencyNanos = Math.max(maxFlushLatencyNanos, latency);
+            totalFlushLatencyNanos += latency;
+        }
+    }
+
+    /**
+     * Get the buffer stats, serializable by {@link io.flutter.plugin.common.StandardMessageCodec}
+     */
+    @NonNull
+    synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("capacity", capacity);
+        stats.put("depth", size);
+        stats.put("dropped", droppedEvents);
+        stats.put("sent", sentEvents);
+        stats.put("failed", failedEvents);
+        stats.put("flushes", flushCount);
+        stats.put("lastFlushLatencyMs", nanosToMillis(lastFlushLatencyNanos));
+        stats.put("maxFlushLatencyMs", nanosToMillis(maxFlushLatencyNanos));
+        stats.put("averageFlushLatencyMs", flushCount > 0 ? nanosToMillis(totalFlushLatencyNanos) / flushCount : 0d);
+        return stats;
+    }
+
+    private static double nanosToMillis(long nanos) {
+        return nanos / 1_000_000d;
+    }
+
+    private static final class TakenEvents {
+        final String[] names;
+        final Object[] data;
+
+        TakenEvents(int count) {
+            names = new String[count];
+            data = new Object[count];
+        }
+    }
+}
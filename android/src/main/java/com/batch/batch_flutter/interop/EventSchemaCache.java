@@ -0,0 +1,110 @@
+package com.batch.batch_flutter.interop;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of event shapes that passed the SDK's validation, keyed by event name and shape
+ * fingerprint (see {@link EventAttributesConverter.EventShape}).
+ * <p>
+ * Validation mostly checks the attributes' keys, types and nesting: once a shape validated, later
+ * events with the same name and shape only need their values to be checked against the SDK's
+ * limits, which is done while converting them.
+ * Least recently used shapes are evicted once the cache is full.
+ */
+final class EventSchemaCache {
+
+    static final int DEFAULT_CAPACITY = 256;
+
+    private static final class Key {
+        @NonNull
+        final String eventName;
+
+        final long fingerprint;
+
+        Key(@NonNull String eventName, long fingerprint) {
+            this.eventName = eventName;
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return fingerprint == key.fingerprint && eventName.equals(key.eventName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * eventName.hashCode() + (int) (fingerprint ^ (fingerprint >>> 32));
+        }
+    }
+
+    private final int capacity;
+
+    // Access ordered, so that the eldest entry is the least recently used one
+    @NonNull
+    private final LinkedHashMap<Key, Boolean> validatedShapes;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    EventSchemaCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.validatedShapes = new LinkedHashMap<Key, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+                return size() > EventSchemaCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Check whether an event's shape already validated, counting a hit or a miss
+     */
+    synchronized boolean isValidated(@NonNull String eventName, @NonNull EventAttributesConverter.EventShape shape) {
+        if (shape.valuesWithinLimits && validatedShapes.get(new Key(eventName, shape.fingerprint)) != null) {
+            hits++;
+            return true;
+        }
+        misses++;
+        return false;
+    }
+
+    /**
+     * Record that an event's shape passed the SDK's validation
+     */
+    synchronized void addValidated(@NonNull String eventName, @NonNull EventAttributesConverter.EventShape shape) {
+        if (shape.valuesWithinLimits) {
+            validatedShapes.put(new Key(eventName, shape.fingerprint), Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Forget all validated shapes, such as when the app is low on memory
+     */
+    synchronized void clear() {
+        validatedShapes.clear();
+    }
+
+    /**
+     * Get the cache stats, serializable by {@link io.flutter.plugin.common.StandardMessageCodec}
+     */
+    @NonNull
+    synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("capacity", capacity);
+        stats.put("size", validatedShapes.size());
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        return stats;
+    }
+}
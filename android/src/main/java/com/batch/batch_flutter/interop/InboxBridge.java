@@ -1,7 +1,7 @@
 package com.batch.batch_flutter.interop;
 
-import android.app.Activity;
 import android.content.Context;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 
@@ -10,9 +10,12 @@ import com.batch.android.BatchInboxFetcher;
 import com.batch.android.BatchInboxNotificationContent;
 import com.batch.batch_flutter.BatchFlutterLogger;
 import com.batch.batch_flutter.Promise;
+import com.batch.batch_flutter.interop.ActionRoute.ContextRequirement;
+import com.batch.batch_flutter.interop.ActionRoute.Threading;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -30,59 +33,129 @@ import static com.batch.batch_flutter.interop.BatchBridgeUtils.getTypedParameter
  * This can lead to memory leaks if the memory isn't freed, as this object will retain instances
  * indefinitely. Make sure to expose a method on the plugin side to tell this class to release a
  * fetcher.
+ * Fetchers can also be evicted when the app is low on memory, see {@link #trimFetchers(boolean)}.
  */
 class InboxBridge {
-    Map<String, BatchInboxFetcher> fetchers = new ConcurrentHashMap<>();
-
-    @NonNull
-    Promise<Object> doAction(@NonNull Action action, @NonNull Map<String, Object> parameters, @NonNull Activity activity) throws BatchBridgeException, BatchBridgeNotImplementedException {
-        switch (action) {
-            case INBOX_CREATE_INSTALLATION_FETCHER:
-                return Promise.resolved(createInstallationFetcher(activity, parameters));
-            case INBOX_CREATE_USER_FETCHER:
-                return Promise.resolved(createUserFetcher(activity, parameters));
-            case INBOX_RELEASE_FETCHER:
-                releaseFetcher(parameters);
-                return Promise.resolved(null);
-            case INBOX_FETCH_NEW_NOTIFICATIONS:
-                return fetchNewNotifications(parameters);
-            case INBOX_FETCH_NEXT_PAGE:
-                return fetchNextPage(parameters);
-            case INBOX_GET_FETCHED_NOTIFICATIONS:
-                return getFetchedNotifications(parameters);
-            case INBOX_MARK_AS_READ:
-                return markAsRead(parameters);
-            case INBOX_MARK_ALL_AS_READ:
-                return markAllAsRead(parameters);
-            case INBOX_MARK_AS_DELETED:
-                return markAsDeleted(parameters);
-            case INBOX_DISPLAY_LANDING:
-                return displayLandingMessage(activity, parameters);
-            default:
-                throw new BatchBridgeNotImplementedException(action.toString());
+    /**
+     * Fetchers unused for this long are evicted on moderate memory pressure
+     */
+    static final long IDLE_FETCHER_MILLIS = 60_000;
+
+    /**
+     * Maximum number of evicted fetcher IDs remembered, to tell eviction apart from a release
+     */
+    private static final int EVICTED_FETCHER_IDS_CAPACITY = 1000;
+
+    Map<String, RetainedFetcher> fetchers = new ConcurrentHashMap<>();
+
+    // Accessed under its own lock
+    private final Map<String, Boolean> evictedFetcherIDs = new LinkedHashMap<String, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > EVICTED_FETCHER_IDS_CAPACITY;
         }
+    };
+
+    /**
+     * Register the handlers of all inbox actions
+     */
+    void registerActions(@NonNull ActionRegistry registry) {
+        registry.register(Action.INBOX_CREATE_INSTALLATION_FETCHER, Threading.ANY,
+                (parameters, context, session) -> Promise.resolved(createInstallationFetcher(context, session, parameters)));
+        registry.register(Action.INBOX_CREATE_USER_FETCHER, Threading.ANY,
+                (parameters, context, session) -> Promise.resolved(createUserFetcher(context, session, parameters)));
+        registry.register(Action.INBOX_RELEASE_FETCHER, Threading.ANY, (parameters, context, session) -> {
+            final String fetcherID = getTypedParameter(parameters, "fetcherID", String.class);
+            fetchers.remove(fetcherID);
+            session.fetcherIDs.remove(fetcherID);
+            synchronized (evictedFetcherIDs) {
+                evictedFetcherIDs.remove(fetcherID);
+            }
+            return Promise.resolved(null);
+        });
+        registry.register(Action.INBOX_FETCH_NEW_NOTIFICATIONS, Threading.ANY,
+                (parameters, context, session) -> fetchNewNotifications(getFetcherInstance(parameters)));
+        registry.register(Action.INBOX_FETCH_NEXT_PAGE, Threading.ANY,
+                (parameters, context, session) -> fetchNextPage(getFetcherInstance(parameters)));
+        registry.register(Action.INBOX_GET_FETCHED_NOTIFICATIONS, Threading.ANY,
+                (parameters, context, session) -> getFetchedNotifications(getFetcherInstance(parameters)));
+        registry.register(Action.INBOX_MARK_AS_READ, Threading.ANY,
+                (parameters, context, session) -> markAsRead(getFetcherInstance(parameters), getNotificationID(parameters)));
+        registry.register(Action.INBOX_MARK_ALL_AS_READ, Threading.ANY,
+                (parameters, context, session) -> markAllAsRead(getFetcherInstance(parameters)));
+        registry.register(Action.INBOX_MARK_AS_DELETED, Threading.ANY,
+                (parameters, context, session) -> markAsDeleted(getFetcherInstance(parameters), getNotificationID(parameters)));
+        registry.register(Action.INBOX_DISPLAY_LANDING, Threading.MAIN,
+                (parameters, context, session) -> displayLandingMessage(context, getFetcherInstance(parameters), getNotificationID(parameters)));
+
+        // Fetchers use the application context: only displaying messages needs an activity
+        registry.setContextRequirement(ContextRequirement.APPLICATION, Action.INBOX_CREATE_INSTALLATION_FETCHER,
+                Action.INBOX_CREATE_USER_FETCHER, Action.INBOX_RELEASE_FETCHER, Action.INBOX_FETCH_NEW_NOTIFICATIONS,
+                Action.INBOX_FETCH_NEXT_PAGE, Action.INBOX_GET_FETCHED_NOTIFICATIONS, Action.INBOX_MARK_AS_READ,
+                Action.INBOX_MARK_ALL_AS_READ, Action.INBOX_MARK_AS_DELETED);
     }
 
     @NonNull
-    private String createInstallationFetcher(@NonNull Context context, @NonNull Map<String, Object> parameters) {
+    private String createInstallationFetcher(@NonNull Context context, @NonNull BridgeSession session, @NonNull Map<String, Object> parameters) {
         String id = makeFetcherID();
         BatchInboxFetcher fetcher = Batch.Inbox.getFetcher(context.getApplicationContext());
         configureSharedFetcherParameters(fetcher, parameters);
-        fetchers.put(id, fetcher);
+        fetchers.put(id, new RetainedFetcher(fetcher, session));
+        session.fetcherIDs.add(id);
         return id;
     }
 
     @NonNull
-    private String createUserFetcher(@NonNull Context context, @NonNull Map<String, Object> parameters) throws BatchBridgeException {
+    private String createUserFetcher(@NonNull Context context, @NonNull BridgeSession session, @NonNull Map<String, Object> parameters) throws BatchBridgeException {
         String id = makeFetcherID();
         String user = getTypedParameter(parameters, "user", String.class);
         String authKey = getTypedParameter(parameters, "authKey", String.class);
         BatchInboxFetcher fetcher = Batch.Inbox.getFetcher(context.getApplicationContext(), user, authKey);
         configureSharedFetcherParameters(fetcher, parameters);
-        fetchers.put(id, fetcher);
+        fetchers.put(id, new RetainedFetcher(fetcher, session));
+        session.fetcherIDs.add(id);
         return id;
     }
 
+    /**
+     * Release the fetchers a session created, as its engine won't be able to release them anymore
+     */
+    void releaseFetchers(@NonNull BridgeSession session) {
+        for (String fetcherID : session.fetcherIDs) {
+            fetchers.remove(fetcherID);
+        }
+        session.fetcherIDs.clear();
+    }
+
+    /**
+     * Evict fetchers, and the notifications they fetched, because the app is low on memory.
+     * Using an evicted fetcher fails with {@link BatchBridgePublicErrorCode#INBOX_FETCHER_EVICTED},
+     * so that Dart can create a new one.
+     *
+     * @param all Whether all fetchers should be evicted, rather than only the ones that haven't
+     *            been used for {@link #IDLE_FETCHER_MILLIS}
+     * @return The number of evicted fetchers
+     */
+    int trimFetchers(boolean all) {
+        final long now = SystemClock.uptimeMillis();
+        int evicted = 0;
+        for (Map.Entry<String, RetainedFetcher> entry : fetchers.entrySet()) {
+            final RetainedFetcher retainedFetcher = entry.getValue();
+            if (!all && now - retainedFetcher.lastUseUptimeMillis < IDLE_FETCHER_MILLIS) {
+                continue;
+            }
+            // Might have been released concurrently
+            if (fetchers.remove(entry.getKey(), retainedFetcher)) {
+                retainedFetcher.session.fetcherIDs.remove(entry.getKey());
+                synchronized (evictedFetcherIDs) {
+                    evictedFetcherIDs.put(entry.getKey(), Boolean.TRUE);
+                }
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
     private void configureSharedFetcherParameters(@NonNull BatchInboxFetcher fetcher, @NonNull Map<String, Object> parameters) {
         Number maxPageSize = getOptionalTypedParameter(parameters, "maxPageSize", Number.class, null);
         Number limit = getOptionalTypedParameter(parameters, "limit", Number.class, null);
@@ -102,10 +175,6 @@ class InboxBridge {
         }
     }
 
-    private void releaseFetcher(@NonNull Map<String, Object> parameters) throws BatchBridgeException {
-        fetchers.remove(getTypedParameter(parameters, "fetcherID", String.class));
-    }
-
     @NonNull
     private String makeFetcherID() {
         return UUID.randomUUID().toString();
@@ -113,24 +182,43 @@ class InboxBridge {
 
     @NonNull
     private BatchInboxFetcher getFetcherInstance(@NonNull Map<String, Object> parameters) throws BatchBridgeException {
-        BatchInboxFetcher fetcher = fetchers.get(getTypedParameter(parameters, "fetcherID", String.class));
+        final String fetcherID = getTypedParameter(parameters, "fetcherID", String.class);
+        RetainedFetcher retainedFetcher = fetchers.get(fetcherID);
 
-        if (fetcher == null) {
+        if (retainedFetcher == null) {
+            boolean wasEvicted;
+            synchronized (evictedFetcherIDs) {
+                wasEvicted = evictedFetcherIDs.containsKey(fetcherID);
+            }
+            if (wasEvicted) {
+                throw new BatchBridgeException(BatchBridgePublicErrorCode.INBOX_FETCHER_EVICTED,
+                        "The native inbox fetcher backing this object has been released because the app was low on memory. " +
+                                "Create a new BatchInboxFetcher to fetch notifications again.",
+                        null);
+            }
             throw new BatchBridgeException(BatchBridgePublicErrorCode.INBOX_MISSING_NATIVE_FETCHER,
                     "The native inbox fetcher backing this object could not be found." +
                             "Did you call 'dispose()' on this BatchInboxFetcher and attempted to use it afterwards?",
                     null);
         }
 
-        return fetcher;
+        retainedFetcher.lastUseUptimeMillis = SystemClock.uptimeMillis();
+        return retainedFetcher.fetcher;
     }
 
-    private Promise<Object> fetchNewNotifications(@NonNull Map<String, Object> parameters) throws BatchBridgeException {
-        final BatchInboxFetcher fetcher = getFetcherInstance(parameters);
+    @NonNull
+    private String getNotificationID(@NonNull Map<String, Object> parameters) throws BatchBridgeException {
+        return getTypedParameter(parameters, "notifID", String.class);
+    }
 
+    private Promise<Object> fetchNewNotifications(@NonNull BatchInboxFetcher fetcher) {
         return new Promise<>(promise -> fetcher.fetchNewNotifications(new BatchInboxFetcher.OnNewNotificationsFetchedListener() {
             @Override
             public void onFetchSuccess(@NonNull List<BatchInboxNotificationContent> list, boolean foundNewNotifications, boolean endReached) {
+                if (promise.getStatus() != Promise.Status.PENDING) {
+                    // Cancelled or timed out: skip serializing notifications nobody will read
+                    return;
+                }
                 Map<String, Object> response = new HashMap<>();
                 response.put("foundNew", foundNewNotifications);
                 response.put("endReached", endReached);
@@ -146,12 +234,13 @@ class InboxBridge {
         }));
     }
 
-    private Promise<Object> fetchNextPage(@NonNull Map<String, Object> parameters) throws BatchBridgeException {
-        final BatchInboxFetcher fetcher = getFetcherInstance(parameters);
-
+    private Promise<Object> fetchNextPage(@NonNull BatchInboxFetcher fetcher) {
         return new Promise<>(promise -> fetcher.fetchNextPage(new BatchInboxFetcher.OnNextPageFetchedListener() {
             @Override
             public void onFetchSuccess(@NonNull List<BatchInboxNotificationContent> list, boolean endReached) {
+                if (promise.getStatus() != Promise.Status.PENDING) {
+                    return;
+                }
                 Map<String, Object> response = new HashMap<>();
                 response.put("endReached", endReached);
                 response.put("notifications", serializeNotificationsForBridge(list));
@@ -166,11 +255,7 @@ class InboxBridge {
         }));
     }
 
-    private Promise<Object> markAsRead(@NonNull Map<String, Object> parameters) throws BatchBridgeException {
-        final BatchInboxFetcher fetcher = getFetcherInstance(parameters);
-
-        final String notificationID = getTypedParameter(parameters, "notifID", String.class);
-
+    private Promise<Object> markAsRead(@NonNull BatchInboxFetcher fetcher, @NonNull String notificationID) {
         return new Promise<>(promise -> {
             List<BatchInboxNotificationContent> nativeNotifications = fetcher.getFetchedNotifications();
             BatchInboxNotificationContent notificationToMark = null;
@@ -191,19 +276,13 @@ class InboxBridge {
         });
     }
 
-    private Promise<Object> markAllAsRead(@NonNull Map<String, Object> parameters) throws BatchBridgeException {
-        final BatchInboxFetcher fetcher = getFetcherInstance(parameters);
-
+    private Promise<Object> markAllAsRead(@NonNull BatchInboxFetcher fetcher) {
         fetcher.markAllAsRead();
 
         return Promise.resolved(null);
     }
 
-    private Promise<Object> markAsDeleted(@NonNull Map<String, Object> parameters) throws BatchBridgeException {
-        final BatchInboxFetcher fetcher = getFetcherInstance(parameters);
-
-        final String notificationID = getTypedParameter(parameters, "notifID", String.class);
-
+    private Promise<Object> markAsDeleted(@NonNull BatchInboxFetcher fetcher, @NonNull String notificationID) {
         return new Promise<>(promise -> {
             List<BatchInboxNotificationContent> nativeNotifications = fetcher.getFetchedNotifications();
             BatchInboxNotificationContent notificationToMark = null;
@@ -223,11 +302,7 @@ class InboxBridge {
             promise.resolve(null);
         });
     }
-    private Promise<Object> displayLandingMessage(@NonNull Context context, @NonNull Map<String, Object> parameters) throws BatchBridgeException {
-        final BatchInboxFetcher fetcher = getFetcherInstance(parameters);
-
-        final String notificationID = getTypedParameter(parameters, "notifID", String.class);
-
+    private Promise<Object> displayLandingMessage(@NonNull Context context, @NonNull BatchInboxFetcher fetcher, @NonNull String notificationID) {
         return new Promise<>(promise -> {
             List<BatchInboxNotificationContent> nativeNotifications = fetcher.getFetchedNotifications();
             BatchInboxNotificationContent notificationToDisplay = null;
@@ -247,9 +322,7 @@ class InboxBridge {
         });
     }
 
-    private Promise<Object> getFetchedNotifications(@NonNull Map<String, Object> parameters) throws BatchBridgeException {
-        final BatchInboxFetcher fetcher = getFetcherInstance(parameters);
-
+    private Promise<Object> getFetchedNotifications(@NonNull BatchInboxFetcher fetcher) {
         Map<String, Object> response = new HashMap<>();
         response.put("notifications", serializeNotificationsForBridge(fetcher.getFetchedNotifications()));
         return Promise.resolved(response);
@@ -295,4 +368,22 @@ class InboxBridge {
 
         return serializedNotifications;
     }
+
+    /**
+     * A fetcher, and what's needed to evict it
+     */
+    static final class RetainedFetcher {
+        @NonNull
+        final BatchInboxFetcher fetcher;
+
+        @NonNull
+        final BridgeSession session;
+
+        volatile long lastUseUptimeMillis = SystemClock.uptimeMillis();
+
+        RetainedFetcher(@NonNull BatchInboxFetcher fetcher, @NonNull BridgeSession session) {
+            this.fetcher = fetcher;
+            this.session = session;
+        }
+    }
 }
@@ -0,0 +1,112 @@
+package com.batch.batch_flutter.interop;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Drops redundant location fixes before they're tracked.
+ * <p>
+ * Like Android's LocationManager, a fix is accepted only if both the minimum interval has elapsed
+ * and the minimum distance has been travelled since the last accepted fix. Fixes less accurate than
+ * the accuracy threshold are dropped too.
+ * A value of 0 disables the matching check. Fixes older than the last accepted fix are only dropped
+ * when the minimum interval or distance is set, so that back-dated fixes, such as historical ones,
+ * are tracked by default.
+ */
+final class LocationThrottle {
+
+    private static final double EARTH_RADIUS_METERS = 6_371_000d;
+
+    private final float minDistanceMeters;
+
+    private final long minIntervalMillis;
+
+    private final float maxAccuracyMeters;
+
+    private final boolean dropsOutdatedFixes;
+
+    // Last accepted fix, guarded by "this"
+    private boolean hasLastFix = false;
+    private double lastLatitude;
+    private double lastLongitude;
+    private long lastTime;
+
+    // Counters, guarded by "this"
+    private long acceptedFixes = 0;
+    private long droppedInaccurateFixes = 0;
+    private long droppedOutdatedFixes = 0;
+    private long droppedIntervalFixes = 0;
+    private long droppedDistanceFixes = 0;
+
+    LocationThrottle(float minDistanceMeters, long minIntervalMillis, float maxAccuracyMeters) {
+        this.minDistanceMeters = Math.max(0, minDistanceMeters);
+        this.minIntervalMillis = Math.max(0, minIntervalMillis);
+        this.maxAccuracyMeters = Math.max(0, maxAccuracyMeters);
+        this.dropsOutdatedFixes = this.minIntervalMillis > 0 || this.minDistanceMeters > 0;
+    }
+
+    /**
+     * Check whether a fix should be tracked, recording it as the last accepted fix if so
+     *
+     * @param accuracy   Accuracy radius in meters, if known
+     * @param timeMillis Time of the fix
+     */
+    synchronized boolean accept(double latitude, double longitude, @Nullable Float accuracy, long timeMillis) {
+        if (maxAccuracyMeters > 0 && accuracy != null && accuracy > maxAccuracyMeters) {
+            droppedInaccurateFixes++;
+            return false;
+        }
+
+        if (hasLastFix) {
+            if (dropsOutdatedFixes && timeMillis < lastTime) {
+                droppedOutdatedFixes++;
+                return false;
+            }
+            if (minIntervalMillis > 0 && timeMillis - lastTime < minIntervalMillis) {
+                droppedIntervalFixes++;
+                return false;
+            }
+            if (minDistanceMeters > 0 && distanceMeters(lastLatitude, lastLongitude, latitude, longitude) < minDistanceMeters) {
+                droppedDistanceFixes++;
+                return false;
+            }
+        }
+
+        hasLastFix = true;
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        lastTime = timeMillis;
+        acceptedFixes++;
+        return true;
+    }
+
+    /**
+     * Get the throttle counters, serializable by {@link io.flutter.plugin.common.StandardMessageCodec}
+     */
+    @NonNull
+    synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("accepted", acceptedFixes);
+        stats.put("dropped", droppedInaccurateFixes + droppedOutdatedFixes + droppedIntervalFixes + droppedDistanceFixes);
+        stats.put("droppedInaccurate", droppedInaccurateFixes);
+        stats.put("droppedOutdated", droppedOutdatedFixes);
+        stats.put("droppedInterval", droppedIntervalFixes);
+        stats.put("droppedDistance", droppedDistanceFixes);
+        return stats;
+    }
+
+    /**
+     * Haversine distance between two coordinates
+     */
+    static double distanceMeters(double latitude1, double longitude1, double latitude2, double longitude2) {
+        final double latitudeDelta = Math.toRadians(latitude2 - latitude1);
+        final double longitudeDelta = Math.toRadians(longitude2 - longitude1);
+        final double a = Math.sin(latitudeDelta / 2) * Math.sin(latitudeDelta / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(longitudeDelta / 2) * Math.sin(longitudeDelta / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
@@ -0,0 +1,250 @@
+package com.batch.batch_flutter.interop;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.batch.batch_flutter.BatchFlutterLogger;
+import com.batch.batch_flutter.Promise;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the bridge calls whose promise hasn't been settled yet.
+ * <p>
+ * Calls can be given a timeout, after which their promise is rejected with
+ * {@link BatchBridgePublicErrorCode#CALL_TIMEOUT}. A session's pending calls can also be released all
+ * at once, when the engine they've been made from detaches: their promise is rejected, so that they
+ * don't hold their result callbacks forever.
+ * <p>
+ * Calls made with a token can be cancelled by the caller once it isn't interested in their result
+ * anymore: their promise is rejected with {@link BatchBridgePublicErrorCode#CALL_CANCELLED}.
+ * Handlers should check that their promise is still pending before building a response.
+ * <p>
+ * Promises that are already settled when tracked are returned as is, without any bookkeeping.
+ */
+final class PendingCallWatchdog {
+
+    private static final class PendingCall {
+        @NonNull
+        final String action;
+
+        @NonNull
+        final Promise<Object> promise;
+
+        @NonNull
+        final BridgeSession session;
+
+        @Nullable
+        final TokenKey token;
+
+        final long startMillis;
+
+        volatile ScheduledFuture<?> timeout;
+
+        PendingCall(@NonNull String action, @NonNull Promise<Object> promise, @NonNull BridgeSession session,
+                    @Nullable TokenKey token, long startMillis) {
+            this.action = action;
+            this.promise = promise;
+            this.session = session;
+            this.token = token;
+            this.startMillis = startMillis;
+        }
+    }
+
+    /**
+     * Call tokens are chosen by each engine: they're only unique within a session
+     */
+    private static final class TokenKey {
+        final int sessionID;
+
+        @NonNull
+        final String token;
+
+        TokenKey(int sessionID, @NonNull String token) {
+            this.sessionID = sessionID;
+            this.token = token;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TokenKey)) {
+                return false;
+            }
+            TokenKey other = (TokenKey) o;
+            return sessionID == other.sessionID && token.equals(other.token);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sessionID + token.hashCode();
+        }
+    }
+
+    @NonNull
+    private final ScheduledExecutorService executor;
+
+    private final AtomicLong nextCallID = new AtomicLong();
+
+    private final Map<Long, PendingCall> pendingCalls = new ConcurrentHashMap<>();
+
+    // ConcurrentMap, so that remove(key, value) doesn't bind to the Map default method, which needs API 24
+    private final ConcurrentMap<TokenKey, Long> callIDsByToken = new ConcurrentHashMap<>();
+
+    private final AtomicLong timedOutCalls = new AtomicLong();
+
+    private final AtomicLong releasedCalls = new AtomicLong();
+
+    private final AtomicLong cancelledCalls = new AtomicLong();
+
+    PendingCallWatchdog(@NonNull ScheduledExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Track a call's promise until it settles
+     *
+     * @param session       Session of the engine making the call
+     * @param token         Token the call can be cancelled with, if any
+     * @param timeoutMillis Time after which the promise is rejected. 0 means no timeout.
+     * @return The tracked promise
+     */
+    @NonNull
+    Promise<Object> track(@NonNull String action, @NonNull Promise<Object> promise, @NonNull BridgeSession session,
+                          @Nullable String token, long timeoutMillis) {
+        if (promise.getStatus() != Promise.Status.PENDING) {
+            return promise;
+        }
+
+        final long callID = nextCallID.incrementAndGet();
+        final TokenKey tokenKey = token != null ? new TokenKey(session.id, token) : null;
+        final PendingCall call = new PendingCall(action, promise, session, tokenKey, SystemClock.elapsedRealtime());
+        pendingCalls.put(callID, call);
+        if (tokenKey != null) {
+            callIDsByToken.put(tokenKey, callID);
+        }
+
+        if (timeoutMillis > 0) {
+            call.timeout = executor.schedule(() -> {
+                if (remove(callID) != null) {
+                    timedOutCalls.incrementAndGet();
+                    BatchFlutterLogger.e("Bridge call '" + action + "' timed out after " + timeoutMillis + "ms");
+                    promise.reject(new BatchBridgeException(BatchBridgePublicErrorCode.CALL_TIMEOUT,
+                            "'" + action + "' did not complete within " + timeoutMillis + "ms"));
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        // Might run right away if the promise settled in the meantime
+        promise.then(value -> untrack(callID)).catchException(e -> untrack(callID));
+        return promise;
+    }
+
+    /**
+     * Cancel the pending call a session made with a token
+     *
+     * @return Whether a pending call has been cancelled
+     */
+    boolean cancel(@NonNull BridgeSession session, @NonNull String token) {
+        final Long callID = callIDsByToken.get(new TokenKey(session.id, token));
+        final PendingCall call = callID != null ? remove(callID) : null;
+        if (call == null) {
+            return false;
+        }
+        cancelledCalls.incrementAndGet();
+        cancelTimeout(call);
+        call.promise.reject(new BatchBridgeException(BatchBridgePublicErrorCode.CALL_CANCELLED,
+                "'" + call.action + "' has been cancelled"));
+        return true;
+    }
+
+    /**
+     * Reject a session's pending calls, so that they release what they hold
+     */
+    void releaseSession(@NonNull BridgeSession session, @NonNull String reason) {
+        for (Map.Entry<Long, PendingCall> entry : pendingCalls.entrySet()) {
+            if (entry.getValue().session != session) {
+                continue;
+            }
+            final PendingCall call = remove(entry.getKey());
+            if (call != null) {
+                releasedCalls.incrementAndGet();
+                cancelTimeout(call);
+                call.promise.reject(new BatchBridgeException(BatchBridgePublicErrorCode.INTERNAL_BRIDGE_ERROR,
+                        "'" + call.action + "' has been released: " + reason));
+            }
+        }
+    }
+
+    int getPendingCount() {
+        return pendingCalls.size();
+    }
+
+    /**
+     * Get the pending calls' count and age by action, serializable by
+     * {@link io.flutter.plugin.common.StandardMessageCodec}
+     */
+    @NonNull
+    Map<String, Object> getStats() {
+        final long now = SystemClock.elapsedRealtime();
+        final Map<String, Map<String, Object>> byAction = new HashMap<>();
+        int pending = 0;
+
+        for (PendingCall call : pendingCalls.values()) {
+            pending++;
+            final long age = now - call.startMillis;
+            Map<String, Object> actionStats = byAction.get(call.action);
+            if (actionStats == null) {
+                actionStats = new HashMap<>();
+                actionStats.put("count", 0);
+                actionStats.put("oldestAgeMs", 0L);
+                byAction.put(call.action, actionStats);
+            }
+            actionStats.put("count", (int) actionStats.get("count") + 1);
+            actionStats.put("oldestAgeMs", Math.max((long) actionStats.get("oldestAgeMs"), age));
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pending", pending);
+        stats.put("timedOut", timedOutCalls.get());
+        stats.put("released", releasedCalls.get());
+        stats.put("cancelled", cancelledCalls.get());
+        stats.put("byAction", byAction);
+        return stats;
+    }
+
+    private void untrack(long callID) {
+        final PendingCall call = remove(callID);
+        if (call != null) {
+            cancelTimeout(call);
+        }
+    }
+
+    @Nullable
+    private PendingCall remove(long callID) {
+        final PendingCall call = pendingCalls.remove(callID);
+        if (call != null && call.token != null) {
+            // The token might have been reused by a newer call
+            callIDsByToken.remove(call.token, callID);
+        }
+        return call;
+    }
+
+    private static void cancelTimeout(@NonNull PendingCall call) {
+        final ScheduledFuture<?> timeout = call.timeout;
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.batch.batch_flutter.interop;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.batch.batch_flutter.BatchFlutterLogger;
+import com.batch.batch_flutter.Promise;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges the operations of profile edits received within a short window, so that they're applied
+ * on a single editor and saved once.
+ * <p>
+ * Operations are applied in the order they've been received, which keeps last-writer-wins
+ * semantics for each attribute. Every edit's promise is resolved once the merged save is done.
+ */
+final class ProfileEditCoalescer {
+
+    /**
+     * Applies operations on an editor and saves it
+     */
+    interface Saver {
+        void save(@NonNull List<ProfileOperation> operations);
+    }
+
+    private final long windowMillis;
+
+    @NonNull
+    private final Saver saver;
+
+    @NonNull
+    private final ScheduledExecutorService executor;
+
+    // Guarded by "this"
+    @NonNull
+    private List<ProfileOperation> pendingOperations = new ArrayList<>();
+    @NonNull
+    private List<Promise<Object>> pendingPromises = new ArrayList<>();
+    private boolean flushScheduled = false;
+    // Incremented every time edits are taken, so that flushes scheduled before don't save edits
+    // enqueued after them
+    private long generation = 0;
+
+    // Serializes saves, so that they happen in order
+    private final Object flushLock = new Object();
+
+    ProfileEditCoalescer(long windowMillis, @NonNull Saver saver, @NonNull ScheduledExecutorService executor) {
+        this.windowMillis = windowMillis;
+        this.saver = saver;
+        this.executor = executor;
+    }
+
+    /**
+     * Add an edit's operations to the current window
+     *
+     * @return A promise resolved once the operations have been saved
+     */
+    @NonNull
+    Promise<Object> enqueue(@NonNull List<ProfileOperation> operations) {
+        final Promise<Object> promise = new Promise<>();
+        boolean scheduleFlush = false;
+        final long taskGeneration;
+
+        synchronized (this) {
+            pendingOperations.addAll(operations);
+            pendingPromises.add(promise);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                scheduleFlush = true;
+            }
+            taskGeneration = generation;
+        }
+
+        if (scheduleFlush) {
+            executor.schedule(() -> flush(taskGeneration), windowMillis, TimeUnit.MILLISECONDS);
+        }
+        return promise;
+    }
+
+    /**
+     * Save the pending edits on the current thread, returning once they've been saved.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            save(take());
+        }
+    }
+
+    /**
+     * Take the pending edits right away, without saving them.
+     * <p>
+     * Edits enqueued afterwards start a new window, and won't be saved by flushes scheduled before
+     * this call.
+     *
+     * @return A task saving the taken edits on the current thread, or null if there were none.
+     */
+    @Nullable
+    Runnable takePending() {
+        final TakenEdits edits = take();
+        if (edits == null) {
+            return null;
+        }
+        return () -> {
+            synchronized (flushLock) {
+                save(edits);
+            }
+        };
+    }
+
+    private void flush(long taskGeneration) {
+        synchronized (flushLock) {
+            final TakenEdits edits;
+            synchronized (this) {
+                if (taskGeneration != generation) {
+                    // The edits this flush was scheduled for have already been taken
+                    return;
+                }
+                edits = take();
+            }
+            save(edits);
+        }
+    }
+
+    @Nullable
+    private synchronized TakenEdits take() {
+        flushScheduled = false;
+        generation++;
+        if (pendingPromises.isEmpty()) {
+            return null;
+        }
+        final TakenEdits edits = new TakenEdits(pendingOperations, pendingPromises);
+        pendingOperations = new ArrayList<>();
+        pendingPromises = new ArrayList<>();
+        return edits;
+    }
+
+    private void save(@Nullable TakenEdits edits) {
+        if (edits == null) {
+            return;
+        }
+
+        BatchFlutterLogger.d("Saving " + edits.promises.size() + " coalesced profile edits");
+
+        try {
+            saver.save(edits.operations);
+        } catch (RuntimeException e) {
+            BatchFlutterLogger.e("Could not save coalesced profile edits", e);
+            for (Promise<Object> promise : edits.promises) {
+                promise.reject(new BatchBridgeException(BatchBridgePublicErrorCode.INTERNAL_SDK_ERROR,
+                        "Could not save profile edits", null, e));
+            }
+            return;
+        }
+
+        for (Promise<Object> promise : edits.promises) {
+            promise.resolve(null);
+        }
+    }
+
+    private static final class TakenEdits {
+        @NonNull
+        final List<ProfileOperation> operations;
+
+        @NonNull
+        final List<Promise<Object>> promises;
+
+        TakenEdits(@NonNull List<ProfileOperation> operations, @NonNull List<Promise<Object>> promises) {
+            this.operations = operations;
+            this.promises = promises;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.batch.batch_flutter.interop;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.batch.android.BatchEmailSubscriptionState;
+import com.batch.android.BatchProfileAttributeEditor;
+import com.batch.android.BatchSMSSubscriptionState;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A decoded profile edit operation, ready to be applied on a {@link BatchProfileAttributeEditor}.
+ * <p>
+ * Values have already been converted to their native type: applying an operation can't fail.
+ */
+final class ProfileOperation {
+
+    enum Type {
+        SET_LANGUAGE,
+        SET_REGION,
+        SET_EMAIL_ADDRESS,
+        SET_EMAIL_MARKETING_SUBSCRIPTION,
+        SET_PHONE_NUMBER,
+        SET_SMS_MARKETING_SUBSCRIPTION,
+        SET_TOPIC_PREFERENCES,
+        ADD_TO_TOPIC_PREFERENCES,
+        REMOVE_FROM_TOPIC_PREFERENCES,
+        /**
+         * Value can be a String, Long, Double, Boolean, Date, URI or List of Strings
+         */
+        SET_ATTRIBUTE,
+        REMOVE_ATTRIBUTE,
+        ADD_TO_ARRAY,
+        REMOVE_FROM_ARRAY
+    }
+
+    @NonNull
+    final Type type;
+
+    /**
+     * Attribute key, for operations working on custom attributes
+     */
+    @Nullable
+    final String key;
+
+    @Nullable
+    final Object value;
+
+    ProfileOperation(@NonNull Type type, @Nullable String key, @Nullable Object value) {
+        this.type = type;
+        this.key = key;
+        this.value = value;
+    }
+
+    @SuppressWarnings({"unchecked", "ConstantConditions"})
+    void apply(@NonNull BatchProfileAttributeEditor editor) {
+        switch (type) {
+            case SET_LANGUAGE:
+                editor.setLanguage((String) value);
+                break;
+            case SET_REGION:
+                editor.setRegion((String) value);
+                break;
+            case SET_EMAIL_ADDRESS:
+                editor.setEmailAddress((String) value);
+                break;
+            case SET_EMAIL_MARKETING_SUBSCRIPTION:
+                editor.setEmailMarketingSubscription((BatchEmailSubscriptionState) value);
+                break;
+            case SET_PHONE_NUMBER:
+                editor.setPhoneNumber((String) value);
+                break;
+            case SET_SMS_MARKETING_SUBSCRIPTION:
+                editor.setSMSMarketingSubscription((BatchSMSSubscriptionState) value);
+                break;
+            case SET_TOPIC_PREFERENCES:
+                editor.setTopicPreferences((List<String>) value);
+                break;
+            case ADD_TO_TOPIC_PREFERENCES:
+                editor.addToTopicPreferences((List<String>) value);
+                break;
+            case REMOVE_FROM_TOPIC_PREFERENCES:
+                editor.removeFromTopicPreferences((List<String>) value);
+                break;
+            case SET_ATTRIBUTE:
+                applySetAttribute(editor);
+                break;
+            case REMOVE_ATTRIBUTE:
+                editor.removeAttribute(key);
+                break;
+            case ADD_TO_ARRAY:
+                editor.addToArray(key, (String) value);
+                break;
+            case REMOVE_FROM_ARRAY:
+                editor.removeFromArray(key, (String) value);
+                break;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "ConstantConditions"})
+    private void applySetAttribute(@NonNull BatchProfileAttributeEditor editor) {
+        if (value instanceof String) {
+            editor.setAttribute(key, (String) value);
+        } else if (value instanceof Long) {
+            editor.setAttribute(key, (long) (Long) value);
+        } else if (value instanceof Double) {
+            editor.setAttribute(key, (double) (Double) value);
+        } else if (value instanceof Boolean) {
+            editor.setAttribute(key, (boolean) (Boolean) value);
+        } else if (value instanceof Date) {
+            editor.setAttribute(key, (Date) value);
+        } else if (value instanceof URI) {
+            editor.setAttribute(key, (URI) value);
+        } else if (value instanceof List) {
+            editor.setAttribute(key, (List<String>) value);
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package com.batch.batch_flutter.interop;
+
+import static com.batch.batch_flutter.interop.BatchBridgeUtils.getTypedParameter;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.batch.android.BatchEmailSubscriptionState;
+import com.batch.android.BatchSMSSubscriptionState;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes the operations of a profile edit into {@link ProfileOperation}s.
+ * <p>
+ * Two formats are supported:
+ * <ul>
+ *     <li>The packed format: an "opcodes" integer list, and a "values" list holding the keys and
+ *     values of all operations, in order. See {@link #decodePacked(Object, List)}.</li>
+ *     <li>The map format used by older callers: an "operations" list of maps, where each map
+ *     describes an operation by name.</li>
+ * </ul>
+ * In the map format, invalid values are logged and skipped, but malformed operations make the whole
+ * edit fail, so that none of its operations are applied.
+ */
+final class ProfileOperationDecoder {
+
+    //region Opcodes
+
+    static final int OP_SET_LANGUAGE = 0;
+    static final int OP_SET_REGION = 1;
+    static final int OP_SET_EMAIL_ADDRESS = 2;
+    static final int OP_SET_EMAIL_MARKETING_SUBSCRIPTION = 3;
+    static final int OP_SET_PHONE_NUMBER = 4;
+    static final int OP_SET_SMS_MARKETING_SUBSCRIPTION = 5;
+    static final int OP_SET_TOPIC_PREFERENCES = 6;
+    static final int OP_ADD_TO_TOPIC_PREFERENCES = 7;
+    static final int OP_REMOVE_FROM_TOPIC_PREFERENCES = 8;
+    static final int OP_REMOVE_ATTRIBUTE = 9;
+    static final int OP_ADD_TO_ARRAY = 10;
+    static final int OP_REMOVE_FROM_ARRAY = 11;
+    static final int OP_SET_STRING_ATTRIBUTE = 16;
+    static final int OP_SET_URL_ATTRIBUTE = 17;
+    static final int OP_SET_DATE_ATTRIBUTE = 18;
+    static final int OP_SET_INTEGER_ATTRIBUTE = 19;
+    static final int OP_SET_FLOAT_ATTRIBUTE = 20;
+    static final int OP_SET_BOOLEAN_ATTRIBUTE = 21;
+    static final int OP_SET_ARRAY_ATTRIBUTE = 22;
+
+    //endregion
+
+    private ProfileOperationDecoder() {
+    }
+
+    @NonNull
+    @SuppressWarnings({"unchecked"})
+    static List<ProfileOperation> decode(@NonNull Map<String, Object> parameters) throws BatchBridgeException {
+        Object opcodes = parameters.get("opcodes");
+        if (opcodes != null) {
+            return decodePacked(opcodes, getTypedParameter(parameters, "values", List.class));
+        }
+
+        try {
+            List<Object> operations = getTypedParameter(parameters, "operations", List.class);
+            List<ProfileOperation> decodedOperations = new ArrayList<>(operations.size());
+
+            for (Object operation : operations) {
+                ProfileOperation decodedOperation = decodeOperation((Map<String, Object>) operation);
+                if (decodedOperation != null) {
+                    decodedOperations.add(decodedOperation);
+                }
+            }
+
+            return decodedOperations;
+        } catch (ClassCastException e) {
+            throw new BatchBridgeException(BatchBridgePublicErrorCode.INTERNAL_BRIDGE_ERROR, "Error while decoding user data operations ", null, e);
+        }
+    }
+
+    //region Packed format
+
+    /**
+     * Decode operations in the packed format, in a single pass.
+     * <p>
+     * Each opcode consumes a fixed number of entries of the values list:
+     * <ul>
+     *     <li>Operations on custom attributes consume the attribute key, then the value if any.</li>
+     *     <li>Other operations consume their value.</li>
+     * </ul>
+     * Values are expected to already be of their native type: strings are not parsed, and
+     * subscription states are booleans (true meaning subscribed). Dates can be a {@link Date} or a
+     * number of milliseconds since the epoch, and URLs a {@link URI} or a string.
+     * <p>
+     * As the packed format is generated by the plugin, any unexpected opcode or value makes the
+     * whole edit fail.
+     *
+     * @param opcodes Opcodes, either as an int array (Int32List) or a list of integers
+     */
+    @NonNull
+    static List<ProfileOperation> decodePacked(@NonNull Object opcodes, @NonNull List<Object> values) throws BatchBridgeException {
+        final int[] codes = toIntArray(opcodes);
+        final int valueCount = values.size();
+        final List<ProfileOperation> operations = new ArrayList<>(codes.length);
+
+        int cursor = 0;
+        for (int opcode : codes) {
+            // Opcodes after REMOVE_ATTRIBUTE take both a key and a value
+            final int consumed = opcode > OP_REMOVE_ATTRIBUTE ? 2 : 1;
+            if (cursor + consumed > valueCount) {
+                throw packedError("Missing values for opcode " + opcode);
+            }
+
+            final ProfileOperation operation;
+            switch (opcode) {
+                case OP_SET_LANGUAGE:
+                    operation = new ProfileOperation(ProfileOperation.Type.SET_LANGUAGE, null, nullableValue(values.get(cursor), String.class));
+                    break;
+                case OP_SET_REGION:
+                    operation = new ProfileOperation(ProfileOperation.Type.SET_REGION, null, nullableValue(values.get(cursor), String.class));
+                    break;
+                case OP_SET_EMAIL_ADDRESS:
+                    operation = new ProfileOperation(ProfileOperation.Type.SET_EMAIL_ADDRESS, null, nullableValue(values.get(cursor), String.class));
+                    break;
+                case OP_SET_EMAIL_MARKETING_SUBSCRIPTION:
+                    operation = new ProfileOperation(ProfileOperation.Type.SET_EMAIL_MARKETING_SUBSCRIPTION, null,
+                            value(values.get(cursor), Boolean.class) ? BatchEmailSubscriptionState.SUBSCRIBED : BatchEmailSubscriptionState.UNSUBSCRIBED);
+                    break;
+                case OP_SET_PHONE_NUMBER:
+                    operation = new ProfileOperation(ProfileOperation.Type.SET_PHONE_NUMBER, null, nullableValue(values.get(cursor), String.class));
+                    break;
+                case OP_SET_SMS_MARKETING_SUBSCRIPTION:
+                    operation = new ProfileOperation(ProfileOperation.Type.SET_SMS_MARKETING_SUBSCRIPTION, null,
+                            value(values.get(cursor), Boolean.class) ? BatchSMSSubscriptionState.SUBSCRIBED : BatchSMSSubscriptionState.UNSUBSCRIBED);
+                    break;
+                case OP_SET_TOPIC_PREFERENCES:
+                    operation = new ProfileOperation(ProfileOperation.Type.SET_TOPIC_PREFERENCES, null, nullableStringList(values.get(cursor)));
+                    break;
+                case OP_ADD_TO_TOPIC_PREFERENCES:
+                    operation = new ProfileOperation(ProfileOperation.Type.ADD_TO_TOPIC_PREFERENCES, null, stringList(values.get(cursor)));
+                    break;
+                case OP_REMOVE_FROM_TOPIC_PREFERENCES:
+                    operation = new ProfileOperation(ProfileOperation.Type.REMOVE_FROM_TOPIC_PREFERENCES, null, stringList(values.get(cursor)));
+                    break;
+                case OP_REMOVE_ATTRIBUTE:
+                    operation = new ProfileOperation(ProfileOperation.Type.REMOVE_ATTRIBUTE, value(values.get(cursor), String.class), null);
+                    break;
+                case OP_ADD_TO_ARRAY:
+                    operation = new ProfileOperation(ProfileOperation.Type.ADD_TO_ARRAY,
+                            value(values.get(cursor), String.class), value(values.get(cursor + 1), String.class));
+                    break;
+                case OP_REMOVE_FROM_ARRAY:
+                    operation = new ProfileOperation(ProfileOperation.Type.REMOVE_FROM_ARRAY,
+                            value(values.get(cursor), String.class), value(values.get(cursor + 1), String.class));
+                    break;
+                case OP_SET_STRING_ATTRIBUTE:
+                case OP_SET_URL_ATTRIBUTE:
+                case OP_SET_DATE_ATTRIBUTE:
+                case OP_SET_INTEGER_ATTRIBUTE:
+                case OP_SET_FLOAT_ATTRIBUTE:
+                case OP_SET_BOOLEAN_ATTRIBUTE:
+                case OP_SET_ARRAY_ATTRIBUTE:
+                    operation = new ProfileOperation(ProfileOperation.Type.SET_ATTRIBUTE,
+                            value(values.get(cursor), String.class), packedAttributeValue(opcode, values.get(cursor + 1)));
+                    break;
+                default:
+                    throw packedError("Unknown opcode " + opcode);
+            }
+
+            operations.add(operation);
+            cursor += consumed;
+        }
+
+        if (cursor != valueCount) {
+            throw packedError("Unexpected trailing values");
+        }
+
+        return operations;
+    }
+
+    @NonNull
+    private static Object packedAttributeValue(int opcode, Object rawValue) throws BatchBridgeException {
+        switch (opcode) {
+            case OP_SET_STRING_ATTRIBUTE:
+                return value(rawValue, String.class);
+            case OP_SET_URL_ATTRIBUTE:
+                if (rawValue instanceof URI) {
+                    return rawValue;
+                }
+                try {
+                    return new URI(value(rawValue, String.class));
+                } catch (URISyntaxException e) {
+                    throw packedError("Invalid url value");
+                }
+            case OP_SET_DATE_ATTRIBUTE:
+                if (rawValue instanceof Date) {
+                    return rawValue;
+                }
+                return new Date(value(rawValue, Number.class).longValue());
+            case OP_SET_INTEGER_ATTRIBUTE:
+                return value(rawValue, Number.class).longValue();
+            case OP_SET_FLOAT_ATTRIBUTE:
+                return value(rawValue, Number.class).doubleValue();
+            case OP_SET_BOOLEAN_ATTRIBUTE:
+                return value(rawValue, Boolean.class);
+            default:
+                return stringList(rawValue);
+        }
+    }
+
+    @NonNull
+    private static int[] toIntArray(@NonNull Object opcodes) throws BatchBridgeException {
+        if (opcodes instanceof int[]) {
+            return (int[]) opcodes;
+        }
+        if (opcodes instanceof List) {
+            final List<?> list = (List<?>) opcodes;
+            final int[] codes = new int[list.size()];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = value(list.get(i), Number.class).intValue();
+            }
+            return codes;
+        }
+        throw packedError("Opcodes must be an integer list");
+    }
+
+    @NonNull
+    private static <T> T value(Object rawValue, @NonNull Class<T> valueClass) throws BatchBridgeException {
+        if (!valueClass.isInstance(rawValue)) {
+            throw packedError("Expected a value of type " + valueClass.getSimpleName());
+        }
+        return valueClass.cast(rawValue);
+    }
+
+    private static <T> T nullableValue(Object rawValue, @NonNull Class<T> valueClass) throws BatchBridgeException {
+        return rawValue == null ? null : value(rawValue, valueClass);
+    }
+
+    /**
+     * Copy a list, checking that all of its elements are strings
+     */
+    @NonNull
+    private static ArrayList<String> stringList(Object rawValue) throws BatchBridgeException {
+        final List<?> list = value(rawValue, List.class);
+        final ArrayList<String> strings = new ArrayList<>(list.size());
+        for (Object element : list) {
+            strings.add(value(element, String.class));
+        }
+        return strings;
+    }
+
+    private static ArrayList<String> nullableStringList(Object rawValue) throws BatchBridgeException {
+        return rawValue == null ? null : stringList(rawValue);
+    }
+
+    @NonNull
+    private static BatchBridgeException packedError(@NonNull String message) {
+        return new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, "Invalid packed profile operations: " + message);
+    }
+
+    //endregion
+
+    //region Map format
+
+    /**
+     * Decode an operation
+     *
+     * @return The decoded operation, or null if it should be skipped
+     */
+    @SuppressWarnings({"unchecked"})
+    private static ProfileOperation decodeOperation(@NonNull Map<String, Object> operationDescription) throws BatchBridgeException {
+        String operationName = getTypedParameter(operationDescription, "operation", String.class);
+
+        switch (operationName) {
+            case "SET_LANGUAGE": {
+                Object value = operationDescription.get("value");
+
+                if (value != null && !(value instanceof String)) {
+                    Log.e("Batch Bridge", "Invalid SET_LANGUAGE value: it can only be a string or null");
+                    // Invalid value, continue. NULL is allowed though
+                    return null;
+                }
+
+                return new ProfileOperation(ProfileOperation.Type.SET_LANGUAGE, null, value);
+            }
+            case "SET_REGION": {
+                Object value = operationDescription.get("value");
+
+                if (value != null && !(value instanceof String)) {
+                    Log.e("Batch Bridge", "Invalid SET_REGION value: it can only be a string or null");
+                    // Invalid value, continue. NULL is allowed though
+                    return null;
+                }
+
+                return new ProfileOperation(ProfileOperation.Type.SET_REGION, null, value);
+            }
+            case "SET_EMAIL_ADDRESS": {
+                Object value = operationDescription.get("value");
+
+                if (value != null && !(value instanceof String)) {
+                    // Invalid value, continue. NULL is allowed though
+                    return null;
+                }
+
+                return new ProfileOperation(ProfileOperation.Type.SET_EMAIL_ADDRESS, null, value);
+            }
+            case "SET_EMAIL_MARKETING_SUBSCRIPTION": {
+                Object value = operationDescription.get("value");
+                if ("subscribed".equals(value)) {
+                    return new ProfileOperation(ProfileOperation.Type.SET_EMAIL_MARKETING_SUBSCRIPTION, null, BatchEmailSubscriptionState.SUBSCRIBED);
+                } else if ("unsubscribed".equals(value)) {
+                    return new ProfileOperation(ProfileOperation.Type.SET_EMAIL_MARKETING_SUBSCRIPTION, null, BatchEmailSubscriptionState.UNSUBSCRIBED);
+                }
+                Log.e("Batch Bridge", "Invalid SET_EMAIL_MARKETING_SUBSCRIPTION value: it can only be `subscribed` or `unsubscribed`.");
+                return null;
+            }
+            case "SET_PHONE_NUMBER": {
+                Object value = operationDescription.get("value");
+
+                if (value != null && !(value instanceof String)) {
+                    // Invalid value, continue. NULL is allowed though
+                    return null;
+                }
+
+                return new ProfileOperation(ProfileOperation.Type.SET_PHONE_NUMBER, null, value);
+            }
+            case "SET_SMS_MARKETING_SUBSCRIPTION": {
+                Object value = operationDescription.get("value");
+                if ("subscribed".equals(value)) {
+                    return new ProfileOperation(ProfileOperation.Type.SET_SMS_MARKETING_SUBSCRIPTION, null, BatchSMSSubscriptionState.SUBSCRIBED);
+                } else if ("unsubscribed".equals(value)) {
+                    return new ProfileOperation(ProfileOperation.Type.SET_SMS_MARKETING_SUBSCRIPTION, null, BatchSMSSubscriptionState.UNSUBSCRIBED);
+                }
+                Log.e("Batch Bridge", "Invalid SET_SMS_MARKETING_SUBSCRIPTION value: it can only be `subscribed` or `unsubscribed`.");
+                return null;
+            }
+            case "SET_TOPIC_PREFERENCES": {
+                Object value = operationDescription.get("value");
+                if (value == null) {
+                    return new ProfileOperation(ProfileOperation.Type.SET_TOPIC_PREFERENCES, null, null);
+                }
+
+                return new ProfileOperation(ProfileOperation.Type.SET_TOPIC_PREFERENCES, null,
+                        new ArrayList<String>(getTypedParameter(operationDescription, "value", ArrayList.class)));
+            }
+            case "ADD_TO_TOPIC_PREFERENCES": {
+                return new ProfileOperation(ProfileOperation.Type.ADD_TO_TOPIC_PREFERENCES, null,
+                        new ArrayList<String>(getTypedParameter(operationDescription, "value", ArrayList.class)));
+            }
+            case "REMOVE_FROM_TOPIC_PREFERENCES": {
+                return new ProfileOperation(ProfileOperation.Type.REMOVE_FROM_TOPIC_PREFERENCES, null,
+                        new ArrayList<String>(getTypedParameter(operationDescription, "value", ArrayList.class)));
+            }
+            case "SET_ATTRIBUTE": {
+                String key = getTypedParameter(operationDescription, "key", String.class);
+                String type = getTypedParameter(operationDescription, "type", String.class);
+                Object value = decodeAttributeValue(operationDescription, type);
+                if (value == null) {
+                    return null;
+                }
+                return new ProfileOperation(ProfileOperation.Type.SET_ATTRIBUTE, key, value);
+            }
+            case "REMOVE_ATTRIBUTE": {
+                String key = getTypedParameter(operationDescription, "key", String.class);
+                return new ProfileOperation(ProfileOperation.Type.REMOVE_ATTRIBUTE, key, null);
+            }
+            case "ADD_TO_ARRAY": {
+                String key = getTypedParameter(operationDescription, "key", String.class);
+                String value = getTypedParameter(operationDescription, "value", String.class);
+                return new ProfileOperation(ProfileOperation.Type.ADD_TO_ARRAY, key, value);
+            }
+            case "REMOVE_FROM_ARRAY": {
+                String key = getTypedParameter(operationDescription, "key", String.class);
+                String value = getTypedParameter(operationDescription, "value", String.class);
+                return new ProfileOperation(ProfileOperation.Type.REMOVE_FROM_ARRAY, key, value);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decode a SET_ATTRIBUTE value to its native type
+     *
+     * @return The decoded value, or null if the value is invalid and the operation should be skipped
+     */
+    @SuppressWarnings({"unchecked"})
+    private static Object decodeAttributeValue(@NonNull Map<String, Object> operationDescription, @NonNull String type) throws BatchBridgeException {
+        switch (type) {
+            case "string":
+                return getTypedParameter(operationDescription, "value", String.class);
+            case "url": {
+                Object rawValue = operationDescription.get("value");
+
+                // URIs are already decoded by BatchMessageCodec when sent as native values
+                if (rawValue instanceof URI) {
+                    return rawValue;
+                }
+                try {
+                    return new URI(getTypedParameter(operationDescription, "value", String.class));
+                } catch (URISyntaxException e) {
+                    Log.e("Batch Bridge", "Invalid SET_ATTRIBUTE url value: couldn't parse value", e);
+                    return null;
+                }
+            }
+            case "date": {
+                Object rawValue = operationDescription.get("value");
+
+                // Dates are already decoded by BatchMessageCodec when sent as native values
+                if (rawValue instanceof Date) {
+                    return rawValue;
+                }
+                return new Date(getTypedParameter(operationDescription, "value", Number.class).longValue());
+            }
+            case "integer": {
+                Object rawValue = operationDescription.get("value");
+
+                if (rawValue instanceof Number) {
+                    return ((Number) rawValue).longValue();
+                } else if (rawValue instanceof String) {
+                    try {
+                        return Long.parseLong((String) rawValue);
+                    } catch (NumberFormatException e) {
+                        Log.e("Batch Bridge", "Invalid SET_ATTRIBUTE integer value: couldn't parse value", e);
+                    }
+                }
+                return null;
+            }
+            case "float": {
+                Object rawValue = operationDescription.get("value");
+
+                if (rawValue instanceof Number) {
+                    return ((Number) rawValue).doubleValue();
+                } else if (rawValue instanceof String) {
+                    try {
+                        return Double.parseDouble((String) rawValue);
+                    } catch (NumberFormatException e) {
+                        Log.e("Batch Bridge", "Invalid SET_ATTRIBUTE float value: couldn't parse value", e);
+                    }
+                }
+                return null;
+            }
+            case "boolean": {
+                Object rawValue = operationDescription.get("value");
+
+                if (rawValue instanceof Boolean) {
+                    return rawValue;
+                } else if (rawValue instanceof String) {
+                    return Boolean.parseBoolean((String) rawValue);
+                }
+                return null;
+            }
+            case "array":
+                return new ArrayList<String>(getTypedParameter(operationDescription, "value", ArrayList.class));
+        }
+        return null;
+    }
+    //endregion
+}
@@ -0,0 +1,176 @@
+package com.batch.batch_flutter.interop;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Values last saved by the plugin's profile edits, used to drop operations that wouldn't change
+ * anything.
+ * <p>
+ * The snapshot is kept in memory and scoped to the identifier given to the last profile.identify
+ * call: it's cleared when the identifier changes or when the user opts out.
+ * Only absolute operations (set/remove) can be skipped. Relative ones (adding to or removing from
+ * a list) are always applied, and make the snapshot forget the list they modified.
+ * <p>
+ * Edits made outside of the plugin can't be seen: they might make the snapshot stale.
+ */
+final class ProfileSnapshot {
+
+    // Recorded for removed attributes, so that removing them again can be skipped
+    private static final Object REMOVED = new Object();
+
+    // Recorded in a diff for lists modified by a relative operation, whose value isn't known anymore
+    private static final Object UNKNOWN = new Object();
+
+    // Keys of the native fields. Custom attribute keys are prefixed with "attr." so they can't collide.
+    private static final String KEY_LANGUAGE = "$language";
+    private static final String KEY_REGION = "$region";
+    private static final String KEY_EMAIL_ADDRESS = "$email";
+    private static final String KEY_EMAIL_MARKETING = "$email_marketing";
+    private static final String KEY_PHONE_NUMBER = "$phone";
+    private static final String KEY_SMS_MARKETING = "$sms_marketing";
+    private static final String KEY_TOPIC_PREFERENCES = "$topics";
+
+    /**
+     * Saves the operations that would change the profile.
+     */
+    interface Saver {
+        void save(@NonNull List<ProfileOperation> operations);
+    }
+
+    @NonNull
+    private final Map<String, Object> values = new HashMap<>();
+
+    @Nullable
+    private String identifier = null;
+
+    /**
+     * Scope the snapshot to a new identifier, clearing it if it changed
+     */
+    synchronized void setIdentifier(@Nullable String identifier) {
+        if (!Objects.equals(this.identifier, identifier)) {
+            this.identifier = identifier;
+            clear();
+        }
+    }
+
+    synchronized void clear() {
+        values.clear();
+    }
+
+    /**
+     * Save the operations that would change the profile, and record the values they set.
+     * <p>
+     * Diffing, saving and recording happen under the snapshot's lock, so that concurrent edits
+     * can't both be diffed against the same values, and the snapshot can't be cleared in between.
+     * If the saver throws, nothing is recorded.
+     *
+     * @return false if no operation changes anything: the saver hasn't been called.
+     */
+    synchronized boolean save(@NonNull List<ProfileOperation> operations, @NonNull Saver saver) {
+        final Map<String, Object> changes = new HashMap<>();
+        final List<ProfileOperation> changingOperations = diff(operations, changes);
+        if (changingOperations.isEmpty()) {
+            return false;
+        }
+        saver.save(changingOperations);
+        commit(changes);
+        return true;
+    }
+
+    /**
+     * Compute the operations that would change the saved profile, filling the values they set
+     */
+    @NonNull
+    private List<ProfileOperation> diff(@NonNull List<ProfileOperation> operations, @NonNull Map<String, Object> changes) {
+        final List<ProfileOperation> changingOperations = new ArrayList<>(operations.size());
+
+        for (ProfileOperation operation : operations) {
+            final String key;
+            final Object value;
+            switch (operation.type) {
+                case SET_LANGUAGE:
+                    key = KEY_LANGUAGE;
+                    value = operation.value;
+                    break;
+                case SET_REGION:
+                    key = KEY_REGION;
+                    value = operation.value;
+                    break;
+                case SET_EMAIL_ADDRESS:
+                    key = KEY_EMAIL_ADDRESS;
+                    value = operation.value;
+                    break;
+                case SET_EMAIL_MARKETING_SUBSCRIPTION:
+                    key = KEY_EMAIL_MARKETING;
+                    value = operation.value;
+                    break;
+                case SET_PHONE_NUMBER:
+                    key = KEY_PHONE_NUMBER;
+                    value = operation.value;
+                    break;
+                case SET_SMS_MARKETING_SUBSCRIPTION:
+                    key = KEY_SMS_MARKETING;
+                    value = operation.value;
+                    break;
+                case SET_TOPIC_PREFERENCES:
+                    key = KEY_TOPIC_PREFERENCES;
+                    value = operation.value;
+                    break;
+                case SET_ATTRIBUTE:
+                    key = attributeKey(operation.key);
+                    value = operation.value;
+                    break;
+                case REMOVE_ATTRIBUTE:
+                    key = attributeKey(operation.key);
+                    value = REMOVED;
+                    break;
+                case ADD_TO_TOPIC_PREFERENCES:
+                case REMOVE_FROM_TOPIC_PREFERENCES:
+                    key = KEY_TOPIC_PREFERENCES;
+                    value = UNKNOWN;
+                    break;
+                default:
+                    key = attributeKey(operation.key);
+                    value = UNKNOWN;
+                    break;
+            }
+
+            if (value != UNKNOWN && isCurrentValue(key, value, changes)) {
+                continue;
+            }
+            changes.put(key, value);
+            changingOperations.add(operation);
+        }
+
+        return changingOperations;
+    }
+
+    private void commit(@NonNull Map<String, Object> changes) {
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            if (change.getValue() == UNKNOWN) {
+                values.remove(change.getKey());
+            } else {
+                values.put(change.getKey(), change.getValue());
+            }
+        }
+    }
+
+    private boolean isCurrentValue(@NonNull String key, @Nullable Object value, @NonNull Map<String, Object> changes) {
+        if (changes.containsKey(key)) {
+            return Objects.equals(changes.get(key), value);
+        }
+        return values.containsKey(key) && Objects.equals(values.get(key), value);
+    }
+
+    @NonNull
+    private static String attributeKey(@Nullable String key) {
+        return "attr." + key;
+    }
+}
@@ -0,0 +1,64 @@
+package com.batch.batch_flutter;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static android.os.Looper.getMainLooper;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class ActivityCallQueueTest {
+
+    @Test
+    public void testReplay() {
+        final List<String> events = new ArrayList<>();
+        ActivityCallQueue queue = new ActivityCallQueue(10);
+
+        Assert.assertTrue(queue.enqueue(() -> events.add("replay a"), () -> events.add("expire a"), 1000));
+        Assert.assertTrue(queue.enqueue(() -> events.add("replay b"), () -> events.add("expire b"), 1000));
+        Assert.assertEquals(2, queue.size());
+
+        queue.replayAll();
+        Assert.assertEquals(0, queue.size());
+
+        // Replayed calls don't expire anymore
+        shadowOf(getMainLooper()).idleFor(2000, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(Arrays.asList("replay a", "replay b"), events);
+    }
+
+    @Test
+    public void testDeadlines() {
+        final List<String> events = new ArrayList<>();
+        ActivityCallQueue queue = new ActivityCallQueue(10);
+
+        queue.enqueue(() -> events.add("replay a"), () -> events.add("expire a"), 1000);
+        queue.enqueue(() -> events.add("replay b"), () -> events.add("expire b"), 3000);
+
+        shadowOf(getMainLooper()).idleFor(2000, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(Arrays.asList("expire a"), events);
+        Assert.assertEquals(1, queue.size());
+
+        queue.replayAll();
+        Assert.assertEquals(Arrays.asList("expire a", "replay b"), events);
+    }
+
+    @Test
+    public void testCapacityAndExpireAll() {
+        final List<String> events = new ArrayList<>();
+        ActivityCallQueue queue = new ActivityCallQueue(1);
+
+        Assert.assertTrue(queue.enqueue(() -> events.add("replay a"), () -> events.add("expire a"), 1000));
+        Assert.assertFalse(queue.enqueue(() -> events.add("replay b"), () -> events.add("expire b"), 1000));
+
+        queue.expireAll();
+        Assert.assertEquals(Arrays.asList("expire a"), events);
+        Assert.assertEquals(0, queue.size());
+    }
+}
@@ -0,0 +1,214 @@
+package com.batch.batch_flutter;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.batch.batch_flutter.testutils.ObservableFlutterResult;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+import static android.os.Looper.getMainLooper;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class BackgroundPushDispatcherTest {
+
+    private static final long IDLE_TIMEOUT_MILLIS = 1000;
+
+    private Context context;
+
+    private FakeLauncher launcher;
+
+    private BackgroundPushDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        BackgroundPushDispatcher.saveCallbackHandle(context, 42);
+        launcher = new FakeLauncher();
+        dispatcher = new BackgroundPushDispatcher(context, launcher, IDLE_TIMEOUT_MILLIS);
+    }
+
+    @Test
+    public void testReadyHandshake() {
+        dispatcher.dispatch(payload(1));
+        dispatcher.dispatch(payload(2));
+        shadowOf(getMainLooper()).idle();
+
+        // A single engine is started for both payloads
+        Assert.assertEquals(Collections.singletonList(42L), launcher.callbackHandles);
+        FakeEngine engine = launcher.completeLaunch();
+        Assert.assertTrue(engine.channel.calls.isEmpty());
+
+        // Payloads are sent once the Dart callback is ready
+        ObservableFlutterResult readyResult = new ObservableFlutterResult();
+        dispatcher.onMethodCall(new MethodCall("background.ready", null), readyResult);
+        Assert.assertTrue(readyResult.didCallSuccess);
+        Assert.assertEquals(2, engine.channel.calls.size());
+        Assert.assertEquals("background.onPush", engine.channel.calls.get(0).method);
+        Assert.assertEquals(payload(1), engine.channel.calls.get(0).arguments);
+        Assert.assertEquals(payload(2), engine.channel.calls.get(1).arguments);
+
+        // Later payloads are sent right away, using the same engine
+        dispatcher.dispatch(payload(3));
+        shadowOf(getMainLooper()).idle();
+        Assert.assertEquals(3, engine.channel.calls.size());
+        Assert.assertEquals(1, launcher.callbackHandles.size());
+
+        ObservableFlutterResult unknownResult = new ObservableFlutterResult();
+        dispatcher.onMethodCall(new MethodCall("background.unknown", null), unknownResult);
+        Assert.assertTrue(unknownResult.didCallNotImplemented);
+    }
+
+    @Test
+    public void testQueueCapacityDropsOldest() {
+        for (int i = 0; i < 101; i++) {
+            dispatcher.dispatch(payload(i));
+        }
+        shadowOf(getMainLooper()).idle();
+
+        FakeEngine engine = launcher.completeLaunch();
+        dispatcher.onMethodCall(new MethodCall("background.ready", null), new ObservableFlutterResult());
+
+        Assert.assertEquals(100, engine.channel.calls.size());
+        Assert.assertEquals(payload(1), engine.channel.calls.get(0).arguments);
+        Assert.assertEquals(payload(100), engine.channel.calls.get(99).arguments);
+    }
+
+    @Test
+    public void testStartupTimeout() {
+        dispatcher.dispatch(payload(1));
+        shadowOf(getMainLooper()).idle();
+        FakeEngine engine = launcher.completeLaunch();
+
+        // The Dart callback never calls "background.ready"
+        shadowOf(getMainLooper()).idleFor(BackgroundPushDispatcher.STARTUP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(engine.destroyed);
+        Assert.assertTrue(engine.channel.calls.isEmpty());
+
+        // A new engine is started for the next payload. If it launches after the timeout, it is discarded.
+        dispatcher.dispatch(payload(2));
+        shadowOf(getMainLooper()).idle();
+        Assert.assertEquals(2, launcher.callbackHandles.size());
+        shadowOf(getMainLooper()).idleFor(BackgroundPushDispatcher.STARTUP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        Assert.assertFalse(launcher.pendingCallbacks.remove(0).onLaunched(new FakeEngine()));
+    }
+
+    @Test
+    public void testIdleShutdown() {
+        dispatcher.dispatch(payload(1));
+        shadowOf(getMainLooper()).idle();
+        FakeEngine engine = launcher.completeLaunch();
+        dispatcher.onMethodCall(new MethodCall("background.ready", null), new ObservableFlutterResult());
+
+        // The engine is kept while a payload is being handled
+        shadowOf(getMainLooper()).idleFor(IDLE_TIMEOUT_MILLIS * 5, TimeUnit.MILLISECONDS);
+        Assert.assertFalse(engine.destroyed);
+
+        engine.channel.results.get(0).success(null);
+        shadowOf(getMainLooper()).idleFor(IDLE_TIMEOUT_MILLIS - 1, TimeUnit.MILLISECONDS);
+        Assert.assertFalse(engine.destroyed);
+
+        // A payload received before the timeout postpones it
+        dispatcher.dispatch(payload(2));
+        shadowOf(getMainLooper()).idle();
+        engine.channel.results.get(1).error("error", null, null);
+        shadowOf(getMainLooper()).idleFor(IDLE_TIMEOUT_MILLIS - 1, TimeUnit.MILLISECONDS);
+        Assert.assertFalse(engine.destroyed);
+
+        shadowOf(getMainLooper()).idleFor(1, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(engine.destroyed);
+    }
+
+    @Test
+    public void testMissingCallbackHandle() {
+        BackgroundPushDispatcher.saveCallbackHandle(context, 0);
+        dispatcher.dispatch(payload(1));
+        shadowOf(getMainLooper()).idle();
+        Assert.assertTrue(launcher.callbackHandles.isEmpty());
+    }
+
+    private static Map<String, Object> payload(int index) {
+        return Collections.singletonMap("index", index);
+    }
+
+    private static class FakeLauncher implements BackgroundPushDispatcher.EngineLauncher {
+        final List<Long> callbackHandles = new ArrayList<>();
+        final List<BackgroundPushDispatcher.LaunchCallback> pendingCallbacks = new ArrayList<>();
+
+        @Override
+        public void launch(long callbackHandle, @NonNull BackgroundPushDispatcher.LaunchCallback callback) {
+            callbackHandles.add(callbackHandle);
+            pendingCallbacks.add(callback);
+        }
+
+        FakeEngine completeLaunch() {
+            FakeEngine engine = new FakeEngine();
+            Assert.assertTrue(pendingCallbacks.remove(0).onLaunched(engine));
+            return engine;
+        }
+    }
+
+    private static class FakeEngine implements BackgroundPushDispatcher.Engine {
+        final RecordingChannel channel = new RecordingChannel();
+        boolean destroyed = false;
+
+        @NonNull
+        @Override
+        public MethodChannel getChannel() {
+            return channel;
+        }
+
+        @Override
+        public void destroy() {
+            destroyed = true;
+        }
+    }
+
+    private static class RecordingChannel extends MethodChannel {
+        final List<MethodCall> calls = new ArrayList<>();
+        final List<Result> results = new ArrayList<>();
+
+        RecordingChannel() {
+            super(new NoopMessenger(), BackgroundPushDispatcher.CHANNEL_NAME);
+        }
+
+        @Override
+        public void invokeMethod(@NonNull String method, @Nullable Object arguments, @Nullable Result callback) {
+            calls.add(new MethodCall(method, arguments));
+            results.add(callback);
+        }
+    }
+
+    private static class NoopMessenger implements BinaryMessenger {
+        @Override
+        public void send(@NonNull String channel, @Nullable ByteBuffer message) {
+        }
+
+        @Override
+        public void send(@NonNull String channel, @Nullable ByteBuffer message, @Nullable BinaryReply callback) {
+        }
+
+        @Override
+        public void setMessageHandler(@NonNull String channel, @Nullable BinaryMessageHandler handler) {
+        }
+    }
+}
@@ -17,8 +17,11 @@ import org.robolectric.android.controller.ActivityController;
 import org.robolectric.annotation.LooperMode;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static android.os.Looper.getMainLooper;
 import static org.robolectric.Shadows.shadowOf;
@@ -46,9 +49,12 @@ public class BatchFlutterPluginTest {
             plugin.didCallSetupOverride = true;
 
             ObservableFlutterResult noActivityResult = new ObservableFlutterResult();
-            plugin.onMethodCall(new MethodCall("user.getLanguage", null), noActivityResult);
+            plugin.onMethodCall(new MethodCall("debug.showDebugView", null), noActivityResult);
 
             shadowOf(getMainLooper()).idle();
+            // Calls needing an activity wait for one before failing
+            Assert.assertFalse(noActivityResult.didCallError);
+            shadowOf(getMainLooper()).idleFor(BatchFlutterPlugin.getConfiguration(activity).getActivityCallDeadlineMillis(), TimeUnit.MILLISECONDS);
 
             Assert.assertFalse(didNotSetupResult.didCallNotImplemented);
             Assert.assertTrue(didNotSetupResult.didCallError);
@@ -62,6 +68,40 @@ public class BatchFlutterPluginTest {
         }
     }
 
+    @Test
+    public void testApplicationContextCallsWithoutActivity() {
+        try (ActivityController<TestActivity> controller = Robolectric.buildActivity(TestActivity.class)) {
+            controller.setup();
+
+            TestActivity activity = controller.get();
+            Assert.assertNotNull(activity);
+
+            ControllableBatchFlutterPlugin plugin = new ControllableBatchFlutterPlugin();
+            plugin.didCallSetupOverride = true;
+            plugin.currentActivity = new WeakReference<>(null);
+            plugin.applicationContext = activity.getApplicationContext();
+
+            final Map<String, Object> echoArguments = new HashMap<>();
+            echoArguments.put("value", "Hello, world!");
+
+            ObservableFlutterResult echoResult = new ObservableFlutterResult();
+            plugin.onMethodCall(new MethodCall("echo", echoArguments), echoResult);
+
+            shadowOf(getMainLooper()).idle();
+
+            Assert.assertTrue(echoResult.didCallSuccess);
+            Assert.assertEquals("Hello, world!", echoResult.lastSuccessArgument);
+
+            // Unknown actions fail right away, rather than waiting for an activity
+            ObservableFlutterResult notImplementedResult = new ObservableFlutterResult();
+            plugin.onMethodCall(new MethodCall("not_implemented", null), notImplementedResult);
+
+            shadowOf(getMainLooper()).idle();
+
+            Assert.assertTrue(notImplementedResult.didCallNotImplemented);
+        }
+    }
+
     @Test
     public void testBridgeErrors() {
         try (ActivityController<TestActivity> controller = Robolectric.buildActivity(TestActivity.class)) {
@@ -130,4 +170,87 @@ public class BatchFlutterPluginTest {
             Assert.assertNull(echoResult.lastSuccessArgument);
         }
     }
+
+    @Test
+    public void testSettledResultFastPath() {
+        try (ActivityController<TestActivity> controller = Robolectric.buildActivity(TestActivity.class)) {
+            controller.setup();
+
+            TestActivity activity = controller.get();
+            Assert.assertNotNull(activity);
+
+            ControllableBatchFlutterPlugin plugin = new ControllableBatchFlutterPlugin();
+            plugin.didCallSetupOverride = true;
+            plugin.currentActivity = new WeakReference<>(activity);
+
+            final Map<String, Object> echoArguments = new HashMap<>();
+            echoArguments.put("value", "Hello, world!");
+
+            // Tests run on the main thread: settled results should be sent without idling the looper
+            ObservableFlutterResult echoResult = new ObservableFlutterResult();
+            plugin.onMethodCall(new MethodCall("echo", echoArguments), echoResult);
+            Assert.assertTrue(echoResult.didCallSuccess);
+            Assert.assertEquals("Hello, world!", echoResult.lastSuccessArgument);
+
+            ObservableFlutterResult notImplementedResult = new ObservableFlutterResult();
+            plugin.onMethodCall(new MethodCall("not_implemented", null), notImplementedResult);
+            Assert.assertTrue(notImplementedResult.didCallNotImplemented);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBridgeBatch() {
+        try (ActivityController<TestActivity> controller = Robolectric.buildActivity(TestActivity.class)) {
+            controller.setup();
+
+            TestActivity activity = controller.get();
+            Assert.assertNotNull(activity);
+
+            ControllableBatchFlutterPlugin plugin = new ControllableBatchFlutterPlugin();
+            plugin.didCallSetupOverride = true;
+            plugin.currentActivity = new WeakReference<>(activity);
+
+            final Map<String, Object> echoArguments = new HashMap<>();
+            echoArguments.put("value", "Hello, world!");
+
+            final List<Map<String, Object>> calls = new ArrayList<>();
+            calls.add(makeBatchedCall("echo", echoArguments));
+            calls.add(makeBatchedCall("not_implemented", null));
+            calls.add(makeBatchedCall("echo", null));
+
+            final Map<String, Object> batchArguments = new HashMap<>();
+            batchArguments.put("calls", calls);
+
+            ObservableFlutterResult batchResult = new ObservableFlutterResult();
+            plugin.onMethodCall(new MethodCall("bridge.batch", batchArguments), batchResult);
+
+            shadowOf(getMainLooper()).idle();
+
+            Assert.assertTrue(batchResult.didCallSuccess);
+            List<Map<String, Object>> results = (List<Map<String, Object>>) batchResult.lastSuccessArgument;
+            Assert.assertEquals(3, results.size());
+            Assert.assertEquals("Hello, world!", results.get(0).get("result"));
+            Assert.assertEquals(true, results.get(1).get("notImplemented"));
+            Assert.assertTrue(results.get(2).containsKey("result"));
+            Assert.assertNull(results.get(2).get("result"));
+
+            batchArguments.put("stopOnError", true);
+            batchResult = new ObservableFlutterResult();
+            plugin.onMethodCall(new MethodCall("bridge.batch", batchArguments), batchResult);
+
+            shadowOf(getMainLooper()).idle();
+
+            Assert.assertTrue(batchResult.didCallSuccess);
+            results = (List<Map<String, Object>>) batchResult.lastSuccessArgument;
+            Assert.assertEquals(2, results.size());
+        }
+    }
+
+    private static Map<String, Object> makeBatchedCall(String method, Map<String, Object> arguments) {
+        final Map<String, Object> call = new HashMap<>();
+        call.put("method", method);
+        call.put("arguments", arguments);
+        return call;
+    }
 }
@@ -0,0 +1,31 @@
+package com.batch.batch_flutter;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class BatchFlutterStartupTimingsTest {
+
+    @Test
+    public void testMarks() {
+        BatchFlutterStartupTimings.mark("tests.first");
+        BatchFlutterStartupTimings.mark("tests.second");
+        Map<String, Object> timings = BatchFlutterStartupTimings.getTimings();
+        final Object firstTiming = timings.get("tests.first");
+
+        // Steps are only recorded once, and kept in the order they've been reached
+        BatchFlutterStartupTimings.mark("tests.first");
+        timings = BatchFlutterStartupTimings.getTimings();
+        Assert.assertEquals(firstTiming, timings.get("tests.first"));
+
+        List<String> steps = new ArrayList<>(timings.keySet());
+        Assert.assertTrue(steps.indexOf("tests.first") < steps.indexOf("tests.second"));
+        Assert.assertTrue((long) timings.get("tests.second") >= (long) firstTiming);
+    }
+}
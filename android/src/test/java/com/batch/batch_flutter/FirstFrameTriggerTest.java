@@ -0,0 +1,57 @@
+package com.batch.batch_flutter;
+
+import android.app.Application;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static android.os.Looper.getMainLooper;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class FirstFrameTriggerTest {
+
+    @Test
+    public void testRunsAfterFirstFrame() {
+        final AtomicInteger runs = new AtomicInteger();
+        final Application application = ApplicationProvider.getApplicationContext();
+        new FirstFrameTrigger(application, 5000, runs::incrementAndGet).start();
+
+        shadowOf(getMainLooper()).idle();
+        Assert.assertEquals(0, runs.get());
+
+        try (ActivityController<TestActivity> controller = Robolectric.buildActivity(TestActivity.class)) {
+            controller.setup();
+            shadowOf(getMainLooper()).idleFor(100, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(1, runs.get());
+
+            // Later activities and the maximum delay don't run it again
+            controller.pause().resume();
+            shadowOf(getMainLooper()).idleFor(10000, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(1, runs.get());
+        }
+    }
+
+    @Test
+    public void testRunsAfterMaxDelayWithoutActivity() {
+        final AtomicInteger runs = new AtomicInteger();
+        new FirstFrameTrigger(ApplicationProvider.getApplicationContext(), 5000, runs::incrementAndGet).start();
+
+        shadowOf(getMainLooper()).idleFor(4999, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(0, runs.get());
+        shadowOf(getMainLooper()).idleFor(1, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(1, runs.get());
+
+        shadowOf(getMainLooper()).idleFor(10000, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(1, runs.get());
+    }
+}
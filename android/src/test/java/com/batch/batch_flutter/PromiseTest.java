@@ -0,0 +1,91 @@
+package com.batch.batch_flutter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PromiseTest {
+
+    @Test
+    public void testCallbacksRunInOrder() {
+        final List<String> calls = new ArrayList<>();
+        Promise<String> promise = new Promise<>();
+        promise.then(value -> calls.add("first " + value))
+                .catchException(e -> calls.add("catch"))
+                .then(value -> calls.add("second " + value));
+        Assert.assertEquals(Promise.Status.PENDING, promise.getStatus());
+
+        promise.resolve("foo");
+        promise.resolve("bar");
+        promise.reject(new Exception());
+        promise.then(value -> calls.add("third " + value));
+
+        Assert.assertEquals(Promise.Status.RESOLVED, promise.getStatus());
+        Assert.assertEquals(Arrays.asList("first foo", "second foo", "third foo"), calls);
+    }
+
+    @Test
+    public void testSingleCallback() {
+        final List<Exception> errors = new ArrayList<>();
+        Promise<Object> promise = new Promise<>();
+        promise.catchException(errors::add);
+
+        Exception exception = new Exception();
+        promise.reject(exception);
+
+        Assert.assertEquals(Promise.Status.REJECTED, promise.getStatus());
+        Assert.assertEquals(Collections.singletonList(exception), errors);
+    }
+
+    @Test
+    public void testSettledPromisesAreIndependent() {
+        final List<Runnable> posted = new ArrayList<>();
+        Promise<Object> first = Promise.resolved(null);
+        Promise<Object> second = Promise.resolved(null);
+        first.setExecutor(posted::add);
+
+        final AtomicInteger calls = new AtomicInteger();
+        first.then(value -> calls.incrementAndGet());
+        second.then(value -> calls.incrementAndGet());
+
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(1, posted.size());
+        posted.get(0).run();
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testConcurrentCallbacks() throws InterruptedException {
+        final int threadCount = 8;
+        final int callbacksPerThread = 1000;
+        final Promise<Object> promise = new Promise<>();
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ignored) {
+                }
+                for (int j = 0; j < callbacksPerThread; j++) {
+                    promise.then(value -> calls.incrementAndGet());
+                }
+                done.countDown();
+            }).start();
+        }
+
+        start.countDown();
+        promise.resolve(true);
+        done.await();
+
+        Assert.assertEquals(threadCount * callbacksPerThread, calls.get());
+    }
+}
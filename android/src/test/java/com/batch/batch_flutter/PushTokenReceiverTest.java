@@ -0,0 +1,56 @@
+package com.batch.batch_flutter;
+
+import android.content.Context;
+import android.content.Intent;
+
+import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.batch.android.Batch;
+import com.batch.batch_flutter.interop.BatchBridge;
+import com.batch.batch_flutter.interop.BridgeEvents;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static android.os.Looper.getMainLooper;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class PushTokenReceiverTest {
+
+    @Test
+    public void testObtainedTokenIsEmitted() {
+        final Context context = ApplicationProvider.getApplicationContext();
+        final List<Object> tokens = new ArrayList<>();
+        final BridgeEvents.Listener listener = tokens::add;
+        PushTokenReceiver.register(context);
+        BatchBridge.getEvents().addListener(BridgeEvents.Stream.PUSH_TOKEN, listener);
+        tokens.clear();
+
+        try {
+            LocalBroadcastManager.getInstance(context).sendBroadcast(makeRegistrationIntent("obtained-token"));
+            shadowOf(getMainLooper()).idle();
+            Assert.assertEquals(1, tokens.size());
+            Assert.assertEquals("obtained-token", tokens.get(0));
+
+            // The same token isn't emitted twice
+            LocalBroadcastManager.getInstance(context).sendBroadcast(makeRegistrationIntent("obtained-token"));
+            shadowOf(getMainLooper()).idle();
+            Assert.assertEquals(1, tokens.size());
+        } finally {
+            BatchBridge.getEvents().removeListener(BridgeEvents.Stream.PUSH_TOKEN, listener);
+        }
+    }
+
+    private static Intent makeRegistrationIntent(String token) {
+        final Intent intent = new Intent(Batch.ACTION_REGISTRATION_IDENTIFIER_OBTAINED);
+        intent.putExtra(Batch.EXTRA_REGISTRATION_IDENTIFIER, token);
+        return intent;
+    }
+}
@@ -0,0 +1,54 @@
+package com.batch.batch_flutter;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class SetupGateTest {
+
+    @Test
+    public void testQueuedWorkRunsInOrder() {
+        final List<String> ran = new ArrayList<>();
+        SetupGate gate = new SetupGate(10);
+
+        Assert.assertTrue(gate.runWhenOpen(() -> ran.add("a")));
+        Assert.assertTrue(gate.runWhenOpen(() -> {
+            ran.add("b");
+            // Work submitted while draining runs after what was already queued
+            gate.runWhenOpen(() -> ran.add("d"));
+        }));
+        Assert.assertTrue(gate.runWhenOpen(() -> ran.add("c")));
+        Assert.assertTrue(ran.isEmpty());
+        Assert.assertEquals(3, gate.getPendingCount());
+
+        gate.open();
+        Assert.assertTrue(gate.isOpen());
+        Assert.assertEquals(Arrays.asList("a", "b", "c", "d"), ran);
+
+        Assert.assertTrue(gate.runWhenOpen(() -> ran.add("e")));
+        Assert.assertEquals(Arrays.asList("a", "b", "c", "d", "e"), ran);
+    }
+
+    @Test
+    public void testCapacity() {
+        SetupGate gate = new SetupGate(2);
+        Assert.assertTrue(gate.runWhenOpen(() -> {
+        }));
+        Assert.assertTrue(gate.runWhenOpen(() -> {
+            throw new IllegalStateException("failure");
+        }));
+        Assert.assertFalse(gate.runWhenOpen(() -> {
+        }));
+
+        // A failing operation doesn't prevent the gate from opening
+        gate.open();
+        Assert.assertTrue(gate.isOpen());
+        Assert.assertEquals(0, gate.getPendingCount());
+    }
+}
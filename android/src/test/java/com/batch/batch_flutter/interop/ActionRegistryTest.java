@@ -0,0 +1,59 @@
+package com.batch.batch_flutter.interop;
+
+import com.batch.batch_flutter.Promise;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ActionRegistryTest {
+
+    @Test
+    public void testLookup() {
+        ActionHandler handler = (parameters, context, session) -> Promise.resolved(null);
+
+        ActionRegistry registry = new ActionRegistry();
+        registry.register(Action.ECHO, ActionRoute.Threading.ANY, handler);
+        registry.register(Action.DEBUG_SHOW_DEBUG_VIEW, ActionRoute.Threading.MAIN, handler);
+
+        ActionRoute route = registry.find("debug.showDebugView");
+        Assert.assertNotNull(route);
+        Assert.assertEquals(Action.DEBUG_SHOW_DEBUG_VIEW, route.action);
+        Assert.assertEquals(ActionRoute.Threading.MAIN, route.threading);
+        Assert.assertSame(handler, route.handler);
+        Assert.assertSame(route, registry.get(Action.DEBUG_SHOW_DEBUG_VIEW));
+
+        // Names are case insensitive
+        Assert.assertSame(route, registry.find("DEBUG.SHOWDEBUGVIEW"));
+        Assert.assertSame(registry.get(Action.ECHO), registry.find("Echo"));
+
+        Assert.assertNull(registry.find("user.getLanguage"));
+        Assert.assertNull(registry.get(Action.USER_GET_LANGUAGE));
+        Assert.assertNull(registry.find("not_implemented"));
+        Assert.assertNull(registry.find(""));
+        Assert.assertNull(registry.find(null));
+    }
+
+    @Test
+    public void testRouteSettings() {
+        ActionHandler handler = (parameters, context, session) -> Promise.resolved(null);
+
+        ActionRegistry registry = new ActionRegistry();
+        registry.register(Action.ECHO, ActionRoute.Threading.ANY, handler);
+        registry.register(Action.USER_FETCH_TAGS, ActionRoute.Threading.ANY, handler);
+
+        ActionRoute echoRoute = registry.get(Action.ECHO);
+        ActionRoute fetchRoute = registry.get(Action.USER_FETCH_TAGS);
+        Assert.assertEquals(ActionRoute.ContextRequirement.ACTIVITY, echoRoute.contextRequirement);
+        Assert.assertEquals(0, fetchRoute.timeoutMillis);
+
+        // Unregistered actions are ignored
+        registry.setContextRequirement(ActionRoute.ContextRequirement.APPLICATION, Action.ECHO, Action.USER_GET_LANGUAGE);
+        registry.setTimeout(Action.USER_FETCH_TAGS, 1000);
+        registry.setTimeout(Action.USER_GET_LANGUAGE, 1000);
+
+        Assert.assertEquals(ActionRoute.ContextRequirement.APPLICATION, echoRoute.contextRequirement);
+        Assert.assertEquals(ActionRoute.ContextRequirement.ACTIVITY, fetchRoute.contextRequirement);
+        Assert.assertEquals(1000, fetchRoute.timeoutMillis);
+        Assert.assertNull(registry.get(Action.USER_GET_LANGUAGE));
+    }
+}
@@ -0,0 +1,88 @@
+package com.batch.batch_flutter.interop;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.plugin.common.StandardMessageCodec;
+
+public class BatchMessageCodecTest {
+
+    @Test
+    public void testNativeTypesRoundTrip() throws Exception {
+        final Date date = new Date(1700000000123L);
+        final URI uri = new URI("https://batch.com/path?query=1");
+
+        Assert.assertEquals(date, roundTrip(date));
+        Assert.assertEquals(uri, roundTrip(uri));
+
+        final Map<String, Object> arguments = new HashMap<>();
+        arguments.put("date", date);
+        arguments.put("url", uri);
+        Assert.assertEquals(arguments, roundTrip(arguments));
+    }
+
+    @Test
+    public void testEventAttributesAreCopied() {
+        final byte[] bytes = new byte[]{1, 0, 0, 0, 3, 0, 0, 0, 'k', 'e', 'y', 'b', 1};
+        final Object decoded = roundTrip(new EncodedEventAttributes(bytes));
+        Assert.assertTrue(decoded instanceof EncodedEventAttributes);
+        Assert.assertArrayEquals(bytes, ((EncodedEventAttributes) decoded).bytes);
+
+        // Garbage is only detected once decoded by the bridge, where it can be reported
+        final byte[] garbage = new byte[]{(byte) 0xff, 42};
+        Assert.assertArrayEquals(garbage, ((EncodedEventAttributes) roundTrip(new EncodedEventAttributes(garbage))).bytes);
+    }
+
+    @Test
+    public void testMalformedURIIsKeptAsString() {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(BatchMessageCodec.TYPE_URI);
+        final byte[] bytes = "not a uri".getBytes(StandardCharsets.UTF_8);
+        stream.write(bytes.length);
+        stream.write(bytes, 0, bytes.length);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(stream.size());
+        buffer.put(stream.toByteArray());
+        buffer.flip();
+        Assert.assertEquals("not a uri", BatchMessageCodec.INSTANCE.decodeMessage(buffer));
+    }
+
+    @Test
+    public void testStandardValuesAreUnchanged() {
+        final List<Object> list = new ArrayList<>();
+        list.add("string");
+        list.add(42);
+        list.add(4.2);
+        list.add(true);
+
+        final Map<String, Object> arguments = new HashMap<>();
+        arguments.put("list", list);
+        arguments.put("null", null);
+
+        // Messages encoded by the standard codec must be decoded the same way
+        ByteBuffer standardBuffer = StandardMessageCodec.INSTANCE.encodeMessage(arguments);
+        standardBuffer.flip();
+        Assert.assertEquals(arguments, BatchMessageCodec.INSTANCE.decodeMessage(standardBuffer));
+
+        ByteBuffer batchBuffer = BatchMessageCodec.INSTANCE.encodeMessage(arguments);
+        batchBuffer.flip();
+        standardBuffer = StandardMessageCodec.INSTANCE.encodeMessage(arguments);
+        standardBuffer.flip();
+        Assert.assertEquals(standardBuffer, batchBuffer);
+    }
+
+    private static Object roundTrip(Object value) {
+        ByteBuffer buffer = BatchMessageCodec.INSTANCE.encodeMessage(value);
+        buffer.flip();
+        return BatchMessageCodec.INSTANCE.decodeMessage(buffer);
+    }
+}
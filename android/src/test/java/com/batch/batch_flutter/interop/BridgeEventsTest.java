@@ -0,0 +1,72 @@
+package com.batch.batch_flutter.interop;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class BridgeEventsTest {
+
+    @Test
+    public void testListenersReceiveTheirStream() {
+        final BridgeEvents events = new BridgeEvents();
+        final List<Object> tokens = new ArrayList<>();
+        final List<Object> permissions = new ArrayList<>();
+        events.addListener(BridgeEvents.Stream.PUSH_TOKEN, tokens::add);
+        events.addListener(BridgeEvents.Stream.NOTIFICATION_PERMISSION, permissions::add);
+
+        events.emit(BridgeEvents.Stream.PUSH_TOKEN, "token");
+        events.emit(BridgeEvents.Stream.NOTIFICATION_PERMISSION, true);
+
+        Assert.assertEquals(Collections.singletonList("token"), tokens);
+        Assert.assertEquals(Collections.singletonList(true), permissions);
+    }
+
+    @Test
+    public void testLastEventIsReplayed() {
+        final BridgeEvents events = new BridgeEvents();
+        final List<Object> received = new ArrayList<>();
+
+        events.emit(BridgeEvents.Stream.PUSH_TOKEN, "first");
+        events.emit(BridgeEvents.Stream.PUSH_TOKEN, "second");
+        events.addListener(BridgeEvents.Stream.PUSH_TOKEN, received::add);
+        Assert.assertEquals(Collections.singletonList("second"), received);
+
+        // Nothing to replay on a stream without events
+        final List<Object> optStates = new ArrayList<>();
+        events.addListener(BridgeEvents.Stream.OPT_STATE, optStates::add);
+        Assert.assertTrue(optStates.isEmpty());
+    }
+
+    @Test
+    public void testEmitIfChanged() {
+        final BridgeEvents events = new BridgeEvents();
+        final List<Object> received = new ArrayList<>();
+        events.addListener(BridgeEvents.Stream.PUSH_TOKEN, received::add);
+
+        // A null token is a first event
+        events.emitIfChanged(BridgeEvents.Stream.PUSH_TOKEN, null);
+        events.emitIfChanged(BridgeEvents.Stream.PUSH_TOKEN, null);
+        events.emitIfChanged(BridgeEvents.Stream.PUSH_TOKEN, "token");
+        events.emitIfChanged(BridgeEvents.Stream.PUSH_TOKEN, "token");
+        Assert.assertEquals(Arrays.asList(null, "token"), received);
+    }
+
+    @Test
+    public void testRemovedListener() {
+        final BridgeEvents events = new BridgeEvents();
+        final List<Object> received = new ArrayList<>();
+        final BridgeEvents.Listener listener = received::add;
+        events.addListener(BridgeEvents.Stream.OPT_STATE, listener);
+        events.removeListener(BridgeEvents.Stream.OPT_STATE, listener);
+
+        events.emit(BridgeEvents.Stream.OPT_STATE, Collections.singletonMap("optedOut", true));
+        Assert.assertTrue(received.isEmpty());
+    }
+}
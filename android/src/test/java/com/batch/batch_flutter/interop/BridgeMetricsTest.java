@@ -0,0 +1,79 @@
+package com.batch.batch_flutter.interop;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class BridgeMetricsTest {
+
+    @Test
+    public void testHistogramBuckets() {
+        final BridgeMetrics.Histogram histogram = new BridgeMetrics.Histogram();
+        histogram.record(0);
+        histogram.record(100);
+        histogram.record(101);
+        histogram.record(60_000_000);
+
+        final Map<String, Object> stats = histogram.getStats();
+        @SuppressWarnings("unchecked")
+        final List<Long> buckets = (List<Long>) stats.get("buckets");
+        Assert.assertEquals(BridgeMetrics.BUCKET_UPPER_BOUNDS_MICROS.length + 1, buckets.size());
+        // Upper bounds are inclusive
+        Assert.assertEquals(2L, (long) buckets.get(0));
+        Assert.assertEquals(1L, (long) buckets.get(1));
+        Assert.assertEquals(1L, (long) buckets.get(buckets.size() - 1));
+        Assert.assertEquals(4, histogram.getCount());
+        Assert.assertEquals(60_000_201L, stats.get("sumMicros"));
+        Assert.assertEquals(60_000_000L, stats.get("maxMicros"));
+    }
+
+    @Test
+    public void testCallsAndErrors() {
+        final BridgeMetrics metrics = new BridgeMetrics();
+        final List<String> listenedErrors = new ArrayList<>();
+        metrics.setListener((action, queueWaitMicros, executionMicros, totalMicros, errorCode) -> {
+            Assert.assertEquals("echo", action);
+            Assert.assertTrue(queueWaitMicros >= 0);
+            Assert.assertTrue(totalMicros >= executionMicros);
+            listenedErrors.add(errorCode);
+        });
+
+        BridgeMetrics.Call call = metrics.startCall(Action.ECHO, System.nanoTime());
+        call.start();
+        call.finish(null);
+
+        call = metrics.startCall(Action.ECHO, System.nanoTime());
+        call.start();
+        call.finish(new BatchBridgeException(BatchBridgePublicErrorCode.CALL_TIMEOUT, "timeout"));
+
+        call = metrics.startCall(Action.ECHO, System.nanoTime());
+        call.finish(new BatchBridgeNotImplementedException("echo"));
+
+        final BridgeMetrics.ActionMetrics echoMetrics = metrics.get(Action.ECHO);
+        Assert.assertEquals(3, echoMetrics.calls.get());
+        Assert.assertEquals(3, echoMetrics.total.getCount());
+        Assert.assertEquals(1, echoMetrics.errors.get(BatchBridgePublicErrorCode.CALL_TIMEOUT.ordinal()));
+
+        final List<String> expectedErrors = new ArrayList<>();
+        expectedErrors.add(null);
+        expectedErrors.add(BatchBridgePublicErrorCode.CALL_TIMEOUT.code);
+        expectedErrors.add(BridgeMetrics.NOT_IMPLEMENTED_ERROR);
+        Assert.assertEquals(expectedErrors, listenedErrors);
+
+        final Map<String, Object> stats = metrics.getStats();
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> actions = (Map<String, Object>) stats.get("actions");
+        // Only called actions are reported
+        Assert.assertEquals(1, actions.size());
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> echoStats = (Map<String, Object>) actions.get("echo");
+        Assert.assertEquals(3L, echoStats.get("calls"));
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> errors = (Map<String, Object>) echoStats.get("errors");
+        Assert.assertEquals(1L, errors.get("callTimeout"));
+        Assert.assertEquals(1L, errors.get(BridgeMetrics.NOT_IMPLEMENTED_ERROR));
+    }
+}
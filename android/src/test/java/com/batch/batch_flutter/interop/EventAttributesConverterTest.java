@@ -0,0 +1,216 @@
+package com.batch.batch_flutter.interop;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class EventAttributesConverterTest {
+
+    @Test
+    public void testDeepNestingDoesNotOverflow() throws BatchBridgeException {
+        EventAttributesConverter converter = new EventAttributesConverter(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        Assert.assertNotNull(converter.convert(makeNestedData(50_000)));
+        Assert.assertNull(converter.convert(null));
+    }
+
+    @Test
+    public void testLimits() {
+        EventAttributesConverter converter = new EventAttributesConverter(3, 5);
+
+        try {
+            converter.convert(makeNestedData(3));
+            Assert.fail("Conversion should have failed");
+        } catch (BatchBridgeException e) {
+            Assert.assertEquals(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, e.pluginCode);
+        }
+
+        Map<String, Object> wideData = new HashMap<>();
+        for (int i = 0; i < 6; i++) {
+            wideData.put("attr_" + i, attribute("s", "value"));
+        }
+        try {
+            converter.convert(wideData);
+            Assert.fail("Conversion should have failed");
+        } catch (BatchBridgeException e) {
+            Assert.assertEquals(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, e.pluginCode);
+        }
+    }
+
+    @Test
+    public void testLimitsAreCheckedBeforeConverting() {
+        EventAttributesConverter converter = new EventAttributesConverter(3, 5);
+
+        // The unknown type would fail the conversion, but limits are checked on the whole payload first
+        Map<String, Object> data = new HashMap<>(makeNestedData(3));
+        data.put("invalid", attribute("sx", "value"));
+        try {
+            converter.convert(data);
+            Assert.fail("Conversion should have failed");
+        } catch (BatchBridgeException e) {
+            Assert.assertEquals(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, e.pluginCode);
+        }
+    }
+
+    @Test
+    public void testUnknownType() {
+        EventAttributesConverter converter = new EventAttributesConverter(3, 5);
+        try {
+            converter.convert(Collections.singletonMap("attr", attribute("sx", "value")));
+            Assert.fail("Conversion should have failed");
+        } catch (BatchBridgeException e) {
+            Assert.assertEquals(BatchBridgePublicErrorCode.INTERNAL_BRIDGE_ERROR, e.pluginCode);
+        }
+    }
+
+    @Test
+    public void testDecodeEncoded() throws BatchBridgeException {
+        EventAttributesConverter converter = new EventAttributesConverter(3, 10);
+        EncodedBuilder builder = new EncodedBuilder()
+                .count(6)
+                .key("string").tag('s').string("value")
+                .key("bool").tag('b').bool(true)
+                .key("date").tag('d').int64(1700000000000L)
+                .key("url").tag('u').string("https://batch.com")
+                .key("$tags").tag('S').count(2).string("a").string("b")
+                .key("items").tag('O').count(2)
+                .count(1).key("float").tag('f').float64(4.2)
+                .count(1).key("child").tag('o').count(1).key("int").tag('i').int64(42);
+        Assert.assertNotNull(converter.decode(builder.build()));
+    }
+
+    @Test
+    public void testDecodeDeepNestingDoesNotOverflow() throws BatchBridgeException {
+        EventAttributesConverter converter = new EventAttributesConverter(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        Assert.assertNotNull(converter.decode(makeNestedEncodedData(50_000)));
+    }
+
+    @Test
+    public void testDecodeLimits() throws BatchBridgeException {
+        EventAttributesConverter converter = new EventAttributesConverter(3, 5);
+        // Top level attributes are at depth 1
+        Assert.assertNotNull(converter.decode(makeNestedEncodedData(2)));
+        assertDecodeFails(converter, makeNestedEncodedData(3));
+
+        EncodedBuilder wideData = new EncodedBuilder().count(6);
+        for (int i = 0; i < 6; i++) {
+            wideData.key("attr_" + i).tag('s').string("value");
+        }
+        assertDecodeFails(converter, wideData.build());
+    }
+
+    @Test
+    public void testDecodeMalformed() {
+        EventAttributesConverter converter = new EventAttributesConverter(3, 5);
+        byte[] valid = new EncodedBuilder().count(1).key("attr").tag('s').string("value").build().bytes;
+
+        assertDecodeFails(converter, new EncodedEventAttributes(Arrays.copyOf(valid, valid.length - 1)));
+        assertDecodeFails(converter, new EncodedEventAttributes(Arrays.copyOf(valid, valid.length + 1)));
+        assertDecodeFails(converter, new EncodedBuilder().count(1).key("attr").tag('x').string("value").build());
+        assertDecodeFails(converter, new EncodedBuilder().count(-1).build());
+        assertDecodeFails(converter, new EncodedBuilder().count(1).key("attr").tag('S').count(Integer.MAX_VALUE).build());
+    }
+
+    private static void assertDecodeFails(EventAttributesConverter converter, EncodedEventAttributes encoded) {
+        try {
+            converter.decode(encoded);
+            Assert.fail("Decoding should have failed");
+        } catch (BatchBridgeException e) {
+            Assert.assertEquals(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, e.pluginCode);
+        }
+    }
+
+    /**
+     * Make encoded event data with the given number of nested objects
+     */
+    static EncodedEventAttributes makeNestedEncodedData(int nestedCount) {
+        EncodedBuilder builder = new EncodedBuilder();
+        for (int i = 0; i < nestedCount; i++) {
+            builder.count(1).key("child").tag('o');
+        }
+        return builder.count(1).key("leaf").tag('i').int64(1).build();
+    }
+
+    /**
+     * Writes event attributes in the format described by {@link EncodedEventAttributes}
+     */
+    static final class EncodedBuilder {
+        private final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        private final ByteBuffer scratch = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+
+        EncodedBuilder count(int count) {
+            scratch.clear();
+            stream.write(scratch.putInt(count).array(), 0, 4);
+            return this;
+        }
+
+        EncodedBuilder string(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            count(bytes.length);
+            stream.write(bytes, 0, bytes.length);
+            return this;
+        }
+
+        EncodedBuilder key(String key) {
+            return string(key);
+        }
+
+        EncodedBuilder tag(char tag) {
+            stream.write(tag);
+            return this;
+        }
+
+        EncodedBuilder bool(boolean value) {
+            stream.write(value ? 1 : 0);
+            return this;
+        }
+
+        EncodedBuilder int64(long value) {
+            scratch.clear();
+            stream.write(scratch.putLong(value).array(), 0, 8);
+            return this;
+        }
+
+        EncodedBuilder float64(double value) {
+            scratch.clear();
+            stream.write(scratch.putDouble(value).array(), 0, 8);
+            return this;
+        }
+
+        EncodedEventAttributes build() {
+            return new EncodedEventAttributes(stream.toByteArray());
+        }
+    }
+
+    /**
+     * Make event data with the given number of nested objects, alternating between objects and object arrays
+     */
+    static Map<String, Object> makeNestedData(int nestedCount) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("leaf", attribute("i", 1));
+        for (int i = 0; i < nestedCount; i++) {
+            Map<String, Object> parent = new HashMap<>();
+            if (i % 2 == 0) {
+                parent.put("child", attribute("o", data));
+            } else {
+                parent.put("children", attribute("oa", Collections.singletonList(data)));
+            }
+            data = parent;
+        }
+        return data;
+    }
+
+    static Map<String, Object> attribute(String type, Object value) {
+        Map<String, Object> attribute = new HashMap<>();
+        attribute.put("type", type);
+        attribute.put("value", value);
+        return attribute;
+    }
+}
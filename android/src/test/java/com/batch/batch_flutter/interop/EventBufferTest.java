@@ -0,0 +1,144 @@
+package com.batch.batch_flutter.interop;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+@RunWith(RobolectricTestRunner.class)
+public class EventBufferTest {
+
+    @Test
+    public void testFlushOrder() {
+        final List<String> sentEvents = Collections.synchronizedList(new ArrayList<>());
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+        EventBuffer buffer = new EventBuffer(4, 60000, (name, data) -> sentEvents.add(name), executor);
+        buffer.add("a", null);
+        buffer.add("b", null);
+        buffer.add("c", null);
+        // Waits for the flush triggered by the second event, if it is running
+        buffer.flush();
+        executor.shutdownNow();
+
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), sentEvents);
+        Assert.assertEquals(0, buffer.getStats().get("depth"));
+        Assert.assertEquals(3L, buffer.getStats().get("sent"));
+    }
+
+    @Test
+    public void testDropsAndFailures() {
+        final List<String> sentEvents = Collections.synchronizedList(new ArrayList<>());
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+        // Block the executor so that automatic flushes can't keep up
+        final CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+
+        EventBuffer buffer = new EventBuffer(4, 60000, (name, data) -> {
+            if ("invalid".equals(name)) {
+                throw new BatchBridgeException(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, "invalid event");
+            }
+            sentEvents.add(name);
+        }, executor);
+
+        for (String name : Arrays.asList("a", "b", "c", "d", "invalid", "f")) {
+            buffer.add(name, null);
+        }
+
+        Map<String, Object> stats = buffer.getStats();
+        Assert.assertEquals(4, stats.get("depth"));
+        Assert.assertEquals(2L, stats.get("dropped"));
+
+        buffer.flush();
+        latch.countDown();
+        executor.shutdownNow();
+
+        Assert.assertEquals(Arrays.asList("c", "d", "f"), sentEvents);
+        stats = buffer.getStats();
+        Assert.assertEquals(0, stats.get("depth"));
+        Assert.assertEquals(3L, stats.get("sent"));
+        Assert.assertEquals(1L, stats.get("failed"));
+    }
+
+    @Test
+    public void testFlushIsSubmittedOnce() {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        final CountDownLatch latch = blockExecutor(executor);
+
+        EventBuffer buffer = new EventBuffer(4, 60000, (name, data) -> {
+        }, executor);
+        for (String name : Arrays.asList("a", "b", "c", "d", "e", "f")) {
+            buffer.add(name, null);
+        }
+
+        // One delayed flush for the first event, and one immediate flush once half full
+        Assert.assertEquals(2, executor.getQueue().size());
+        latch.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testTakePending() throws Exception {
+        final List<String> sentEvents = Collections.synchronizedList(new ArrayList<>());
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        final CountDownLatch latch = blockExecutor(executor);
+
+        EventBuffer buffer = new EventBuffer(4, 60000, (name, data) -> sentEvents.add(name), executor);
+        buffer.add("a", null);
+        buffer.add("b", null);
+        Runnable pendingEvents = buffer.takePending();
+        Assert.assertNotNull(pendingEvents);
+        buffer.add("c", null);
+
+        // The flush submitted for "a" and "b" must not send "c"
+        latch.countDown();
+        executor.submit(() -> {
+        }).get();
+        Assert.assertTrue(sentEvents.isEmpty());
+
+        pendingEvents.run();
+        Assert.assertEquals(Arrays.asList("a", "b"), sentEvents);
+        buffer.flush();
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), sentEvents);
+        Assert.assertNull(buffer.takePending());
+        executor.shutdownNow();
+    }
+
+    /**
+     * Block the executor's thread until the returned latch is counted down.
+     * Returns once the blocking task is running, so that it isn't in the executor's queue anymore.
+     */
+    private static CountDownLatch blockExecutor(ScheduledExecutorService executor) {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                latch.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        try {
+            started.await();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        return latch;
+    }
+}
@@ -0,0 +1,83 @@
+package com.batch.batch_flutter.interop;
+
+import static com.batch.batch_flutter.interop.EventAttributesConverterTest.attribute;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class EventSchemaCacheTest {
+
+    private final EventAttributesConverter converter = new EventAttributesConverter(
+            EventAttributesConverter.DEFAULT_MAX_DEPTH, EventAttributesConverter.DEFAULT_MAX_ATTRIBUTES);
+
+    @Test
+    public void testShapeFingerprint() throws BatchBridgeException {
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("a", attribute("s", "foo"));
+        first.put("b", attribute("i", 1));
+        first.put("c", attribute("o", Collections.singletonMap("d", attribute("b", true))));
+
+        // Same shape, other values and attribute order
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("c", attribute("o", Collections.singletonMap("d", attribute("b", false))));
+        second.put("b", attribute("i", 2));
+        second.put("a", attribute("s", "bar"));
+
+        Map<String, Object> otherType = new HashMap<>(first);
+        otherType.put("b", attribute("f", 1.0));
+
+        Map<String, Object> otherNesting = new HashMap<>(first);
+        otherNesting.put("c", attribute("oa", Collections.singletonList(Collections.singletonMap("d", attribute("b", true)))));
+
+        long fingerprint = shape(first).fingerprint;
+        Assert.assertEquals(fingerprint, shape(second).fingerprint);
+        Assert.assertNotEquals(fingerprint, shape(otherType).fingerprint);
+        Assert.assertNotEquals(fingerprint, shape(otherNesting).fingerprint);
+    }
+
+    @Test
+    public void testValueLimits() throws BatchBridgeException {
+        char[] longString = new char[EventAttributesConverter.MAX_STRING_LENGTH + 1];
+        Arrays.fill(longString, 'a');
+
+        Assert.assertTrue(shape(Collections.singletonMap("a", attribute("s", "foo"))).valuesWithinLimits);
+        Assert.assertFalse(shape(Collections.singletonMap("a", attribute("s", new String(longString)))).valuesWithinLimits);
+        Assert.assertFalse(shape(Collections.singletonMap("$tags", attribute("sa", Collections.nCopies(11, "tag")))).valuesWithinLimits);
+    }
+
+    @Test
+    public void testCache() throws BatchBridgeException {
+        EventSchemaCache cache = new EventSchemaCache(1);
+        EventAttributesConverter.EventShape shape = shape(Collections.singletonMap("a", attribute("s", "foo")));
+
+        Assert.assertFalse(cache.isValidated("event", shape));
+        cache.addValidated("event", shape);
+        Assert.assertTrue(cache.isValidated("event", shape));
+        Assert.assertFalse(cache.isValidated("other_event", shape));
+
+        // Evicts the least recently used shape
+        cache.addValidated("other_event", shape);
+        Assert.assertFalse(cache.isValidated("event", shape));
+
+        // Values over the limits always need a full validation
+        shape.valuesWithinLimits = false;
+        Assert.assertFalse(cache.isValidated("other_event", shape));
+
+        Map<String, Object> stats = cache.getStats();
+        Assert.assertEquals(1L, stats.get("hits"));
+        Assert.assertEquals(4L, stats.get("misses"));
+        Assert.assertEquals(1, stats.get("size"));
+    }
+
+    private EventAttributesConverter.EventShape shape(Map<String, Object> data) throws BatchBridgeException {
+        EventAttributesConverter.EventShape shape = new EventAttributesConverter.EventShape();
+        converter.convert(data, shape);
+        return shape;
+    }
+}
@@ -0,0 +1,70 @@
+package com.batch.batch_flutter.interop;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.batch.batch_flutter.Promise;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class InboxBridgeTest {
+
+    @Test
+    public void testTrimFetchers() throws Exception {
+        final Context context = ApplicationProvider.getApplicationContext();
+        final BridgeSession session = new BridgeSession();
+        final InboxBridge inboxBridge = new InboxBridge();
+        final ActionRegistry registry = new ActionRegistry();
+        inboxBridge.registerActions(registry);
+
+        final String fetcherID = (String) call(registry, Action.INBOX_CREATE_INSTALLATION_FETCHER, new HashMap<>(), context, session);
+        Assert.assertTrue(session.fetcherIDs.contains(fetcherID));
+
+        // The fetcher has just been used: it isn't idle
+        Assert.assertEquals(0, inboxBridge.trimFetchers(false));
+        Assert.assertTrue(inboxBridge.fetchers.containsKey(fetcherID));
+
+        Assert.assertEquals(1, inboxBridge.trimFetchers(true));
+        Assert.assertFalse(inboxBridge.fetchers.containsKey(fetcherID));
+        Assert.assertFalse(session.fetcherIDs.contains(fetcherID));
+
+        final Map<String, Object> fetcherParameters = Collections.singletonMap("fetcherID", fetcherID);
+        assertFetcherError(BatchBridgePublicErrorCode.INBOX_FETCHER_EVICTED, registry, fetcherParameters, context, session);
+
+        // Once released, the fetcher is just missing
+        call(registry, Action.INBOX_RELEASE_FETCHER, fetcherParameters, context, session);
+        assertFetcherError(BatchBridgePublicErrorCode.INBOX_MISSING_NATIVE_FETCHER, registry, fetcherParameters, context, session);
+    }
+
+    private static Object call(ActionRegistry registry, Action action, Map<String, Object> parameters,
+                               Context context, BridgeSession session) throws Exception {
+        final ActionRoute route = registry.get(action);
+        Assert.assertNotNull(route);
+        final Promise<Object> promise = route.handler.handle(parameters, context, session);
+        Assert.assertEquals(Promise.Status.RESOLVED, promise.getStatus());
+        final Object[] value = new Object[1];
+        promise.then(result -> value[0] = result);
+        return value[0];
+    }
+
+    private static void assertFetcherError(BatchBridgePublicErrorCode expectedCode, ActionRegistry registry,
+                                           Map<String, Object> parameters, Context context, BridgeSession session) throws Exception {
+        final ActionRoute route = registry.get(Action.INBOX_GET_FETCHED_NOTIFICATIONS);
+        Assert.assertNotNull(route);
+        try {
+            route.handler.handle(parameters, context, session);
+            Assert.fail("Expected a BatchBridgeException");
+        } catch (BatchBridgeException e) {
+            Assert.assertEquals(expectedCode, e.pluginCode);
+        }
+    }
+}
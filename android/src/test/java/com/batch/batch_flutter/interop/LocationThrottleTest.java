@@ -0,0 +1,60 @@
+package com.batch.batch_flutter.interop;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class LocationThrottleTest {
+
+    @Test
+    public void testFilter() {
+        LocationThrottle throttle = new LocationThrottle(50, 10_000, 100);
+
+        Assert.assertTrue(throttle.accept(48.8566, 2.3522, 10f, 0));
+        // Inaccurate
+        Assert.assertFalse(throttle.accept(48.8600, 2.3522, 500f, 20_000));
+        // Too soon
+        Assert.assertFalse(throttle.accept(48.8600, 2.3522, 10f, 5_000));
+        // About 11 meters away
+        Assert.assertFalse(throttle.accept(48.8567, 2.3522, null, 20_000));
+        // About 380 meters away
+        Assert.assertTrue(throttle.accept(48.8600, 2.3522, null, 20_000));
+        // Older than the last accepted fix
+        Assert.assertFalse(throttle.accept(48.9000, 2.3522, null, 15_000));
+
+        Map<String, Object> stats = throttle.getStats();
+        Assert.assertEquals(2L, stats.get("accepted"));
+        Assert.assertEquals(4L, stats.get("dropped"));
+        Assert.assertEquals(1L, stats.get("droppedInaccurate"));
+        Assert.assertEquals(1L, stats.get("droppedInterval"));
+        Assert.assertEquals(1L, stats.get("droppedDistance"));
+        Assert.assertEquals(1L, stats.get("droppedOutdated"));
+    }
+
+    @Test
+    public void testDisabledFilterAcceptsEverything() {
+        LocationThrottle throttle = new LocationThrottle(0, 0, 0);
+        Assert.assertTrue(throttle.accept(48.8566, 2.3522, 5000f, 0));
+        Assert.assertTrue(throttle.accept(48.8566, 2.3522, 5000f, 0));
+    }
+
+    @Test
+    public void testDefaultFilterAcceptsOlderFixes() {
+        LocationThrottle throttle = new LocationThrottle(0, 0, 0);
+        Assert.assertTrue(throttle.accept(48.8566, 2.3522, null, 20_000));
+        Assert.assertTrue(throttle.accept(48.8600, 2.3522, null, 10_000));
+
+        // The accuracy threshold alone doesn't drop them either
+        throttle = new LocationThrottle(0, 0, 100);
+        Assert.assertTrue(throttle.accept(48.8566, 2.3522, 10f, 20_000));
+        Assert.assertTrue(throttle.accept(48.8600, 2.3522, 10f, 10_000));
+        Assert.assertEquals(0L, throttle.getStats().get("droppedOutdated"));
+    }
+
+    @Test
+    public void testDistance() {
+        // Paris to London
+        Assert.assertEquals(343_500, LocationThrottle.distanceMeters(48.8566, 2.3522, 51.5074, -0.1278), 1_000);
+    }
+}
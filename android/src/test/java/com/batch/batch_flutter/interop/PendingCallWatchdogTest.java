@@ -0,0 +1,126 @@
+package com.batch.batch_flutter.interop;
+
+import com.batch.batch_flutter.Promise;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(RobolectricTestRunner.class)
+public class PendingCallWatchdogTest {
+
+    @Test
+    public void testSettledCallsAreUntracked() {
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        PendingCallWatchdog watchdog = new PendingCallWatchdog(executor);
+        BridgeSession session = new BridgeSession();
+
+        Promise<Object> settled = Promise.resolved("value");
+        Assert.assertSame(settled, watchdog.track("echo", settled, session, null, 1000));
+        Assert.assertEquals(0, watchdog.getPendingCount());
+
+        Promise<Object> pending = new Promise<>();
+        watchdog.track("user.fetch.tags", pending, session, null, 0);
+        Assert.assertEquals(1, watchdog.getPendingCount());
+        pending.resolve(null);
+        Assert.assertEquals(0, watchdog.getPendingCount());
+
+        Promise<Object> failing = new Promise<>();
+        watchdog.track("user.fetch.tags", failing, session, null, 0);
+        failing.reject(new Exception("failure"));
+        Assert.assertEquals(0, watchdog.getPendingCount());
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testTimeout() throws InterruptedException {
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        PendingCallWatchdog watchdog = new PendingCallWatchdog(executor);
+        BridgeSession session = new BridgeSession();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        Promise<Object> promise = new Promise<>();
+        watchdog.track("user.fetch.attributes", promise, session, null, 50).catchException(e -> {
+            error.set(e);
+            latch.countDown();
+        });
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(error.get() instanceof BatchBridgeException);
+        Assert.assertEquals(BatchBridgePublicErrorCode.CALL_TIMEOUT, ((BatchBridgeException) error.get()).pluginCode);
+        Assert.assertEquals(0, watchdog.getPendingCount());
+        Assert.assertEquals(1L, watchdog.getStats().get("timedOut"));
+
+        // Settling a timed out call is a no-op
+        promise.resolve("late");
+        Assert.assertEquals(Promise.Status.REJECTED, promise.getStatus());
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testCancel() {
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        PendingCallWatchdog watchdog = new PendingCallWatchdog(executor);
+        BridgeSession session = new BridgeSession();
+
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        Promise<Object> promise = watchdog.track("inbox.fetchNextPage", new Promise<>(), session, "token1", 60000)
+                .catchException(error::set);
+        watchdog.track("inbox.fetchNextPage", new Promise<>(), session, "token2", 0);
+
+        Assert.assertFalse(watchdog.cancel(session, "unknown"));
+        // Tokens are scoped to the session of the engine that made the call
+        Assert.assertFalse(watchdog.cancel(new BridgeSession(), "token1"));
+        Assert.assertTrue(watchdog.cancel(session, "token1"));
+        Assert.assertFalse(watchdog.cancel(session, "token1"));
+
+        Assert.assertEquals(Promise.Status.REJECTED, promise.getStatus());
+        Assert.assertEquals(BatchBridgePublicErrorCode.CALL_CANCELLED, ((BatchBridgeException) error.get()).pluginCode);
+        Assert.assertEquals(1, watchdog.getPendingCount());
+        Assert.assertEquals(1L, watchdog.getStats().get("cancelled"));
+
+        // Settled calls can't be cancelled anymore
+        Promise<Object> settled = watchdog.track("user.fetch.tags", new Promise<>(), session, "token3", 0);
+        settled.resolve(null);
+        Assert.assertFalse(watchdog.cancel(session, "token3"));
+        Assert.assertEquals(Promise.Status.RESOLVED, settled.getStatus());
+        executor.shutdownNow();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStatsAndRelease() {
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        PendingCallWatchdog watchdog = new PendingCallWatchdog(executor);
+        BridgeSession session = new BridgeSession();
+
+        Promise<Object> first = watchdog.track("user.fetch.tags", new Promise<>(), session, null, 60000);
+        watchdog.track("user.fetch.tags", new Promise<>(), session, null, 0);
+        watchdog.track("inbox.fetchNextPage", new Promise<>(), session, null, 0);
+        // Another engine's call
+        Promise<Object> otherSessionCall = watchdog.track("user.fetch.tags", new Promise<>(), new BridgeSession(), null, 0);
+
+        Map<String, Object> stats = watchdog.getStats();
+        Assert.assertEquals(4, stats.get("pending"));
+        Map<String, Map<String, Object>> byAction = (Map<String, Map<String, Object>>) stats.get("byAction");
+        Assert.assertEquals(3, byAction.get("user.fetch.tags").get("count"));
+        Assert.assertEquals(1, byAction.get("inbox.fetchNextPage").get("count"));
+
+        // Only the detached engine's calls are released
+        watchdog.releaseSession(session, "engine detached");
+        Assert.assertEquals(Promise.Status.REJECTED, first.getStatus());
+        Assert.assertEquals(Promise.Status.PENDING, otherSessionCall.getStatus());
+        Assert.assertEquals(1, watchdog.getPendingCount());
+        Assert.assertEquals(3L, watchdog.getStats().get("released"));
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,68 @@
+package com.batch.batch_flutter.interop;
+
+import com.batch.batch_flutter.Promise;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ProfileEditCoalescerTest {
+
+    @Test
+    public void testEditsAreSavedOnce() {
+        final List<List<ProfileOperation>> saves = Collections.synchronizedList(new ArrayList<>());
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        ProfileEditCoalescer coalescer = new ProfileEditCoalescer(60000, saves::add, executor);
+
+        ProfileOperation first = new ProfileOperation(ProfileOperation.Type.SET_ATTRIBUTE, "foo", "bar");
+        ProfileOperation second = new ProfileOperation(ProfileOperation.Type.SET_ATTRIBUTE, "foo", "baz");
+
+        final AtomicInteger resolved = new AtomicInteger();
+        Promise<Object> firstPromise = coalescer.enqueue(Collections.singletonList(first));
+        Promise<Object> secondPromise = coalescer.enqueue(Collections.singletonList(second));
+        firstPromise.then(value -> resolved.incrementAndGet());
+        secondPromise.then(value -> resolved.incrementAndGet());
+
+        coalescer.flush();
+        executor.shutdownNow();
+
+        Assert.assertEquals(1, saves.size());
+        // Operations are kept in order, so that the last edit wins
+        Assert.assertEquals(Arrays.asList(first, second), saves.get(0));
+        Assert.assertEquals(2, resolved.get());
+    }
+
+    @Test
+    public void testTakePending() {
+        final List<List<ProfileOperation>> saves = Collections.synchronizedList(new ArrayList<>());
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        ProfileEditCoalescer coalescer = new ProfileEditCoalescer(60000, saves::add, executor);
+
+        ProfileOperation first = new ProfileOperation(ProfileOperation.Type.SET_ATTRIBUTE, "foo", "bar");
+        ProfileOperation second = new ProfileOperation(ProfileOperation.Type.SET_ATTRIBUTE, "foo", "baz");
+
+        final AtomicInteger resolved = new AtomicInteger();
+        coalescer.enqueue(Collections.singletonList(first)).then(value -> resolved.incrementAndGet());
+        Runnable pendingEdits = coalescer.takePending();
+        Assert.assertNotNull(pendingEdits);
+        coalescer.enqueue(Collections.singletonList(second));
+
+        // Taken edits are only saved when asked to, and edits enqueued afterwards aren't part of them
+        Assert.assertTrue(saves.isEmpty());
+        pendingEdits.run();
+        Assert.assertEquals(Collections.singletonList(Collections.singletonList(first)), saves);
+        Assert.assertEquals(1, resolved.get());
+
+        coalescer.flush();
+        Assert.assertEquals(Collections.singletonList(second), saves.get(1));
+        Assert.assertNull(coalescer.takePending());
+        executor.shutdownNow();
+    }
+}
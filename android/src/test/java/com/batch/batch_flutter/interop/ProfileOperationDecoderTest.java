@@ -0,0 +1,83 @@
+package com.batch.batch_flutter.interop;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ProfileOperationDecoderTest {
+
+    @Test
+    public void testDecodePacked() throws BatchBridgeException {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("opcodes", new int[]{
+                ProfileOperationDecoder.OP_SET_LANGUAGE,
+                ProfileOperationDecoder.OP_SET_INTEGER_ATTRIBUTE,
+                ProfileOperationDecoder.OP_SET_DATE_ATTRIBUTE,
+                ProfileOperationDecoder.OP_REMOVE_ATTRIBUTE,
+                ProfileOperationDecoder.OP_ADD_TO_ARRAY,
+        });
+        parameters.put("values", Arrays.asList(null, "age", 42, "birth", 1000, "old", "tags", "foo"));
+
+        List<ProfileOperation> operations = ProfileOperationDecoder.decode(parameters);
+        Assert.assertEquals(5, operations.size());
+        Assert.assertEquals(ProfileOperation.Type.SET_LANGUAGE, operations.get(0).type);
+        Assert.assertNull(operations.get(0).value);
+        Assert.assertEquals("age", operations.get(1).key);
+        Assert.assertEquals(42L, operations.get(1).value);
+        Assert.assertEquals(new Date(1000), operations.get(2).value);
+        Assert.assertEquals(ProfileOperation.Type.REMOVE_ATTRIBUTE, operations.get(3).type);
+        Assert.assertEquals("old", operations.get(3).key);
+        Assert.assertEquals("tags", operations.get(4).key);
+        Assert.assertEquals("foo", operations.get(4).value);
+    }
+
+    @Test
+    public void testDecodePackedErrors() {
+        assertPackedDecodingFails(Collections.singletonList(ProfileOperationDecoder.OP_SET_INTEGER_ATTRIBUTE), Arrays.asList("age", "42"));
+        assertPackedDecodingFails(Collections.singletonList(ProfileOperationDecoder.OP_SET_INTEGER_ATTRIBUTE), Collections.singletonList("age"));
+        assertPackedDecodingFails(Collections.singletonList(ProfileOperationDecoder.OP_REMOVE_ATTRIBUTE), Arrays.asList("age", "trailing"));
+        assertPackedDecodingFails(Collections.singletonList(99), Arrays.asList("a", "b"));
+        // List elements must be strings
+        assertPackedDecodingFails(Collections.singletonList(ProfileOperationDecoder.OP_ADD_TO_TOPIC_PREFERENCES),
+                Collections.singletonList(Arrays.asList("news", 42)));
+        assertPackedDecodingFails(Collections.singletonList(ProfileOperationDecoder.OP_SET_TOPIC_PREFERENCES),
+                Collections.singletonList(Collections.singletonList(null)));
+        assertPackedDecodingFails(Collections.singletonList(ProfileOperationDecoder.OP_SET_ARRAY_ATTRIBUTE),
+                Arrays.asList("tags", Arrays.asList("a", true)));
+    }
+
+    @Test
+    public void testDecodeMapFallback() throws BatchBridgeException {
+        Map<String, Object> operation = new HashMap<>();
+        operation.put("operation", "SET_ATTRIBUTE");
+        operation.put("key", "age");
+        operation.put("type", "integer");
+        operation.put("value", "42");
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("operations", new ArrayList<>(Collections.singletonList(operation)));
+
+        List<ProfileOperation> operations = ProfileOperationDecoder.decode(parameters);
+        Assert.assertEquals(1, operations.size());
+        Assert.assertEquals(42L, operations.get(0).value);
+    }
+
+    private static void assertPackedDecodingFails(List<Integer> opcodes, List<Object> values) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("opcodes", opcodes);
+        parameters.put("values", values);
+        try {
+            ProfileOperationDecoder.decode(parameters);
+            Assert.fail("Decoding should have failed");
+        } catch (BatchBridgeException e) {
+            Assert.assertEquals(BatchBridgePublicErrorCode.BAD_BRIDGE_ARGUMENT_TYPE, e.pluginCode);
+        }
+    }
+}
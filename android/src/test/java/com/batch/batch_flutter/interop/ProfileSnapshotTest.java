@@ -0,0 +1,115 @@
+package com.batch.batch_flutter.interop;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ProfileSnapshotTest {
+
+    @Test
+    public void testNoOpOperationsAreSkipped() {
+        ProfileSnapshot snapshot = new ProfileSnapshot();
+        RecordingSaver saver = new RecordingSaver();
+        List<ProfileOperation> operations = Arrays.asList(
+                new ProfileOperation(ProfileOperation.Type.SET_LANGUAGE, null, "fr"),
+                new ProfileOperation(ProfileOperation.Type.SET_ATTRIBUTE, "age", 42L),
+                new ProfileOperation(ProfileOperation.Type.REMOVE_ATTRIBUTE, "old", null));
+
+        Assert.assertTrue(snapshot.save(operations, saver));
+        Assert.assertEquals(operations, saver.lastSaved);
+
+        // Same values: nothing to save
+        saver.lastSaved = null;
+        Assert.assertFalse(snapshot.save(operations, saver));
+        Assert.assertNull(saver.lastSaved);
+
+        // A value of another type is a change
+        ProfileOperation doubleAge = new ProfileOperation(ProfileOperation.Type.SET_ATTRIBUTE, "age", 42d);
+        Assert.assertTrue(snapshot.save(Collections.singletonList(doubleAge), saver));
+        Assert.assertEquals(Collections.singletonList(doubleAge), saver.lastSaved);
+    }
+
+    @Test
+    public void testRelativeOperationsInvalidateValues() {
+        ProfileSnapshot snapshot = new ProfileSnapshot();
+        RecordingSaver saver = new RecordingSaver();
+        ProfileOperation setTags = new ProfileOperation(ProfileOperation.Type.SET_ATTRIBUTE, "tags", Collections.singletonList("a"));
+        snapshot.save(Collections.singletonList(setTags), saver);
+
+        ProfileOperation addTag = new ProfileOperation(ProfileOperation.Type.ADD_TO_ARRAY, "tags", "b");
+        List<ProfileOperation> operations = Arrays.asList(addTag, addTag);
+        Assert.assertTrue(snapshot.save(operations, saver));
+        Assert.assertEquals(operations, saver.lastSaved);
+
+        // The array isn't known anymore: setting it back must be applied
+        Assert.assertTrue(snapshot.save(Collections.singletonList(setTags), saver));
+    }
+
+    @Test
+    public void testIdentifierChangeClearsSnapshot() {
+        ProfileSnapshot snapshot = new ProfileSnapshot();
+        RecordingSaver saver = new RecordingSaver();
+        snapshot.setIdentifier("john");
+        List<ProfileOperation> operations = Collections.singletonList(
+                new ProfileOperation(ProfileOperation.Type.SET_REGION, null, "FR"));
+
+        snapshot.save(operations, saver);
+        snapshot.setIdentifier("john");
+        Assert.assertFalse(snapshot.save(operations, saver));
+
+        snapshot.setIdentifier("jane");
+        Assert.assertTrue(snapshot.save(operations, saver));
+    }
+
+    @Test
+    public void testFailedSaveIsNotRecorded() {
+        ProfileSnapshot snapshot = new ProfileSnapshot();
+        List<ProfileOperation> operations = Collections.singletonList(
+                new ProfileOperation(ProfileOperation.Type.SET_REGION, null, "FR"));
+
+        try {
+            snapshot.save(operations, savedOperations -> {
+                throw new IllegalStateException("Save failed");
+            });
+            Assert.fail("The saver's exception should have been thrown");
+        } catch (IllegalStateException ignored) {
+        }
+
+        Assert.assertTrue(snapshot.save(operations, new RecordingSaver()));
+    }
+
+    @Test
+    public void testConcurrentEditsAreSavedOnce() throws InterruptedException {
+        ProfileSnapshot snapshot = new ProfileSnapshot();
+        List<ProfileOperation> operations = Collections.singletonList(
+                new ProfileOperation(ProfileOperation.Type.SET_EMAIL_ADDRESS, null, "john@example.com"));
+        List<List<ProfileOperation>> saved = Collections.synchronizedList(new ArrayList<>());
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> snapshot.save(operations, saved::add)));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Edits are diffed against the values saved by the previous one, never against the same values
+        Assert.assertEquals(1, saved.size());
+    }
+
+    private static class RecordingSaver implements ProfileSnapshot.Saver {
+        List<ProfileOperation> lastSaved;
+
+        @Override
+        public void save(List<ProfileOperation> operations) {
+            lastSaved = new ArrayList<>(operations);
+        }
+    }
+}